@@ -0,0 +1,342 @@
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.font.FontRenderContext;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * AxisTicks.java
+ *
+ * places the ticks of a chart axis and keeps their labels. Value ticks fall on round multiples
+ * of a step of 1, 2 or 5 times a power of ten; date ticks fall on the first day of a calendar
+ * unit, days, weeks, months or years, chosen by the number of days visible, and are found through
+ * the index of each day in the trading calendar, so placing them costs O(ticks), whatever the
+ * length of the series.
+ * The ticks of the last range are kept and given back as they are while the range does not
+ * change, and the formatted label and measured width of every tick value are kept while the step
+ * and the font do not change, so panning formats and measures only the labels that scroll in.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class AxisTicks {
+
+	private static final int LABEL_CACHE_SIZE = 1024;		// most labels kept before they are all dropped
+	private static final double[] NICE_FRACTIONS = {1, 2, 5, 10};	// the steps within a power of ten
+	private static final int[] MONTH_STEPS = {1, 2, 3, 6};	// the steps of months between date ticks
+	private static final int[] WEEK_STEPS = {1, 2};			// the steps of weeks between date ticks
+	private static final double DAYS_PER_MONTH = 30.44;		// average number of days of a month
+	private static final double DAYS_PER_YEAR = 365.25;		// average number of days of a year
+
+	private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("MMM d");		// format of a day or week tick
+	private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("MMM uuuu");	// format of a month tick
+	private static final DateTimeFormatter YEAR_FORMATTER = DateTimeFormatter.ofPattern("uuuu");		// format of a year tick
+	private static final DateTimeFormatter[] DATE_FORMATTERS = {DAY_FORMATTER, MONTH_FORMATTER, YEAR_FORMATTER};
+
+	/**
+	 * The AxisTicks constructor
+	 * @param grouped TRUE to separate the thousands of the value labels, as for volumes
+	 */
+	public AxisTicks(boolean grouped) {
+		this.grouped = grouped;
+		this.values = new double[16];
+		this.labels = new String[16];
+		this.widths = new int[16];
+		this.cache = new HashMap<>();
+	}
+
+	/**
+	 * place the ticks at round values between two values
+	 * @param min the lowest value of the axis
+	 * @param max the highest value of the axis
+	 * @param maxTicks most ticks wanted, at least 2
+	 * @param metrics of the font the labels are drawn with
+	 * @return number of ticks
+	 */
+	public int valueTicks(double min, double max, int maxTicks, FontMetrics metrics) {
+		checkFont(metrics);
+		switchTo(VALUES);
+		if (kind == VALUES && min == keyMin && max == keyMax && maxTicks == keyTicks) {
+			return count;
+		}
+		kind = VALUES;
+		keyMin = min;
+		keyMax = max;
+		keyTicks = maxTicks;
+		count = 0;
+		if (Double.isNaN(min) || Double.isNaN(max) || Double.isInfinite(max - min) || max < min) {
+			return count;
+		}
+		double step = max > min ? niceStep((max - min) / Math.max(1, maxTicks - 1)) : 0;
+		if (step != this.step) {
+			// the labels are kept by multiple of the step
+			this.step = step;
+			cache.clear();
+		}
+		if (step == 0) {
+			addTick(min, metrics);
+			return count;
+		}
+		int decimals = Math.max(0, Math.min(10, (int) -Math.floor(Math.log10(step))));
+		for (long k = (long) Math.ceil(min / step); k * step <= max; k++) {
+			addTick(k * step, k, decimals, metrics);
+		}
+		return count;
+	}
+
+	/**
+	 * place the ticks on the first trading days of calendar units between two indices of days. The unit is
+	 * the shortest of days, weeks, two weeks, months, two, three or six months, or a round number
+	 * of years that gives no more than <code>maxTicks</code> ticks; a unit that starts on a day
+	 * without values is placed on the next day that has them.
+	 * @param first index of the first visible day
+	 * @param last index of the last visible day
+	 * @param calendar gives the day of each index
+	 * @param maxTicks most ticks wanted
+	 * @param metrics of the font the labels are drawn with
+	 * @return number of ticks, whose values are indices of days
+	 */
+	public int dateTicks(int first, int last, TradingCalendar calendar, int maxTicks, FontMetrics metrics) {
+		checkFont(metrics);
+		switchTo(DATES);
+		if (last < first) {
+			count = 0;
+			kind = NONE;
+			return count;
+		}
+		int fromDay = calendar.getEpochDay(first);
+		int toDay = calendar.getEpochDay(last);
+		if (kind == DATES && first == keyFirst && last == keyLast && fromDay == keyFromDay && toDay == keyToDay && maxTicks == keyTicks) {
+			return count;
+		}
+		kind = DATES;
+		keyFirst = first;
+		keyLast = last;
+		keyFromDay = fromDay;
+		keyToDay = toDay;
+		keyTicks = maxTicks;
+		count = 0;
+
+		double span = toDay - fromDay + 1;
+		maxTicks = Math.max(1, maxTicks);
+		LocalDate start = LocalDate.ofEpochDay(fromDay);
+		int previous = first - 1;
+		if (span <= maxTicks) {
+			for (int day = fromDay; day <= toDay; day++) {
+				previous = addDateTick(day, first, last, previous, calendar, 0, metrics);
+			}
+			return count;
+		}
+		for (int weeks : WEEK_STEPS) {
+			if (span / (7.0 * weeks) <= maxTicks) {
+				// weeks start on Monday, and every other week from the Monday of an even week
+				int week = Math.floorDiv(fromDay + 3 + 6, 7);
+				week = Math.floorDiv(week + weeks - 1, weeks) * weeks;
+				for (int day = week * 7 - 3; day <= toDay; day += 7 * weeks) {
+					previous = addDateTick(day, first, last, previous, calendar, 0, metrics);
+				}
+				return count;
+			}
+		}
+		for (int months : MONTH_STEPS) {
+			if (span / (DAYS_PER_MONTH * months) <= maxTicks) {
+				int month = start.getYear() * 12 + start.getMonthValue() - 1 + (start.getDayOfMonth() > 1 ? 1 : 0);
+				month = Math.floorDiv(month + months - 1, months) * months;
+				for (;; month += months) {
+					int day = (int) LocalDate.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1, 1).toEpochDay();
+					if (day > toDay) {
+						return count;
+					}
+					previous = addDateTick(day, first, last, previous, calendar, 1, metrics);
+				}
+			}
+		}
+		long years = Math.max(1, (long) niceStep(span / DAYS_PER_YEAR / maxTicks));
+		long year = start.getYear() + (start.getDayOfYear() > 1 ? 1 : 0);
+		year = Math.floorDiv(year + years - 1, years) * years;
+		for (;; year += years) {
+			int day = (int) LocalDate.of((int) year, 1, 1).toEpochDay();
+			if (day > toDay) {
+				return count;
+			}
+			previous = addDateTick(day, first, last, previous, calendar, 2, metrics);
+		}
+	}
+
+	/**
+	 * get the number of ticks last placed
+	 * @return number of ticks
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * get the value of a tick, an index of a day for date ticks
+	 * @param index of the tick
+	 * @return value
+	 */
+	public double getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * get the label of a tick
+	 * @param index of the tick
+	 * @return label
+	 */
+	public String getLabel(int index) {
+		return labels[index];
+	}
+
+	/**
+	 * get the width of the label of a tick in the font it was measured with
+	 * @param index of the tick
+	 * @return width in pixels
+	 */
+	public int getLabelWidth(int index) {
+		return widths[index];
+	}
+
+	/**
+	 * get the smallest round step not smaller than a step
+	 * @param raw the step
+	 * @return 1, 2 or 5 times a power of ten
+	 */
+	static double niceStep(double raw) {
+		double power = Math.pow(10, Math.floor(Math.log10(raw)));
+		for (double fraction : NICE_FRACTIONS) {
+			if (fraction * power >= raw * (1 - 1e-9)) {
+				return fraction * power;
+			}
+		}
+		return 10 * power;
+	}
+
+	/**
+	 * add the tick of the first index whose day is not before a day, unless it is out of the
+	 * visible indices or is the index of the tick before
+	 * @return index of the last tick
+	 */
+	private int addDateTick(int day, int first, int last, int previous, TradingCalendar calendar, int format, FontMetrics metrics) {
+		int low = Math.max(previous + 1, calendar.ceilingIndex(day));
+		if (low > last) {
+			return previous;
+		}
+		int tickDay = calendar.getEpochDay(low);
+		long key = (long) tickDay * DATE_FORMATTERS.length + format;
+		Label label = cache.get(key);
+		if (label == null) {
+			String text = DATE_FORMATTERS[format].format(LocalDate.ofEpochDay(tickDay));
+			label = cacheLabel(key, text, metrics);
+		}
+		append(low, label);
+		return low;
+	}
+
+	/**
+	 * add the tick of a multiple of the step
+	 */
+	private void addTick(double value, long multiple, int decimals, FontMetrics metrics) {
+		Label label = cache.get(multiple);
+		if (label == null) {
+			String text = String.format(grouped ? "%,." + decimals + "f" : "%." + decimals + "f", value);
+			label = cacheLabel(multiple, text, metrics);
+		}
+		append(value, label);
+	}
+
+	/**
+	 * add the only tick of an axis of a single value
+	 */
+	private void addTick(double value, FontMetrics metrics) {
+		String text = String.format(grouped ? "%,.2f" : "%.2f", value);
+		append(value, new Label(text, metrics.stringWidth(text)));
+	}
+
+	private Label cacheLabel(long key, String text, FontMetrics metrics) {
+		if (cache.size() >= LABEL_CACHE_SIZE) {
+			cache.clear();
+		}
+		Label label = new Label(text, metrics.stringWidth(text));
+		cache.put(key, label);
+		return label;
+	}
+
+	private void append(double value, Label label) {
+		if (count == values.length) {
+			values = Arrays.copyOf(values, count * 2);
+			labels = Arrays.copyOf(labels, count * 2);
+			widths = Arrays.copyOf(widths, count * 2);
+		}
+		values[count] = value;
+		labels[count] = label.text;
+		widths[count] = label.width;
+		count++;
+	}
+
+	/**
+	 * drop the labels of the other kind of ticks, which are kept by other keys
+	 */
+	private void switchTo(int next) {
+		if (kind != NONE && kind != next) {
+			kind = NONE;
+			step = Double.NaN;
+			cache.clear();
+		}
+	}
+
+	/**
+	 * drop the ticks and labels measured with another font or rendering context
+	 */
+	private void checkFont(FontMetrics metrics) {
+		Font font = metrics.getFont();
+		FontRenderContext context = metrics.getFontRenderContext();
+		if (!font.equals(this.font) || !context.equals(this.context)) {
+			this.font = font;
+			this.context = context;
+			this.kind = NONE;
+			this.step = Double.NaN;
+			cache.clear();
+		}
+	}
+
+	/**
+	 * a formatted label and its measured width
+	 */
+	private static class Label {
+		private final String text;	// storing the label
+		private final int width;	// storing its width in pixels
+
+		Label(String text, int width) {
+			this.text = text;
+			this.width = width;
+		}
+	}
+
+	private static final int NONE = 0, VALUES = 1, DATES = 2;	// the kinds of ticks last placed
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing whether the thousands of the value labels are separated
+	 * 		Storing the value, label and label width of each tick, and the number of ticks
+	 * 		Storing the kind of ticks last placed and the range they were placed for
+	 * 		Storing the step of the value ticks, the font the labels were measured with, and the labels
+	 * 		by multiple of the step for values, or by day and format for dates
+	 */
+	private final boolean grouped;
+	private double[] values;
+	private String[] labels;
+	private int[] widths;
+	private int count;
+	private int kind;
+	private double keyMin, keyMax;
+	private int keyFirst, keyLast, keyFromDay, keyToDay, keyTicks;
+	private double step = Double.NaN;
+	private Font font;
+	private FontRenderContext context;
+	private final HashMap<Long, Label> cache;
+}
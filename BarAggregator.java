@@ -0,0 +1,103 @@
+/**
+ * BarAggregator.java
+ *
+ * turns intraday ticks into daily bars. The first tick of a day appends a new bar; the following
+ * ticks of the same day update that bar in place (closing price, lowest, highest and volume).
+ * The bars may be seeded with the last daily bar of the history, which is still partial when it is
+ * today's; the ticks of that day then continue it. Ticks of days before the last bar are late and
+ * ignored. The aggregator remembers which bars
+ * changed since the last call of <code>clearChanges</code>, so that the charts can redraw only
+ * those. Nothing is allocated per tick.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class BarAggregator implements TickRingBuffer.TickConsumer {
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;	// length of a day of ticks
+
+	/**
+	 * The BarAggregator constructor
+	 * @param bars receives the daily bars, empty or seeded with the last bar of the history
+	 * @param lastHistoryDay the last day shown before empty live bars, ticks up to it are late
+	 */
+	public BarAggregator(StockSeries bars, int lastHistoryDay) {
+		this.bars = bars;
+		this.lastDay = bars.size() > 0 ? bars.getEpochDay(bars.size() - 1) : lastHistoryDay;
+		this.firstChanged = -1;
+	}
+
+	@Override
+	public void tick(long time, double price, long size) {
+		ticks++;
+		int day = (int) Math.floorDiv(time, MILLIS_PER_DAY);
+		if (day < lastDay || (day == lastDay && bars.size() == 0)) {
+			late++;
+			return;
+		}
+		int last = bars.size() - 1;
+		if (day > lastDay) {
+			bars.add(day, price, price, price, price, size, StockBars.ALL_VALID);
+			lastDay = day;
+			changed(last + 1);
+			return;
+		}
+		// a seeded bar may miss some values, the ticks fill them in
+		int mask = bars.validMask(last);
+		bars.set(last, (mask & StockBars.Column.OPENING.mask()) != 0 ? bars.getOpening(last) : price, price,
+				(mask & StockBars.Column.LOWEST.mask()) != 0 ? Math.min(bars.getLowest(last), price) : price,
+				(mask & StockBars.Column.HIGHEST.mask()) != 0 ? Math.max(bars.getHighest(last), price) : price,
+				((mask & StockBars.Column.VOLUME.mask()) != 0 ? bars.getVolume(last) : 0) + size, StockBars.ALL_VALID);
+		changed(last);
+	}
+
+	/**
+	 * get the index of the first bar that changed or was added since the last <code>clearChanges</code>
+	 * @return index in the bars, or -1 if nothing changed
+	 */
+	public int getFirstChanged() {
+		return firstChanged;
+	}
+
+	/**
+	 * forget the changed bars once they have been drawn
+	 */
+	public void clearChanges() {
+		firstChanged = -1;
+	}
+
+	/**
+	 * get the number of ticks seen so far
+	 * @return number of ticks
+	 */
+	public long getTickCount() {
+		return ticks;
+	}
+
+	/**
+	 * get the number of ignored ticks of days before the last bar
+	 * @return number of late ticks
+	 */
+	public long getLateTickCount() {
+		return late;
+	}
+
+	private void changed(int index) {
+		if (firstChanged < 0 || index < firstChanged) {
+			firstChanged = index;
+		}
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the daily bars and the day of the last bar
+	 * 		Storing the index of the first bar changed since the last drawing
+	 * 		Storing the number of seen ticks and of late ticks
+	 */
+	private final StockSeries bars;
+	private int lastDay;
+	private int firstChanged;
+	private long ticks;
+	private long late;
+}
@@ -0,0 +1,368 @@
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BatchLoader.java
+ *
+ * loads the daily stock values of many tickers concurrently, for example a whole watchlist.
+ * At most <code>parallelism</code> loads are in flight at once and the requests to a remote data
+ * source are spaced by the <code>RateLimiter</code> it shares with every other user of that
+ * source. A ticker and range that is already being loaded is not requested again; the callers
+ * share the same load, each through a future of its own, and the load is aborted only once every
+ * one of them has cancelled. Progress and throughput are reported to a listener after every
+ * finished ticker.
+ *
+ * usage: java BatchLoader &lt;ticker,ticker,...|count&gt; &lt;from&gt; &lt;to&gt; [parallelism] [requests per second]
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class BatchLoader {
+
+	/**
+	 * The BatchLoader constructor
+	 * @param source provides the daily stock values
+	 * @param parallelism maximum number of loads in flight
+	 * @param requestsPerSecond maximum number of requests per second to the source while this loader
+	 * has loads queued or running, on top of the limits of the other users of the source; zero or
+	 * less for none
+	 */
+	public BatchLoader(StockDataSource source, int parallelism, double requestsPerSecond) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		}
+		this.source = source;
+		this.parallelism = parallelism;
+		this.limiter = RateLimiter.forSource(source.getName());
+		this.requestsPerSecond = requestsPerSecond;
+		this.queue = new ArrayDeque<>();
+		this.inFlight = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * load a single ticker through the queue of this loader. If the same ticker and range is
+	 * already queued or loading, the caller joins that load instead of starting a new one.
+	 * @param ticker the ticker name
+	 * @param from the start date of daily prices
+	 * @param to the end date of daily prices
+	 * @return future of the loaded configuration; cancelling it aborts the load only if no other
+	 * caller still waits for it
+	 */
+	public CompletableFuture<StocksConfiguration> load(String ticker, LocalDate from, LocalDate to) {
+		Key key = new Key(ticker, from, to);
+		Task created = new Task(key, new CompletableFuture<>());
+		Task task = inFlight.compute(key, (k, existing) -> existing != null && existing.join() ? existing : created);
+		if (task == created) {
+			created.result.whenComplete((configuration, error) -> inFlight.remove(key, created));
+			synchronized (this) {
+				queue.add(created);
+				if (restriction == null && requestsPerSecond > 0) {
+					restriction = limiter.restrict(requestsPerSecond);
+				}
+			}
+			drain();
+		}
+		CompletableFuture<StocksConfiguration> caller = task.result.thenApply(configuration -> configuration);
+		caller.whenComplete((configuration, error) -> {
+			if (caller.isCancelled()) {
+				task.leave();
+			}
+		});
+		return caller;
+	}
+
+	/**
+	 * load many tickers over the same range
+	 * @param tickers the ticker names
+	 * @param from the start date of daily prices
+	 * @param to the end date of daily prices
+	 * @param listener receives the progress after every finished ticker, may be null
+	 * @return future of the loaded configurations by ticker, in the order of <code>tickers</code>;
+	 * tickers that failed to load are left out and counted in the progress
+	 */
+	public CompletableFuture<Map<String, StocksConfiguration>> loadAll(List<String> tickers, LocalDate from, LocalDate to,
+			ProgressListener listener) {
+		Progress progress = new Progress(tickers.size());
+		List<CompletableFuture<StocksConfiguration>> loads = new ArrayList<>();
+		for (String ticker : tickers) {
+			CompletableFuture<StocksConfiguration> load = load(ticker, from, to);
+			loads.add(load.whenComplete((configuration, error) -> {
+				progress.finished(configuration, error);
+				if (listener != null) {
+					listener.progress(progress);
+				}
+			}));
+		}
+
+		return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).handle((ignored, error) -> {
+			Map<String, StocksConfiguration> configurations = new LinkedHashMap<>();
+			for (int i = 0; i < tickers.size(); i++) {
+				CompletableFuture<StocksConfiguration> load = loads.get(i);
+				if (!load.isCompletedExceptionally()) {
+					configurations.put(tickers.get(i), load.join());
+				}
+			}
+			return configurations;
+		});
+	}
+
+	/**
+	 * start queued loads while there is room for them
+	 */
+	private void drain() {
+		while (true) {
+			Task task;
+			synchronized (this) {
+				if (running >= parallelism || queue.isEmpty()) {
+					return;
+				}
+				task = queue.poll();
+				running++;
+			}
+			start(task);
+		}
+	}
+
+	/**
+	 * start a load, whose requests then wait for the rate limiter of the source
+	 * @param task the load to start
+	 */
+	private void start(Task task) {
+		ForkJoinPool.commonPool().execute(() -> {
+			if (task.result.isDone()) {
+				// cancelled while waiting in the queue
+				finished();
+				return;
+			}
+			CompletableFuture<StocksConfiguration> fetch =
+					StocksConfiguration.fetch(task.key.ticker, task.key.from, task.key.to, source);
+			StockFetcher.cancelWith(task.result, fetch);
+			fetch.whenComplete((configuration, error) -> {
+				finished();
+				if (error != null) {
+					task.result.completeExceptionally(error);
+				} else {
+					task.result.complete(configuration);
+				}
+			});
+		});
+	}
+
+	/**
+	 * free the slot of a finished load and start the next ones, or lift the limit of this loader
+	 * once it has nothing left to load
+	 */
+	private void finished() {
+		synchronized (this) {
+			running--;
+			if (running == 0 && queue.isEmpty() && restriction != null) {
+				restriction.close();
+				restriction = null;
+			}
+		}
+		drain();
+	}
+
+	/**
+	 * receives the progress of a batch
+	 */
+	@FunctionalInterface
+	public interface ProgressListener {
+		void progress(Progress progress);
+	}
+
+	/**
+	 * counts the finished tickers and loaded rows of a batch and derives its throughput
+	 */
+	public static class Progress {
+		private final int total;					// storing the number of tickers in the batch
+		private final long startNanos;				// storing the start time of the batch
+		private final AtomicInteger completed;		// storing the number of loaded tickers
+		private final AtomicInteger failed;			// storing the number of tickers that failed
+		private final AtomicLong rows;				// storing the number of loaded rows
+
+		Progress(int total) {
+			this.total = total;
+			this.startNanos = System.nanoTime();
+			this.completed = new AtomicInteger();
+			this.failed = new AtomicInteger();
+			this.rows = new AtomicLong();
+		}
+
+		void finished(StocksConfiguration configuration, Throwable error) {
+			if (error != null) {
+				failed.incrementAndGet();
+			} else {
+				rows.addAndGet(configuration.getSeries().size());
+				completed.incrementAndGet();
+			}
+		}
+
+		public int getTotal() {
+			return total;
+		}
+
+		public int getCompleted() {
+			return completed.get();
+		}
+
+		public int getFailed() {
+			return failed.get();
+		}
+
+		public long getRows() {
+			return rows.get();
+		}
+
+		public double getElapsedSeconds() {
+			return (System.nanoTime() - startNanos) / 1e9;
+		}
+
+		public double getTickersPerSecond() {
+			return (getCompleted() + getFailed()) / Math.max(getElapsedSeconds(), 1e-9);
+		}
+
+		public double getRowsPerSecond() {
+			return getRows() / Math.max(getElapsedSeconds(), 1e-9);
+		}
+
+		public boolean isDone() {
+			return getCompleted() + getFailed() == total;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d/%d tickers (%d failed), %,d rows, %.1f tickers/s, %,.0f rows/s",
+					getCompleted() + getFailed(), total, getFailed(), getRows(), getTickersPerSecond(), getRowsPerSecond());
+		}
+	}
+
+	/**
+	 * a queued or running load and the number of callers waiting for it
+	 */
+	private static class Task {
+		private final Key key;											// storing what to load
+		private final CompletableFuture<StocksConfiguration> result;	// storing the future shared by the callers
+		private int callers;											// storing the number of callers that did not cancel
+
+		Task(Key key, CompletableFuture<StocksConfiguration> result) {
+			this.key = key;
+			this.result = result;
+			this.callers = 1;
+		}
+
+		/**
+		 * add a caller to the load
+		 * @return FALSE if every caller already cancelled, so the load is being aborted
+		 */
+		synchronized boolean join() {
+			if (callers == 0) {
+				return false;
+			}
+			callers++;
+			return true;
+		}
+
+		/**
+		 * remove a caller that cancelled, and abort the load if it was the last one
+		 */
+		void leave() {
+			synchronized (this) {
+				if (--callers > 0) {
+					return;
+				}
+			}
+			result.cancel(true);
+		}
+	}
+
+	/**
+	 * identifies a load, so that equal loads in flight are shared
+	 */
+	private static class Key {
+		private final String ticker;
+		private final LocalDate from;
+		private final LocalDate to;
+
+		Key(String ticker, LocalDate from, LocalDate to) {
+			this.ticker = ticker;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return ticker.equals(key.ticker) && from.equals(key.from) && to.equals(key.to);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(ticker, from, to);
+		}
+	}
+
+	/**
+	 * The main method loads a list of tickers, or a number of generated ticker names, from the
+	 * default data source and prints the progress and the final throughput
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.err.println("usage: java BatchLoader <ticker,ticker,...|count> <from> <to> [parallelism] [requests per second]");
+			System.exit(1);
+		}
+		List<String> tickers = new ArrayList<>();
+		if (args[0].matches("\\d+")) {
+			for (int i = 0; i < Integer.parseInt(args[0]); i++) {
+				tickers.add(String.format("T%04d", i));
+			}
+		} else {
+			tickers.addAll(Arrays.asList(args[0].split(",")));
+		}
+		int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors() * 4;
+		double rate = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+
+		BatchLoader loader = new BatchLoader(StockDataSource.getDefault(), parallelism, rate);
+		int step = Math.max(1, tickers.size() / 10);
+		Map<String, StocksConfiguration> loaded = loader.loadAll(tickers, LocalDate.parse(args[1]), LocalDate.parse(args[2]),
+				current -> {
+					int finished = current.getCompleted() + current.getFailed();
+					if (finished % step == 0 || current.isDone()) {
+						System.out.println(current);
+					}
+				}).join();
+		System.out.printf("loaded %d of %d tickers%n", loaded.size(), tickers.size());
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the data source and the maximum number of loads in flight
+	 * 		Storing the shared rate limiter of the source, the limit of this loader, and its restriction
+	 * 		of the limiter while loads are queued or running
+	 * 		Storing the queued loads and the number of running loads
+	 * 		Storing every queued or running load by ticker and range
+	 */
+	private final StockDataSource source;
+	private final int parallelism;
+	private final RateLimiter limiter;
+	private final double requestsPerSecond;
+	private RateLimiter.Restriction restriction;
+	private final ArrayDeque<Task> queue;
+	private int running;
+	private final ConcurrentHashMap<Key, Task> inFlight;
+}
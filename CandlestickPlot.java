@@ -0,0 +1,355 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * CandlestickPlot.java
+ *
+ * In this class, all stock values of the visible days are drawn in one panel: a candle per bar
+ * for the opening, closing, lowest and highest prices, and a volume pane below it. The values
+ * are read from the bars of a <code>StockPyramid</code> as they are, without copying them into
+ * points, and the finest level whose candles are still a few pixels apart is drawn. The candles
+ * are snapped to whole pixels and collected into three reused batches of rectangles, wicks,
+ * rising bars and falling bars, the volume bars going with the candle of their color, so a
+ * paint sets the color three times and fills plain rectangles, the fastest primitive of Java2D,
+ * whatever the number of bars. The dates of the X axis are placed like those of <code>Plot</code>.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class CandlestickPlot extends JPanel {
+	private static final int PREF_W = 800;				// a fixed preferred panel width
+	private static final int PREF_H = 650;				// a fixed preferred panel height
+	private static final int LEFT_BORDER_GAP = 120;		// specifying the size of the left gap between the panel border and the plot
+	private static final int TOP_BORDER_GAP = 50;		// specifying the size of the top gap between the panel border and the plot
+	private static final int RIGHT_BORDER_GAP = 50;		// specifying the size of the right gap between the panel border and the plot
+	private static final int BOTTOM_BORDER_GAP = 50;	// specifying the size of the bottom gap between the panel border and the plot
+	private static final double VOLUME_SHARE = 0.25;	// part of the plot height given to the volume pane
+	private static final int PANE_GAP = 10;				// gap between the price pane and the volume pane
+
+	private static final int MIN_CANDLE_SPACING = 3;	// fewest pixels between two candles before a coarser level is drawn
+	private static final double BODY_RATIO = 0.7;		// width of a candle body relative to the space of its bar
+	private static final int WICK_WIDTH = 1;			// width of a candle wick in pixels
+
+	private static final Color RISING_COLOR = new Color(38, 166, 91);	// color of the bars that closed above their opening
+	private static final Color FALLING_COLOR = new Color(214, 69, 65);	// color of the bars that closed below their opening
+	private static final Color WICK_COLOR = Color.DARK_GRAY;				// color of the wicks between the lowest and highest prices
+
+	private static final int PRICE_MARKS_COUNT = 8;		// most hatches in the price axis
+	private static final int VOLUME_MARKS_COUNT = 3;	// most hatches in the volume axis
+	private static final int DATE_MARKS_COUNT = 12;		// most dates in the X axis
+	private static final int DATE_LABEL_SPACING = 80;	// fewest pixels between two dates in the X axis
+	private static final int MARK_WIDTH = 12;			// length of a hatch
+
+	/**
+	 * A constructor that sets the bars to draw and the mapping between each day and its date
+	 * @param pyramid of the stock values, kept up to date by its owner
+	 * @param calendar gives the date of each day index
+	 */
+	public CandlestickPlot(StockPyramid pyramid, TradingCalendar calendar) {
+		this.pyramid = pyramid;
+		this.calendar = calendar;
+		this.viewport = new Viewport(() -> 0, () -> Math.max(0, pyramid.getBars(StockPyramid.Level.DAILY).size() - 1));
+		this.viewport.navigate(this, LEFT_BORDER_GAP, RIGHT_BORDER_GAP);
+	}
+
+	/**
+	 * get the viewport that selects the visible range of the plot
+	 * @return viewport
+	 */
+	public Viewport getViewport() {
+		return viewport;
+	}
+
+	/**
+	 * replace the trading days of the bars, as when days were appended to the series. The
+	 * caller repaints the plot.
+	 * @param calendar gives the date of each day index
+	 */
+	public void setCalendar(TradingCalendar calendar) {
+		this.calendar = calendar;
+	}
+
+	/**
+	 * draw the panes, the candles and volumes, and the axes
+	 */
+	@Override
+	protected void paintComponent(Graphics g) {
+		super.paintComponent(g);
+		Graphics2D g2 = (Graphics2D) g;
+		updateView();
+		g2.setColor(Color.WHITE);
+		g2.fillRect(LEFT_BORDER_GAP, TOP_BORDER_GAP, getPlotWidth(), priceBottom() - TOP_BORDER_GAP);
+		g2.fillRect(LEFT_BORDER_GAP, volumeTop(), getPlotWidth(), plotBottom() - volumeTop());
+		drawBars(g2);
+		drawAxes(g2);
+	}
+
+	/**
+	 * find the level to draw, its visible bars and their range of prices and volumes. The finest
+	 * level whose visible bars are at least <code>MIN_CANDLE_SPACING</code> pixels apart is drawn,
+	 * the coarsest one if none is. The ranges are taken from the visible bars only, which are few
+	 * since they are a few pixels apart.
+	 */
+	private void updateView() {
+		viewMinX = viewport.getMinX();
+		viewMaxX = viewport.getMaxX();
+		StockPyramid.Level[] levels = StockPyramid.Level.values();
+		level = levels[levels.length - 1];
+		for (StockPyramid.Level candidate : levels) {
+			int count = pyramid.indexOfDay(candidate, viewMaxX + 1) - pyramid.indexOfDay(candidate, viewMinX);
+			if ((long) count * MIN_CANDLE_SPACING <= getPlotWidth()) {
+				level = candidate;
+				break;
+			}
+		}
+		// the bar holding the first visible day may start before it
+		viewFrom = Math.max(0, pyramid.indexOfDay(level, viewMinX) - 1);
+		viewTo = pyramid.indexOfDay(level, viewMaxX + 1);
+
+		StockBars bars = pyramid.getBars(level);
+		viewMinY = Double.MAX_VALUE;
+		viewMaxY = -Double.MAX_VALUE;
+		viewMaxVolume = 0;
+		for (int i = viewFrom; i < viewTo; i++) {
+			if (bars.isValid(i, StockBars.Column.LOWEST)) {
+				viewMinY = Math.min(viewMinY, bars.getLowest(i));
+			}
+			if (bars.isValid(i, StockBars.Column.HIGHEST)) {
+				viewMaxY = Math.max(viewMaxY, bars.getHighest(i));
+			}
+			if (bars.isValid(i, StockBars.Column.OPENING)) {
+				viewMinY = Math.min(viewMinY, bars.getOpening(i));
+				viewMaxY = Math.max(viewMaxY, bars.getOpening(i));
+			}
+			if (bars.isValid(i, StockBars.Column.CLOSING)) {
+				viewMinY = Math.min(viewMinY, bars.getClosing(i));
+				viewMaxY = Math.max(viewMaxY, bars.getClosing(i));
+			}
+			if (bars.isValid(i, StockBars.Column.VOLUME)) {
+				viewMaxVolume = Math.max(viewMaxVolume, bars.getVolume(i));
+			}
+		}
+		if (viewMinY > viewMaxY) {
+			// nothing but missing prices in view
+			viewMinY = 0;
+			viewMaxY = 1;
+		} else if (viewMinY == viewMaxY) {
+			viewMinY -= 0.5;
+			viewMaxY += 0.5;
+		}
+	}
+
+	/**
+	 * collect the visible candles and volume bars into the batches of their colors, then fill each
+	 * batch in one pass. A price that is missing leaves out the part of the candle that needs it.
+	 * @param g2 is the object of the graphics which invokes drawing methods
+	 */
+	private void drawBars(Graphics2D g2) {
+		wicks.clear();
+		risingBars.clear();
+		fallingBars.clear();
+		StockBars bars = pyramid.getBars(level);
+		int days = pyramid.getBars(StockPyramid.Level.DAILY).size();
+		double xScale = getPlotWidth() / Math.max(viewMaxX - viewMinX, 1);
+		double priceTop = TOP_BORDER_GAP;
+		double priceScale = (priceBottom() - priceTop) / (viewMaxY - viewMinY);
+		double volumeScale = viewMaxVolume > 0 ? (plotBottom() - volumeTop()) / (double) viewMaxVolume : 0;
+		for (int i = viewFrom; i < viewTo; i++) {
+			int firstDay = pyramid.getFirstDay(level, i);
+			int nextDay = i + 1 < bars.size() ? pyramid.getFirstDay(level, i + 1) : days;
+			// a bar is centred on the days it covers, and its body fills most of their width
+			double x = LEFT_BORDER_GAP + ((firstDay + nextDay - 1) / 2.0 - viewMinX) * xScale;
+			int bodyWidth = Math.max(1, (int) Math.round((nextDay - firstDay) * xScale * BODY_RATIO));
+			int bodyLeft = (int) Math.round(x - bodyWidth / 2.0);
+
+			if (bars.isValid(i, StockBars.Column.LOWEST) && bars.isValid(i, StockBars.Column.HIGHEST)) {
+				int top = (int) Math.round(priceTop + (viewMaxY - bars.getHighest(i)) * priceScale);
+				int bottom = (int) Math.round(priceTop + (viewMaxY - bars.getLowest(i)) * priceScale);
+				wicks.add(bodyLeft + (bodyWidth - WICK_WIDTH) / 2, top, WICK_WIDTH, Math.max(1, bottom - top));
+			}
+			boolean rising = true;
+			if (bars.isValid(i, StockBars.Column.OPENING) && bars.isValid(i, StockBars.Column.CLOSING)) {
+				double opening = bars.getOpening(i);
+				double closing = bars.getClosing(i);
+				rising = closing >= opening;
+				int top = (int) Math.round(priceTop + (viewMaxY - Math.max(opening, closing)) * priceScale);
+				int bottom = (int) Math.round(priceTop + (viewMaxY - Math.min(opening, closing)) * priceScale);
+				(rising ? risingBars : fallingBars).add(bodyLeft, top, bodyWidth, Math.max(1, bottom - top));
+			}
+			if (bars.isValid(i, StockBars.Column.VOLUME)) {
+				int height = (int) Math.round(bars.getVolume(i) * volumeScale);
+				(rising ? risingBars : fallingBars).add(bodyLeft, plotBottom() - height, bodyWidth, height);
+			}
+		}
+
+		// the bars beyond the edges must not be drawn over the axes
+		Graphics2D clipped = (Graphics2D) g2.create();
+		try {
+			clipped.clipRect(LEFT_BORDER_GAP, TOP_BORDER_GAP, getPlotWidth(), plotBottom() - TOP_BORDER_GAP);
+			// the rectangles are in whole pixels, antialiasing would only slow them down
+			clipped.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+			clipped.setColor(WICK_COLOR);
+			wicks.fill(clipped);
+			clipped.setColor(RISING_COLOR);
+			risingBars.fill(clipped);
+			clipped.setColor(FALLING_COLOR);
+			fallingBars.fill(clipped);
+		} finally {
+			clipped.dispose();
+		}
+	}
+
+	/**
+	 * draw the axes of both panes along with their hatches and labels
+	 * @param g2 is the object of the graphics which invokes drawing methods
+	 */
+	private void drawAxes(Graphics2D g2) {
+		g2.setColor(Color.BLACK);
+		FontMetrics fontMetrics = g2.getFontMetrics();
+		g2.drawLine(LEFT_BORDER_GAP, TOP_BORDER_GAP, LEFT_BORDER_GAP, priceBottom());
+		g2.drawLine(LEFT_BORDER_GAP, priceBottom(), LEFT_BORDER_GAP + getPlotWidth(), priceBottom());
+		g2.drawLine(LEFT_BORDER_GAP, volumeTop(), LEFT_BORDER_GAP, plotBottom());
+		g2.drawLine(LEFT_BORDER_GAP, plotBottom(), LEFT_BORDER_GAP + getPlotWidth(), plotBottom());
+
+		// dates below the volume pane, placed like the dates of the line charts
+		int days = pyramid.getBars(StockPyramid.Level.DAILY).size();
+		int maxTicks = Math.max(2, Math.min(DATE_MARKS_COUNT, getPlotWidth() / DATE_LABEL_SPACING));
+		if (calendar != null && calendar.size() > 0) {
+			int first = Math.max(0, (int) Math.ceil(viewMinX));
+			int last = Math.min(Math.min(days, calendar.size()) - 1, (int) Math.floor(viewMaxX));
+			dateTicks.dateTicks(first, last, calendar, maxTicks, fontMetrics);
+			double pixelsPerDay = getPlotWidth() / (viewMaxX - viewMinX);
+			for (int i = 0; i < dateTicks.size(); i++) {
+				int x0 = (int) (LEFT_BORDER_GAP + (dateTicks.getValue(i) - viewMinX) * pixelsPerDay);
+				g2.drawLine(x0, plotBottom(), x0, plotBottom() - MARK_WIDTH);
+				g2.drawString(dateTicks.getLabel(i), x0 - dateTicks.getLabelWidth(i) / 2, plotBottom() + fontMetrics.getHeight());
+			}
+		}
+
+		// prices at round values of the price pane
+		priceTicks.valueTicks(viewMinY, viewMaxY, PRICE_MARKS_COUNT, fontMetrics);
+		drawYLabels(g2, fontMetrics, priceTicks, viewMinY, viewMaxY, TOP_BORDER_GAP, priceBottom());
+
+		// volumes at round values of the volume pane
+		volumeTicks.valueTicks(0, viewMaxVolume, VOLUME_MARKS_COUNT, fontMetrics);
+		drawYLabels(g2, fontMetrics, volumeTicks, 0, viewMaxVolume, volumeTop(), plotBottom());
+	}
+
+	/**
+	 * draw the hatches and labels of the ticks of a pane
+	 */
+	private void drawYLabels(Graphics2D g2, FontMetrics fontMetrics, AxisTicks ticks, double min, double max, int top, int bottom) {
+		for (int i = 0; i < ticks.size(); i++) {
+			int y0 = max > min ? (int) (bottom - (ticks.getValue(i) - min) * (bottom - top) / (max - min)) : bottom;
+			g2.drawLine(LEFT_BORDER_GAP, y0, LEFT_BORDER_GAP + MARK_WIDTH, y0);
+			g2.drawString(ticks.getLabel(i), LEFT_BORDER_GAP - ticks.getLabelWidth(i) - 5, y0 + (fontMetrics.getHeight() / 2) - 3);
+		}
+	}
+
+	/**
+	 * get the width of the plot
+	 * @return plot width
+	 */
+	private int getPlotWidth() {
+		return getWidth() - LEFT_BORDER_GAP - RIGHT_BORDER_GAP;
+	}
+
+	/**
+	 * get the Y coordinate of the bottom of both panes
+	 * @return bottom of the volume pane
+	 */
+	private int plotBottom() {
+		return getHeight() - BOTTOM_BORDER_GAP;
+	}
+
+	/**
+	 * get the Y coordinate of the top of the volume pane
+	 * @return top of the volume pane
+	 */
+	private int volumeTop() {
+		return plotBottom() - (int) ((plotBottom() - TOP_BORDER_GAP) * VOLUME_SHARE);
+	}
+
+	/**
+	 * get the Y coordinate of the bottom of the price pane
+	 * @return bottom of the price pane
+	 */
+	private int priceBottom() {
+		return volumeTop() - PANE_GAP;
+	}
+
+	/**
+	 * return the preferred size of the panel
+	 */
+	@Override
+	public Dimension getPreferredSize() {
+		return new Dimension(PREF_W, PREF_H);
+	}
+
+	/**
+	 * rectangles in whole pixels that are filled together with one color. The coordinates are kept
+	 * in one reused array, so collecting them allocates nothing once it is large enough.
+	 */
+	private static final class RectangleBatch {
+
+		/**
+		 * remove all rectangles
+		 */
+		void clear() {
+			count = 0;
+		}
+
+		/**
+		 * add a rectangle
+		 */
+		void add(int x, int y, int width, int height) {
+			if (count + 4 > coordinates.length) {
+				coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+			}
+			coordinates[count++] = x;
+			coordinates[count++] = y;
+			coordinates[count++] = width;
+			coordinates[count++] = height;
+		}
+
+		/**
+		 * fill all rectangles with the current color of the graphics
+		 */
+		void fill(Graphics2D g2) {
+			for (int i = 0; i < count; i += 4) {
+				g2.fillRect(coordinates[i], coordinates[i + 1], coordinates[i + 2], coordinates[i + 3]);
+			}
+		}
+
+		/**
+		 * The following instance variables are:
+		 * 		Storing the X, Y, width and height of each rectangle, and the number of used entries
+		 */
+		private int[] coordinates = new int[256];
+		private int count;
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the bars of each level and the date of each day
+	 * 		Storing the visible range of days
+	 * 		Storing the drawn level, its visible bars and their ranges, see updateView
+	 * 		Storing the reused batches of the wicks, the rising bars and the falling bars
+	 * 		Storing the ticks of the dates, the prices and the volumes, kept with their labels
+	 */
+	private final StockPyramid pyramid;
+	private TradingCalendar calendar;
+	private final Viewport viewport;
+	private StockPyramid.Level level;
+	private int viewFrom, viewTo;
+	private double viewMinX, viewMaxX, viewMinY, viewMaxY;
+	private long viewMaxVolume;
+	private final RectangleBatch wicks = new RectangleBatch();
+	private final RectangleBatch risingBars = new RectangleBatch();
+	private final RectangleBatch fallingBars = new RectangleBatch();
+	private final AxisTicks dateTicks = new AxisTicks(false);
+	private final AxisTicks priceTicks = new AxisTicks(false);
+	private final AxisTicks volumeTicks = new AxisTicks(true);
+}
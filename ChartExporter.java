@@ -0,0 +1,403 @@
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.swing.JComponent;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * ChartExporter.java
+ *
+ * renders the charts of many tickers to PNG files without a screen, with the same drawing code
+ * as the windows, and optionally writes the line charts as SVG too. The charts are drawn in
+ * parallel by a fixed pool of threads. Every thread keeps its own image, chart pane and PNG
+ * writer and reuses them for each of its charts, so a chart allocates little besides its data;
+ * only the loading of the data and the file writes are not shared. Progress and the number of
+ * charts per second, with the time split between loading, drawing and encoding, are reported to a
+ * listener after every chart.
+ *
+ * usage: java -Djava.awt.headless=true ChartExporter &lt;ticker,ticker,...|count|@jobs file&gt; &lt;from&gt; &lt;to&gt;
+ * &lt;directory&gt; [threads] [opening|closing|lowest|highest|volume|candlestick] [svg]
+ *
+ * A jobs file has a line per chart, a ticker optionally followed by its own range: ticker[,from,to].
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class ChartExporter {
+
+	private static final int WIDTH = 1200;		// width of the exported charts in pixels
+	private static final int HEIGHT = 700;		// height of the exported charts in pixels
+	private static final String CANDLESTICK = "candlestick";	// name of the candlestick chart on the command line
+
+	/**
+	 * a chart to export: a ticker and the range of its days
+	 */
+	public static final class Job {
+		private final String ticker;	// storing the ticker name
+		private final LocalDate from;	// storing the start date of daily prices
+		private final LocalDate to;		// storing the end date of daily prices
+
+		/**
+		 * The Job constructor
+		 * @param ticker the ticker name
+		 * @param from the start date of daily prices
+		 * @param to the end date of daily prices
+		 */
+		public Job(String ticker, LocalDate from, LocalDate to) {
+			this.ticker = ticker;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * get the name of the files of the chart, without extension
+		 * @return ticker and range
+		 */
+		public String getFileName() {
+			return ticker + "_" + from + "_" + to;
+		}
+
+		@Override
+		public String toString() {
+			return ticker + " " + from + " " + to;
+		}
+	}
+
+	/**
+	 * progress of an export, updated by the worker threads
+	 */
+	public static final class Progress {
+		private final int total;					// storing the number of charts
+		private final long startTime;				// storing when the export started
+		private final AtomicInteger exported;		// storing the number of charts written
+		private final AtomicInteger failed;			// storing the number of charts that could not be loaded or written
+		private final AtomicLong loadTime;			// storing the nanoseconds spent loading, over all threads
+		private final AtomicLong drawTime;			// storing the nanoseconds spent drawing, over all threads
+		private final AtomicLong encodeTime;		// storing the nanoseconds spent encoding and writing, over all threads
+
+		Progress(int total) {
+			this.total = total;
+			this.startTime = System.nanoTime();
+			this.exported = new AtomicInteger();
+			this.failed = new AtomicInteger();
+			this.loadTime = new AtomicLong();
+			this.drawTime = new AtomicLong();
+			this.encodeTime = new AtomicLong();
+		}
+
+		/**
+		 * get the number of charts written
+		 * @return number of charts
+		 */
+		public int getExported() {
+			return exported.get();
+		}
+
+		/**
+		 * get the number of charts that could not be loaded or written
+		 * @return number of charts
+		 */
+		public int getFailed() {
+			return failed.get();
+		}
+
+		/**
+		 * tell whether every chart is written or failed
+		 * @return TRUE when the export is finished
+		 */
+		public boolean isDone() {
+			return exported.get() + failed.get() == total;
+		}
+
+		/**
+		 * get the number of charts written per second since the export started
+		 * @return charts per second
+		 */
+		public double getChartsPerSecond() {
+			double seconds = (System.nanoTime() - startTime) / 1e9;
+			return seconds > 0 ? exported.get() / seconds : 0;
+		}
+
+		@Override
+		public String toString() {
+			int finished = Math.max(1, exported.get() + failed.get());
+			return String.format("%d/%d charts, %d failed, %.1f charts/s, per chart: load %.1f ms, draw %.1f ms, encode %.1f ms",
+					exported.get(), total, failed.get(), getChartsPerSecond(),
+					loadTime.get() / 1e6 / finished, drawTime.get() / 1e6 / finished, encodeTime.get() / 1e6 / finished);
+		}
+	}
+
+	/**
+	 * The ChartExporter constructor
+	 * @param source provides the daily stock values
+	 * @param threads number of charts drawn at once
+	 * @param column the stock values drawn as a line chart, or null for the candlestick chart
+	 * @param svg TRUE to write an SVG file next to the PNG file of a line chart
+	 */
+	public ChartExporter(StockDataSource source, int threads, StockBars.Column column, boolean svg) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		this.source = source;
+		this.threads = threads;
+		this.column = column;
+		this.svg = svg && column != null;
+		this.canvas = ThreadLocal.withInitial(Canvas::new);
+	}
+
+	/**
+	 * export the charts of a list of tickers and ranges, waiting until all are written
+	 * @param jobs the charts to export
+	 * @param directory receives the files, created if missing
+	 * @param listener receives the progress after every chart, on the thread that drew it
+	 * @return progress of the finished export
+	 * @throws IOException if the directory cannot be created
+	 */
+	public Progress exportAll(List<Job> jobs, Path directory, Consumer<Progress> listener) throws IOException {
+		Files.createDirectories(directory);
+		Progress progress = new Progress(jobs.size());
+		ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "chart-exporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>(jobs.size());
+			for (Job job : jobs) {
+				futures.add(workers.submit(() -> {
+					try {
+						export(job, directory, progress);
+						progress.exported.incrementAndGet();
+					} catch (Exception e) {
+						progress.failed.incrementAndGet();
+						System.err.println(job + ": " + e.getMessage());
+					}
+					listener.accept(progress);
+				}));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (Exception e) {
+					// the failures are counted by the task itself
+				}
+			}
+		} finally {
+			workers.shutdown();
+		}
+		return progress;
+	}
+
+	/**
+	 * load, draw and write a chart on the current thread
+	 */
+	private void export(Job job, Path directory, Progress progress) throws Exception {
+		long start = System.nanoTime();
+		StockBars series;
+		try {
+			series = StocksConfiguration.fetch(job.ticker, job.from, job.to, source).join().getSeries();
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+		long loaded = System.nanoTime();
+		progress.loadTime.addAndGet(loaded - start);
+
+		Canvas canvas = this.canvas.get();
+		JComponent chart = canvas.draw(series, column, WIDTH, HEIGHT);
+		long drawn = System.nanoTime();
+		progress.drawTime.addAndGet(drawn - loaded);
+
+		File file = directory.resolve(job.getFileName() + ".png").toFile();
+		file.delete();
+		try (FileImageOutputStream out = new FileImageOutputStream(file)) {
+			canvas.writePng(out);
+		}
+		if (svg) {
+			try (BufferedWriter out = Files.newBufferedWriter(directory.resolve(job.getFileName() + ".svg"), StandardCharsets.UTF_8)) {
+				((Plot) chart).writeSvg(out);
+			}
+		}
+		progress.encodeTime.addAndGet(System.nanoTime() - drawn);
+	}
+
+	/**
+	 * the image, chart pane and PNG writer of a thread, reused for each of its charts. The image
+	 * grows in steps to the largest chart drawn and a smaller chart uses its top left corner.
+	 */
+	static final class Canvas {
+		private static final int IMAGE_SIZE_STEP = 256;	// the image grows in steps of this many pixels
+
+		private BufferedImage image;			// storing the pixels of the charts
+		private int width, height;				// storing the size of the last chart drawn
+		private final StocksValues pane;		// storing the charts of the last series
+		private final ImageWriter writer;		// storing the PNG encoder
+
+		Canvas() {
+			this.pane = new StocksValues();
+			this.writer = ImageIO.getImageWritersByFormatName("png").next();
+		}
+
+		/**
+		 * draw the chart of a series into the image
+		 * @param series the daily stock values
+		 * @param column the stock values drawn as a line chart, or null for the candlestick chart
+		 * @param width of the chart
+		 * @param height of the chart
+		 * @return the chart drawn
+		 */
+		JComponent draw(StockBars series, StockBars.Column column, int width, int height) {
+			if (image == null || image.getWidth() < width || image.getHeight() < height) {
+				int allocatedWidth = (Math.max(width, image == null ? 0 : image.getWidth()) + IMAGE_SIZE_STEP - 1) / IMAGE_SIZE_STEP * IMAGE_SIZE_STEP;
+				int allocatedHeight = (Math.max(height, image == null ? 0 : image.getHeight()) + IMAGE_SIZE_STEP - 1) / IMAGE_SIZE_STEP * IMAGE_SIZE_STEP;
+				image = new BufferedImage(allocatedWidth, allocatedHeight, BufferedImage.TYPE_INT_RGB);
+			}
+			this.width = width;
+			this.height = height;
+			pane.generateChart(series);
+			JComponent chart;
+			if (column != null) {
+				Plot plot = pane.getPlot(column);
+				// painted once into the image, so it cannot wait for a frame of the render thread
+				plot.setBackgroundRendering(false);
+				chart = plot;
+			} else {
+				chart = pane.getCandlestickPlot();
+			}
+			chart.setSize(width, height);
+			Graphics2D g2 = image.createGraphics();
+			try {
+				g2.setClip(0, 0, width, height);
+				g2.setColor(Color.WHITE);
+				g2.fillRect(0, 0, width, height);
+				g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				chart.paint(g2);
+			} finally {
+				g2.dispose();
+			}
+			return chart;
+		}
+
+		/**
+		 * encode the last chart drawn as PNG
+		 * @param out receives the image
+		 * @throws IOException if writing fails
+		 */
+		void writePng(ImageOutputStream out) throws IOException {
+			try {
+				writer.setOutput(out);
+				writer.write(null, new IIOImage(image.getSubimage(0, 0, width, height), null, null), null);
+			} finally {
+				writer.reset();
+			}
+		}
+	}
+
+	/**
+	 * read the charts to export from the command line
+	 * @throws IllegalArgumentException if a line of the jobs file has neither 1 nor 3 fields
+	 */
+	private static List<Job> parseJobs(String tickers, LocalDate from, LocalDate to) {
+		List<Job> jobs = new ArrayList<>();
+		if (tickers.startsWith("@")) {
+			List<String> lines;
+			try {
+				lines = Files.readAllLines(Paths.get(tickers.substring(1)), StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			for (int i = 0; i < lines.size(); i++) {
+				String[] fields = lines.get(i).trim().split("\\s*,\\s*");
+				if (fields[0].isEmpty() || fields[0].startsWith("#")) {
+					continue;
+				}
+				if (fields.length != 1 && fields.length != 3) {
+					throw new IllegalArgumentException("line " + (i + 1) + " of " + tickers.substring(1)
+							+ " is not <ticker> or <ticker>,<from>,<to>: " + lines.get(i));
+				}
+				jobs.add(fields.length == 3
+						? new Job(fields[0], LocalDate.parse(fields[1]), LocalDate.parse(fields[2]))
+						: new Job(fields[0], from, to));
+			}
+		} else if (tickers.matches("\\d+")) {
+			for (int i = 0; i < Integer.parseInt(tickers); i++) {
+				jobs.add(new Job(String.format("T%04d", i), from, to));
+			}
+		} else {
+			for (String ticker : Arrays.asList(tickers.split(","))) {
+				jobs.add(new Job(ticker, from, to));
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * The main method exports the charts of the tickers given on the command line with the
+	 * default data source and prints the progress every tenth of them
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 4) {
+			System.err.println("usage: java -Djava.awt.headless=true ChartExporter <ticker,ticker,...|count|@jobs file> <from> <to> <directory>"
+					+ " [threads] [opening|closing|lowest|highest|volume|candlestick] [svg]");
+			System.exit(1);
+		}
+		System.setProperty("java.awt.headless", "true");
+		List<Job> jobs = null;
+		try {
+			jobs = parseJobs(args[0], LocalDate.parse(args[1]), LocalDate.parse(args[2]));
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		String chart = args.length > 5 ? args[5] : "closing";
+		StockBars.Column column = CANDLESTICK.equals(chart) ? null : StockBars.Column.valueOf(chart.toUpperCase());
+		boolean svg = args.length > 6 && "svg".equals(args[6]);
+
+		ChartExporter exporter = new ChartExporter(StockDataSource.getDefault(), threads, column, svg);
+		int step = Math.max(1, jobs.size() / 10);
+		Progress progress = exporter.exportAll(jobs, Paths.get(args[3]), current -> {
+			int finished = current.getExported() + current.getFailed();
+			if (finished % step == 0 && !current.isDone()) {
+				System.out.println(current);
+			}
+		});
+		System.out.println(progress);
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the data source and the number of threads
+	 * 		Storing the stock values drawn, null for candlesticks, and whether SVG files are written
+	 * 		Storing the image, pane and writer of each worker thread
+	 */
+	private final StockDataSource source;
+	private final int threads;
+	private final StockBars.Column column;
+	private final boolean svg;
+	private final ThreadLocal<Canvas> canvas;
+}
@@ -0,0 +1,710 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * ChartServer.java
+ *
+ * serves the daily stock values and the charts of any ticker over HTTP on the local machine, for
+ * other tools that want them without the windows. The values are loaded as the windows load them,
+ * through <code>StocksConfiguration</code>, so the universe store and the local cache are used when
+ * they are on, and the charts are drawn by the same plots into an image reused by each thread.
+ *
+ * GET /series?ticker=T&amp;from=2020-01-02&amp;to=2024-12-31[&amp;format=json|binary]
+ * 		the daily stock values, as JSON arrays of the dates and of each stock value, null where a
+ * 		value is missing, or as big-endian binary columns: the number of days, the epoch day of each
+ * 		day, the mask of its valid values, the opening, closing, lowest and highest prices as doubles
+ * 		and the volumes as longs
+ * GET /chart?ticker=T&amp;from=...&amp;to=...[&amp;width=1200&amp;height=700&amp;chart=closing|...|candlestick]
+ * 		the chart as PNG
+ * GET /metrics
+ * 		the counts of requests, cache hits and errors, the throughput and the latency percentiles, as JSON
+ *
+ * Every response is kept in a cache bounded in bytes, dropping the least recently used, by its
+ * endpoint and parameters, for <code>CACHE_TIME_TO_LIVE</code>, so that values appended to a
+ * series show within that time. Concurrent requests for a response not yet cached wait for the
+ * first of them instead of loading and drawing it again. Responses carry an ETag of their content
+ * and a request whose If-None-Match holds it is answered 304 without a body.
+ *
+ * The requests are handled by a fixed pool of threads, which bounds the number of charts drawn at
+ * once and so the memory of their images. The server listens on the loopback address only.
+ *
+ * usage: java -Djava.awt.headless=true [-Dstockviewer.source=csv:&lt;directory&gt;] ChartServer [port] [threads] [cache megabytes]
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class ChartServer {
+
+	private static final int DEFAULT_PORT = 8080;					// port listened on if none is given
+	private static final int DEFAULT_CACHE_MEGABYTES = 64;			// size of the response cache if none is given
+	private static final long CACHE_TIME_TO_LIVE = 60_000_000_000L;	// nanoseconds a response is served from the cache
+	private static final int CACHE_MAX_AGE = 60;					// seconds clients may keep a response without asking again
+	private static final int DEFAULT_WIDTH = 1200;					// width of a chart in pixels if none is asked
+	private static final int DEFAULT_HEIGHT = 700;					// height of a chart in pixels if none is asked
+	private static final int MIN_SIZE = 100;						// smallest width or height of a chart in pixels
+	private static final int MAX_SIZE = 4000;						// largest width or height of a chart in pixels
+	private static final Pattern TICKER_PATTERN = Pattern.compile("[A-Za-z0-9^][A-Za-z0-9._^-]{0,19}");	// accepted ticker names, never a path
+	private static final String CANDLESTICK = "candlestick";		// name of the candlestick chart in a request
+	private static final String NOT_AVAILABLE = "Data not avaialbe.";	// message of the sources for a ticker without values
+
+	/**
+	 * The ChartServer constructor
+	 * @param source provides the daily stock values
+	 * @param threads number of requests handled at once
+	 * @param cacheBytes most bytes of responses kept
+	 */
+	public ChartServer(StockDataSource source, int threads, long cacheBytes) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		this.source = source;
+		this.threads = threads;
+		this.cacheBytes = cacheBytes;
+		this.cache = new LinkedHashMap<>(16, 0.75f, true);
+		this.inFlight = new ConcurrentHashMap<>();
+		this.canvas = ThreadLocal.withInitial(ChartExporter.Canvas::new);
+		this.metrics = new Metrics();
+	}
+
+	/**
+	 * start listening
+	 * @param port the port on the loopback address, 0 for any free port
+	 * @return the port listened on
+	 * @throws IOException if the port cannot be bound
+	 */
+	public synchronized int start(int port) throws IOException {
+		if (server != null) {
+			throw new IllegalStateException("the server is already started");
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		workers = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "chart-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(workers);
+		server.createContext("/series", exchange -> handle(exchange, this::series));
+		server.createContext("/chart", exchange -> handle(exchange, this::chart));
+		server.createContext("/metrics", exchange -> handle(exchange, query -> {
+			Response response = new Response(metrics.toJson().getBytes(StandardCharsets.UTF_8), "application/json");
+			return () -> response;
+		}));
+		server.start();
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * stop listening, letting the requests being handled finish for up to a second
+	 */
+	public synchronized void stop() {
+		if (server == null) {
+			return;
+		}
+		server.stop(1);
+		workers.shutdown();
+		server = null;
+		workers = null;
+	}
+
+	/**
+	 * get the metrics of the requests handled so far
+	 * @return metrics
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * produces a response, possibly from the cache
+	 */
+	private interface Producer {
+		Response produce() throws Exception;
+	}
+
+	/**
+	 * reads the parameters of a request and gives the producer of its response
+	 */
+	private interface Endpoint {
+		Producer route(Map<String, String> query) throws Exception;
+	}
+
+	/**
+	 * a producer whose response is cached under a key
+	 */
+	private static final class Cached implements Producer {
+		private final String key;			// storing the endpoint and parameters
+		private final Producer producer;	// storing the producer of the response
+
+		Cached(String key, Producer producer) {
+			this.key = key;
+			this.producer = producer;
+		}
+
+		@Override
+		public Response produce() throws Exception {
+			return producer.produce();
+		}
+	}
+
+	/**
+	 * route the daily stock values
+	 */
+	private Producer series(Map<String, String> query) {
+		String ticker = ticker(query);
+		LocalDate from = date(query, "from"), to = date(query, "to");
+		range(from, to);
+		String format = query.getOrDefault("format", "json");
+		if (!format.equals("json") && !format.equals("binary")) {
+			throw new IllegalArgumentException("format must be json or binary");
+		}
+		return new Cached("series/" + ticker + "/" + from + "/" + to + "/" + format, () -> {
+			StockBars series = load(ticker, from, to);
+			return format.equals("json")
+					? new Response(seriesJson(ticker, series).getBytes(StandardCharsets.UTF_8), "application/json")
+					: new Response(seriesBinary(series), "application/octet-stream");
+		});
+	}
+
+	/**
+	 * route a chart
+	 */
+	private Producer chart(Map<String, String> query) {
+		String ticker = ticker(query);
+		LocalDate from = date(query, "from"), to = date(query, "to");
+		range(from, to);
+		int width = size(query, "width", DEFAULT_WIDTH), height = size(query, "height", DEFAULT_HEIGHT);
+		String chart = query.getOrDefault("chart", "closing");
+		StockBars.Column column;
+		try {
+			column = CANDLESTICK.equals(chart) ? null : StockBars.Column.valueOf(chart.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("chart must be opening, closing, lowest, highest, volume or candlestick");
+		}
+		return new Cached("chart/" + ticker + "/" + from + "/" + to + "/" + width + "x" + height + "/" + chart, () -> {
+			StockBars series = load(ticker, from, to);
+			long start = System.nanoTime();
+			ChartExporter.Canvas canvas = this.canvas.get();
+			canvas.draw(series, column, width, height);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+			try (MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+				canvas.writePng(out);
+			}
+			metrics.renderTime.addAndGet(System.nanoTime() - start);
+			metrics.rendered.incrementAndGet();
+			return new Response(bytes.toByteArray(), "image/png");
+		});
+	}
+
+	/**
+	 * load the daily stock values of a ticker, as the windows do. A ticker without values is not
+	 * found (404), a failure to reach or read the source is a bad gateway (502), and a load
+	 * cancelled by the shutdown is unavailable (503).
+	 */
+	private StockBars load(String ticker, LocalDate from, LocalDate to) throws StatusException {
+		long start = System.nanoTime();
+		try {
+			return StocksConfiguration.fetch(ticker, from, to, source).join().getSeries();
+		} catch (CancellationException e) {
+			throw new StatusException(503, ticker + ": the load was cancelled");
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			if (cause instanceof CancellationException) {
+				throw new StatusException(503, ticker + ": the load was cancelled");
+			}
+			if (NOT_AVAILABLE.equals(cause.getMessage())) {
+				throw new StatusException(404, ticker + ": " + cause.getMessage());
+			}
+			for (Throwable reason = cause; reason != null; reason = reason.getCause()) {
+				if (reason instanceof IOException || reason instanceof UncheckedIOException) {
+					throw new StatusException(502, ticker + ": " + cause.getMessage());
+				}
+			}
+			throw new StatusException(500, ticker + ": " + cause);
+		} finally {
+			metrics.loadTime.addAndGet(System.nanoTime() - start);
+			metrics.loaded.incrementAndGet();
+		}
+	}
+
+	/**
+	 * answer a request: its response is taken from the cache, from a concurrent request for the
+	 * same one, or produced, and sent unless the client already has it
+	 */
+	private void handle(HttpExchange exchange, Endpoint endpoint) {
+		long start = System.nanoTime();
+		int status;
+		try {
+			Response response;
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				status = 405;
+				response = new Response(("only GET is served").getBytes(StandardCharsets.UTF_8), "text/plain");
+			} else {
+				try {
+					Producer producer = endpoint.route(parseQuery(exchange.getRequestURI().getRawQuery()));
+					response = producer instanceof Cached ? cached((Cached) producer) : producer.produce();
+					status = 200;
+				} catch (IllegalArgumentException | DateTimeParseException e) {
+					status = 400;
+					response = new Response(String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8), "text/plain");
+				} catch (StatusException e) {
+					status = e.status;
+					response = new Response(e.getMessage().getBytes(StandardCharsets.UTF_8), "text/plain");
+				} catch (Exception e) {
+					status = 500;
+					response = new Response(String.valueOf(e).getBytes(StandardCharsets.UTF_8), "text/plain");
+				}
+			}
+			if (status == 200 && response.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				status = 304;
+			}
+			send(exchange, status, response);
+		} catch (IOException e) {
+			// the client went away
+			status = 499;
+		} finally {
+			exchange.close();
+		}
+		metrics.record(status, System.nanoTime() - start);
+	}
+
+	private void send(HttpExchange exchange, int status, Response response) throws IOException {
+		if (status == 200 || status == 304) {
+			exchange.getResponseHeaders().set("ETag", response.etag);
+			exchange.getResponseHeaders().set("Cache-Control", "max-age=" + CACHE_MAX_AGE);
+		}
+		if (status == 304) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", response.contentType);
+		exchange.sendResponseHeaders(status, response.body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(response.body);
+		}
+		metrics.bytesSent.addAndGet(response.body.length);
+	}
+
+	/**
+	 * get a response from the cache if it is not older than <code>CACHE_TIME_TO_LIVE</code>
+	 * @return response, or null if there is none
+	 */
+	private Response fresh(String key) {
+		synchronized (cache) {
+			Response response = cache.get(key);
+			if (response != null && System.nanoTime() - response.createdTime < CACHE_TIME_TO_LIVE) {
+				metrics.cacheHits.incrementAndGet();
+				return response;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * get a response from the cache, or wait for a concurrent request producing the same one, or
+	 * produce it and cache it
+	 */
+	private Response cached(Cached producer) throws Exception {
+		Response fresh = fresh(producer.key);
+		if (fresh != null) {
+			return fresh;
+		}
+		CompletableFuture<Response> mine = new CompletableFuture<>();
+		CompletableFuture<Response> running = inFlight.putIfAbsent(producer.key, mine);
+		if (running != null) {
+			metrics.shared.incrementAndGet();
+			try {
+				return running.join();
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+		try {
+			// the previous producer may have stored the response and left just before we came in
+			Response response = fresh(producer.key);
+			if (response != null) {
+				mine.complete(response);
+				return response;
+			}
+			response = producer.produce();
+			store(producer.key, response);
+			mine.complete(response);
+			return response;
+		} catch (Exception e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(producer.key, mine);
+		}
+	}
+
+	/**
+	 * keep a response, dropping the least recently used ones beyond the size of the cache
+	 */
+	private void store(String key, Response response) {
+		if (response.body.length > cacheBytes) {
+			return;
+		}
+		synchronized (cache) {
+			Response replaced = cache.put(key, response);
+			cachedBytes += response.body.length - (replaced != null ? replaced.body.length : 0);
+			for (Iterator<Response> eldest = cache.values().iterator(); cachedBytes > cacheBytes && eldest.hasNext(); ) {
+				cachedBytes -= eldest.next().body.length;
+				eldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * write the daily stock values as JSON arrays of each column
+	 */
+	private static String seriesJson(String ticker, StockBars series) {
+		int size = series.size();
+		StringBuilder json = new StringBuilder(64 + size * 80);
+		json.append("{\"ticker\":\"").append(ticker).append("\",\"dates\":[");
+		for (int i = 0; i < size; i++) {
+			json.append(i > 0 ? ",\"" : "\"").append(series.getDate(i)).append('"');
+		}
+		json.append(']');
+		for (StockBars.Column column : StockBars.Column.values()) {
+			json.append(",\"").append(column.getTitle().toLowerCase()).append("\":[");
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					json.append(',');
+				}
+				if (!series.isValid(i, column)) {
+					json.append("null");
+				} else if (column == StockBars.Column.VOLUME) {
+					json.append(series.getVolume(i));
+				} else {
+					json.append(series.getValue(i, column));
+				}
+			}
+			json.append(']');
+		}
+		return json.append("}\n").toString();
+	}
+
+	/**
+	 * write the daily stock values as big-endian binary columns
+	 */
+	private static byte[] seriesBinary(StockBars series) {
+		int size = series.size();
+		ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + size * (2 * Integer.BYTES + 4 * Double.BYTES + Long.BYTES));
+		buffer.putInt(size);
+		for (int i = 0; i < size; i++) {
+			buffer.putInt(series.getEpochDay(i));
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.putInt(series.validMask(i));
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.putDouble(series.getOpening(i));
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.putDouble(series.getClosing(i));
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.putDouble(series.getLowest(i));
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.putDouble(series.getHighest(i));
+		}
+		for (int i = 0; i < size; i++) {
+			buffer.putLong(series.getVolume(i));
+		}
+		return buffer.array();
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> query = new HashMap<>();
+		if (rawQuery == null || rawQuery.isEmpty()) {
+			return query;
+		}
+		for (String parameter : rawQuery.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals > 0) {
+				query.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+						URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return query;
+	}
+
+	private static String ticker(Map<String, String> query) {
+		String ticker = query.get("ticker");
+		if (ticker == null || !TICKER_PATTERN.matcher(ticker).matches()) {
+			throw new IllegalArgumentException("ticker is missing or invalid");
+		}
+		return ticker;
+	}
+
+	private static void range(LocalDate from, LocalDate to) {
+		if (!from.isBefore(to)) {
+			throw new IllegalArgumentException("from must be before to");
+		}
+	}
+
+	private static LocalDate date(Map<String, String> query, String name) {
+		String date = query.get(name);
+		if (date == null) {
+			throw new IllegalArgumentException(name + " is missing");
+		}
+		return LocalDate.parse(date);
+	}
+
+	private static int size(Map<String, String> query, String name, int defaultSize) {
+		String size = query.get(name);
+		if (size == null) {
+			return defaultSize;
+		}
+		int value;
+		try {
+			value = Integer.parseInt(size);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " is not a number");
+		}
+		if (value < MIN_SIZE || value > MAX_SIZE) {
+			throw new IllegalArgumentException(name + " must be between " + MIN_SIZE + " and " + MAX_SIZE);
+		}
+		return value;
+	}
+
+	/**
+	 * a failure to be answered with a status
+	 */
+	private static final class StatusException extends Exception {
+		private final int status;	// storing the status of the answer
+
+		StatusException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	/**
+	 * the body of a response, its type and its entity tag
+	 */
+	private static final class Response {
+		private final byte[] body;			// storing the bytes sent
+		private final String contentType;	// storing the media type of the body
+		private final String etag;			// storing the entity tag, from the length and checksum of the body
+		private final long createdTime;		// storing when the response was produced
+
+		Response(byte[] body, String contentType) {
+			CRC32C checksum = new CRC32C();
+			checksum.update(body);
+			this.body = body;
+			this.contentType = contentType;
+			this.etag = "\"" + Integer.toHexString(body.length) + "-" + Long.toHexString(checksum.getValue()) + "\"";
+			this.createdTime = System.nanoTime();
+		}
+	}
+
+	/**
+	 * the counts, throughput and latencies of the requests handled. The latencies are kept in a
+	 * histogram of four buckets per power of two of microseconds, so the percentiles are within a
+	 * quarter of their value.
+	 */
+	public static final class Metrics {
+		private static final int SUB_BUCKETS = 4;		// buckets per power of two
+		private static final int BUCKETS = 40 * SUB_BUCKETS;	// buckets up to about 12 days
+
+		private final long startTime;				// storing when the server was created
+		private final AtomicLong requests;			// storing the number of requests answered
+		private final AtomicLong notModified;		// storing the number of requests answered 304
+		private final AtomicLong clientErrors;		// storing the number of requests answered 4xx
+		private final AtomicLong serverErrors;		// storing the number of requests answered 5xx
+		private final AtomicLong cacheHits;			// storing the number of responses taken from the cache
+		private final AtomicLong shared;			// storing the number of responses taken from a concurrent request
+		private final AtomicLong loaded;			// storing the number of series loaded
+		private final AtomicLong loadTime;			// storing the nanoseconds spent loading series
+		private final AtomicLong rendered;			// storing the number of charts drawn
+		private final AtomicLong renderTime;		// storing the nanoseconds spent drawing and encoding charts
+		private final AtomicLong bytesSent;			// storing the number of bytes of the bodies sent
+		private final AtomicLong maxLatency;		// storing the longest latency in nanoseconds
+		private final AtomicLongArray latencies;	// storing the number of requests of each latency bucket
+
+		Metrics() {
+			this.startTime = System.nanoTime();
+			this.requests = new AtomicLong();
+			this.notModified = new AtomicLong();
+			this.clientErrors = new AtomicLong();
+			this.serverErrors = new AtomicLong();
+			this.cacheHits = new AtomicLong();
+			this.shared = new AtomicLong();
+			this.loaded = new AtomicLong();
+			this.loadTime = new AtomicLong();
+			this.rendered = new AtomicLong();
+			this.renderTime = new AtomicLong();
+			this.bytesSent = new AtomicLong();
+			this.maxLatency = new AtomicLong();
+			this.latencies = new AtomicLongArray(BUCKETS);
+		}
+
+		/**
+		 * count an answered request
+		 */
+		void record(int status, long latency) {
+			requests.incrementAndGet();
+			if (status == 304) {
+				notModified.incrementAndGet();
+			} else if (status >= 500) {
+				serverErrors.incrementAndGet();
+			} else if (status >= 400) {
+				clientErrors.incrementAndGet();
+			}
+			maxLatency.accumulateAndGet(latency, Math::max);
+			latencies.incrementAndGet(bucketOf(Math.max(1, latency / 1000)));
+		}
+
+		/**
+		 * get the number of requests answered
+		 * @return number of requests
+		 */
+		public long getRequests() {
+			return requests.get();
+		}
+
+		/**
+		 * get the number of responses taken from the cache
+		 * @return number of responses
+		 */
+		public long getCacheHits() {
+			return cacheHits.get();
+		}
+
+		/**
+		 * get a latency percentile, the upper edge of the bucket the percentile falls in
+		 * @param percentile between 0 and 100
+		 * @return latency in microseconds, 0 if no request was answered
+		 */
+		public long getLatencyPercentile(double percentile) {
+			long total = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				total += latencies.get(b);
+			}
+			long rank = (long) Math.ceil(total * percentile / 100.0);
+			long seen = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				seen += latencies.get(b);
+				if (seen >= Math.max(1, rank)) {
+					return Math.min(upperEdge(b), maxLatency.get() / 1000 + 1);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * get the number of requests answered per second since the server was created
+		 * @return requests per second
+		 */
+		public double getRequestsPerSecond() {
+			double seconds = (System.nanoTime() - startTime) / 1e9;
+			return seconds > 0 ? requests.get() / seconds : 0;
+		}
+
+		/**
+		 * write the metrics as JSON
+		 * @return JSON object
+		 */
+		public String toJson() {
+			return String.format("{\"requests\":%d,\"requestsPerSecond\":%.1f,\"notModified\":%d,\"clientErrors\":%d,\"serverErrors\":%d,"
+							+ "\"cacheHits\":%d,\"shared\":%d,\"loaded\":%d,\"loadMillisPerSeries\":%.2f,\"rendered\":%d,\"renderMillisPerChart\":%.2f,"
+							+ "\"bytesSent\":%d,\"latencyMicros\":{\"p50\":%d,\"p90\":%d,\"p99\":%d,\"max\":%d}}%n",
+					requests.get(), getRequestsPerSecond(), notModified.get(), clientErrors.get(), serverErrors.get(),
+					cacheHits.get(), shared.get(), loaded.get(), loadTime.get() / 1e6 / Math.max(1, loaded.get()),
+					rendered.get(), renderTime.get() / 1e6 / Math.max(1, rendered.get()), bytesSent.get(),
+					getLatencyPercentile(50), getLatencyPercentile(90), getLatencyPercentile(99), maxLatency.get() / 1000);
+		}
+
+		@Override
+		public String toString() {
+			return toJson().trim();
+		}
+
+		/**
+		 * get the bucket of a latency: its power of two and the next two bits
+		 */
+		private static int bucketOf(long micros) {
+			int exponent = 63 - Long.numberOfLeadingZeros(micros);
+			int sub = exponent >= 2 ? (int) (micros >>> (exponent - 2)) & (SUB_BUCKETS - 1) : (int) (micros << (2 - exponent)) & (SUB_BUCKETS - 1);
+			return Math.min(BUCKETS - 1, exponent * SUB_BUCKETS + sub);
+		}
+
+		private static long upperEdge(int bucket) {
+			int exponent = bucket / SUB_BUCKETS, sub = bucket % SUB_BUCKETS;
+			return ((long) (SUB_BUCKETS + sub + 1) << exponent) / SUB_BUCKETS;
+		}
+	}
+
+	/**
+	 * The main method serves the default data source until the process is stopped
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length > 3) {
+			System.err.println("usage: java -Djava.awt.headless=true [-Dstockviewer.source=csv:<directory>] ChartServer [port] [threads] [cache megabytes]");
+			System.exit(1);
+		}
+		System.setProperty("java.awt.headless", "true");
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+		long cacheBytes = (args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_CACHE_MEGABYTES) << 20;
+		ChartServer server = new ChartServer(StockDataSource.getDefault(), threads, cacheBytes);
+		port = server.start(port);
+		System.out.printf("serving %s on http://%s:%d/ with %d threads%n", StockDataSource.getDefault().getName(),
+				InetAddress.getLoopbackAddress().getHostAddress(), port, threads);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(server.getMetrics())));
+		try {
+			Thread.currentThread().join();
+		} catch (InterruptedException e) {
+			server.stop();
+		}
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the data source, the number of threads and the most bytes of responses kept
+	 * 		Storing the responses kept, from the least recently used, and their bytes
+	 * 		Storing the responses being produced by key
+	 * 		Storing the image, pane and writer of each thread, and the metrics
+	 * 		Storing the server and its threads while started
+	 */
+	private final StockDataSource source;
+	private final int threads;
+	private final long cacheBytes;
+	private final LinkedHashMap<String, Response> cache;
+	private long cachedBytes;
+	private final ConcurrentHashMap<String, CompletableFuture<Response>> inFlight;
+	private final ThreadLocal<ChartExporter.Canvas> canvas;
+	private final Metrics metrics;
+	private HttpServer server;
+	private ExecutorService workers;
+}
@@ -0,0 +1,155 @@
+import java.util.Arrays;
+
+/**
+ * ColumnDecimator.java
+ *
+ * reduces the points of a plot to what can be seen at its width. The points are grouped by the
+ * pixel column nearest to them and each group keeps at most four of them: the first, the lowest,
+ * the highest and the last. Drawn as a polyline, these give the same vertical extent in every
+ * column and the same connections between columns as all points would, so the envelope of the
+ * line is kept while the work per paint depends on the width and not on the number of points.
+ * The selected indices are cached until the points, the range or the width change.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class ColumnDecimator {
+
+	public static final int POINTS_PER_COLUMN = 4;	// maximum number of points kept per pixel column
+	public static final int GAP = -1;				// index that marks a missing value between runs
+
+	/**
+	 * The ColumnDecimator constructor
+	 * @param points to reduce
+	 */
+	public ColumnDecimator(Points points) {
+		this.points = points;
+		this.indices = new int[0];
+		this.cachedVersion = -1;
+	}
+
+	/**
+	 * select the points to draw from a range of points, where the X values from <code>minX</code>
+	 * to <code>maxX</code> span a number of pixel columns. The result is read with
+	 * <code>getIndices</code>; it is recomputed only if one of the arguments or the points changed
+	 * since the last call.
+	 * @param from index of the first point
+	 * @param to index after the last point
+	 * @param minX is the X value at the left edge of the first column
+	 * @param maxX is the X value at the right edge of the last column
+	 * @param columns number of pixel columns
+	 * @return number of selected indices, including <code>GAP</code> markers
+	 */
+	public int decimate(int from, int to, double minX, double maxX, int columns) {
+		if (from != cachedFrom || to != cachedTo || minX != cachedMinX || maxX != cachedMaxX || columns != cachedColumns
+				|| points.getVersion() != cachedVersion) {
+			compute(from, to, minX, maxX, Math.max(1, columns));
+			cachedFrom = from;
+			cachedTo = to;
+			cachedMinX = minX;
+			cachedMaxX = maxX;
+			cachedColumns = columns;
+			cachedVersion = points.getVersion();
+		}
+		return count;
+	}
+
+	/**
+	 * get the selected indices of the last <code>decimate</code> call, in ascending order with
+	 * <code>GAP</code> where a missing value interrupts the line
+	 * @return indices of the points to draw, valid up to the returned count
+	 */
+	public int[] getIndices() {
+		return indices;
+	}
+
+	/**
+	 * group the points by pixel column and keep the first, lowest, highest and last of each group
+	 */
+	private void compute(int from, int to, double minX, double maxX, int columns) {
+		count = 0;
+		int expected = Math.min(to - from, columns * POINTS_PER_COLUMN);
+		if (indices.length < expected) {
+			indices = new int[expected];
+		}
+		if (to <= from) {
+			return;
+		}
+		double scale = columns / Math.max(maxX - minX, Double.MIN_VALUE);
+		int column = -1;
+		first = -1;
+		for (int i = from; i < to; i++) {
+			double y = points.getY(i);
+			if (Double.isNaN(y)) {
+				flush();
+				if (count > 0 && indices[count - 1] != GAP) {
+					append(GAP);
+				}
+				continue;
+			}
+			// each point belongs to the pixel column nearest to its screen X
+			int c = (int) Math.round((points.getX(i) - minX) * scale);
+			if (first < 0 || c != column) {
+				flush();
+				column = c;
+				first = last = lowest = highest = i;
+				lowestY = highestY = y;
+			} else {
+				last = i;
+				if (y < lowestY) {
+					lowest = i;
+					lowestY = y;
+				} else if (y > highestY) {
+					highest = i;
+					highestY = y;
+				}
+			}
+		}
+		flush();
+	}
+
+	/**
+	 * append the points kept of the current group in ascending order, each once
+	 */
+	private void flush() {
+		if (first < 0) {
+			return;
+		}
+		append(first);
+		int low = Math.min(lowest, highest);
+		int high = Math.max(lowest, highest);
+		if (low != first) {
+			append(low);
+		}
+		if (high != low && high != first) {
+			append(high);
+		}
+		if (last != high && last != first) {
+			append(last);
+		}
+		first = -1;
+	}
+
+	private void append(int index) {
+		if (count == indices.length) {
+			indices = Arrays.copyOf(indices, Math.max(16, count * 2));
+		}
+		indices[count++] = index;
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the points to reduce, the selected indices and their number
+	 * 		Storing the arguments and the version of the points of the cached selection
+	 * 		Storing the group of the current column: its first, lowest, highest and last point
+	 */
+	private final Points points;
+	private int[] indices;
+	private int count;
+	private int cachedFrom, cachedTo, cachedColumns;
+	private double cachedMinX, cachedMaxX;
+	private long cachedVersion;
+	private int first, last, lowest, highest;
+	private double lowestY, highestY;
+}
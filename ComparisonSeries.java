@@ -0,0 +1,211 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ComparisonSeries.java
+ *
+ * aligns the closing prices of several tickers on one calendar so that they can be drawn over
+ * each other. Each ticker is normalized to its percent change from its first closing price in
+ * the range. Tickers may trade on different days, so the calendar is the union of their days,
+ * found by merging their sorted epoch days, and each ticker is then joined to it in a single
+ * forward pass. On a day a ticker did not trade, its last change is carried forward; before its
+ * first day and after its last day it is missing.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class ComparisonSeries {
+
+	/**
+	 * The ComparisonSeries constructor
+	 * @param tickers the ticker names, in the order of <code>series</code>
+	 * @param series the daily stock values of each ticker, sorted by date
+	 */
+	public ComparisonSeries(List<String> tickers, List<StockBars> series) {
+		if (tickers.size() != series.size()) {
+			throw new IllegalArgumentException("one series is needed for each ticker");
+		}
+		this.tickers = new ArrayList<>(tickers);
+		int[] epochDays = mergeDays(series);
+		this.calendar = TradingCalendar.of(epochDays);
+		this.changes = new double[series.size()][];
+		for (int t = 0; t < series.size(); t++) {
+			this.changes[t] = join(series.get(t), epochDays);
+		}
+	}
+
+	/**
+	 * create the comparison of loaded configurations
+	 * @param configurations by ticker, as returned by <code>BatchLoader.loadAll</code>
+	 * @return the aligned and normalized series
+	 */
+	public static ComparisonSeries of(Map<String, StocksConfiguration> configurations) {
+		List<String> tickers = new ArrayList<>();
+		List<StockBars> series = new ArrayList<>();
+		for (Map.Entry<String, StocksConfiguration> entry : configurations.entrySet()) {
+			tickers.add(entry.getKey());
+			series.add(entry.getValue().getSeries());
+		}
+		return new ComparisonSeries(tickers, series);
+	}
+
+	/**
+	 * merge the sorted days of all series into their sorted union, advancing a cursor per series
+	 * @param series the daily stock values of each ticker
+	 * @return the days on which at least one ticker traded
+	 */
+	private static int[] mergeDays(List<StockBars> series) {
+		int count = series.size();
+		int[] cursors = new int[count];
+		int[] union = new int[16];
+		int size = 0;
+		while (true) {
+			// the lowest day at any cursor is the next day of the union
+			int day = Integer.MAX_VALUE;
+			for (int t = 0; t < count; t++) {
+				StockBars bars = series.get(t);
+				if (cursors[t] < bars.size()) {
+					day = Math.min(day, bars.getEpochDay(cursors[t]));
+				}
+			}
+			if (day == Integer.MAX_VALUE) {
+				return Arrays.copyOf(union, size);
+			}
+			if (size == union.length) {
+				union = Arrays.copyOf(union, size * 2);
+			}
+			union[size++] = day;
+			for (int t = 0; t < count; t++) {
+				StockBars bars = series.get(t);
+				// duplicated days in a series are skipped along
+				while (cursors[t] < bars.size() && bars.getEpochDay(cursors[t]) == day) {
+					cursors[t]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * join a series to the union of days and turn its closing prices into percent changes
+	 * @param bars the daily stock values of one ticker
+	 * @param days the union of days
+	 * @return the change of each day of the union, NaN where it is missing
+	 */
+	private static double[] join(StockBars bars, int[] days) {
+		double[] change = new double[days.length];
+		Arrays.fill(change, Double.NaN);
+		double base = Double.NaN;
+		double last = Double.NaN;
+		int j = 0;
+		for (int i = 0; i < days.length && j < bars.size(); i++) {
+			if (bars.getEpochDay(j) == days[i]) {
+				// take the last row of the day, the union has each day once
+				while (j + 1 < bars.size() && bars.getEpochDay(j + 1) == days[i]) {
+					j++;
+				}
+				if (bars.isValid(j, StockBars.Column.CLOSING)) {
+					double closing = bars.getClosing(j);
+					if (Double.isNaN(base) && closing > 0) {
+						base = closing;
+					}
+					if (!Double.isNaN(base)) {
+						last = (closing / base - 1) * 100;
+					}
+				}
+				j++;
+			}
+			// a day the ticker did not trade keeps its last change
+			change[i] = last;
+		}
+		return change;
+	}
+
+	/**
+	 * get the number of days of the union
+	 * @return number of days
+	 */
+	public int size() {
+		return calendar.size();
+	}
+
+	/**
+	 * get a day of the union as number of days since 1970-01-01
+	 * @param index of the day
+	 * @return epoch day
+	 */
+	public int getEpochDay(int index) {
+		return calendar.getEpochDay(index);
+	}
+
+	/**
+	 * get a day of the union as a date
+	 * @param index of the day
+	 * @return date
+	 */
+	public LocalDate getDate(int index) {
+		return calendar.getDate(index);
+	}
+
+	/**
+	 * get the calendar of the days of the union, whose indices are the X values of the points
+	 * @return calendar
+	 */
+	public TradingCalendar getCalendar() {
+		return calendar;
+	}
+
+	/**
+	 * get the number of compared tickers
+	 * @return number of tickers
+	 */
+	public int getTickerCount() {
+		return tickers.size();
+	}
+
+	/**
+	 * get the name of a compared ticker
+	 * @param ticker index of the ticker
+	 * @return ticker name
+	 */
+	public String getTicker(int ticker) {
+		return tickers.get(ticker);
+	}
+
+	/**
+	 * get the percent change of a ticker from its first closing price
+	 * @param ticker index of the ticker
+	 * @param index of the day
+	 * @return change in percent, NaN if the ticker has no price yet or any more
+	 */
+	public double getChange(int ticker, int index) {
+		return changes[ticker][index];
+	}
+
+	/**
+	 * create the points of a ticker to be drawn in a plot, one per day of the union
+	 * @param ticker index of the ticker
+	 * @return points whose X values are the indices of the days
+	 */
+	public Points toPoints(int ticker) {
+		Points points = new Points();
+		double[] change = changes[ticker];
+		for (int i = 0; i < change.length; i++) {
+			points.add(i, change[i]);
+		}
+		return points;
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the ticker names
+	 * 		Storing the calendar of the union of the days of all tickers
+	 * 		Storing the percent changes of each ticker on each day of the union
+	 */
+	private final List<String> tickers;
+	private final TradingCalendar calendar;
+	private final double[][] changes;
+}
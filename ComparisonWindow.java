@@ -0,0 +1,87 @@
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Toolkit;
+import javax.swing.*;
+
+/**
+ * ComparisonWindow.java
+ *
+ * creates a frame that compares several tickers in one plot. Each ticker is drawn as its percent
+ * change from the start of the range, the first one with the stroke of the other charts and the
+ * rest as thin overlays in colors of their own, listed in a legend beside the plot.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class ComparisonWindow extends JFrame {
+
+	private static final float OVERLAY_WIDTH = 1f;			// width of the lines of the compared tickers, thin enough to draw dozens fast
+	private static final float GOLDEN_RATIO = 0.618034f;	// spreads the hues of any number of tickers evenly
+
+	private ComparisonSeries comparison;	// storing the aligned and normalized tickers
+	private Plot plot;						// creating a Plot object that draws all tickers
+
+	/**
+	 * The ComparisonWindow constructor that draws the tickers and shows the frame
+	 * @param comparison the aligned and normalized tickers, at least one
+	 */
+	public ComparisonWindow(ComparisonSeries comparison) {
+		super("Comparison of " + comparison.getTickerCount() + " tickers");
+		this.comparison = comparison;
+
+		plot = new Plot(comparison.toPoints(0), comparison.getCalendar());
+		JPanel legend = new JPanel();
+		legend.setLayout(new BoxLayout(legend, BoxLayout.Y_AXIS));
+		legend.add(legendLabel(0, Plot.GRAPH_COLOR));
+		for (int t = 1; t < comparison.getTickerCount(); t++) {
+			Color color = colorOf(t);
+			plot.addOverlay(comparison.toPoints(t), color, OVERLAY_WIDTH);
+			legend.add(legendLabel(t, color));
+		}
+		this.add(plot);
+		this.add(new JScrollPane(legend), BorderLayout.EAST);
+
+		setTitle("Stock Market Viewer - Comparison in %");
+		Toolkit tk = Toolkit.getDefaultToolkit();
+		Dimension dim = tk.getScreenSize();
+		setSize(dim.width/2, dim.height/2);
+		setLocationRelativeTo(getRootPane());
+		setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+		setVisible(true);
+	}
+
+	/**
+	 * get the plot of the compared tickers
+	 * @return plot
+	 */
+	public Plot getPlot() {
+		return plot;
+	}
+
+	/**
+	 * create the legend entry of a ticker: its name and its change over the range in its color
+	 * @param ticker index of the ticker
+	 * @param color of its line
+	 * @return the label
+	 */
+	private JLabel legendLabel(int ticker, Color color) {
+		double change = Double.NaN;
+		for (int i = comparison.size() - 1; i >= 0 && Double.isNaN(change); i--) {
+			change = comparison.getChange(ticker, i);
+		}
+		JLabel label = new JLabel(String.format("%s %+.2f%%", comparison.getTicker(ticker), change));
+		label.setForeground(color.darker());
+		return label;
+	}
+
+	/**
+	 * get the color of a compared ticker, distinct from the colors of the tickers before it
+	 * @param ticker index of the ticker
+	 * @return color of its line
+	 */
+	static Color colorOf(int ticker) {
+		return Color.getHSBColor((ticker * GOLDEN_RATIO) % 1, 0.8f, 0.85f);
+	}
+}
@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * CsvDirectoryDataSource.java
+ *
+ * streams the daily stock values from local files, one <code>&lt;TICKER&gt;.csv</code> file per
+ * ticker in the format of the remote feed. This allows the ingest path to be run and measured
+ * without any network.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class CsvDirectoryDataSource implements StockDataSource {
+
+	// reading files blocks, so it is kept off the common pool on threads of its own
+	private static final ExecutorService READERS = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "csv-source-reader");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * The CsvDirectoryDataSource constructor
+	 * @param directory that holds the CSV files
+	 */
+	public CsvDirectoryDataSource(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * get the file of a ticker
+	 * @param ticker the ticker name
+	 * @return path of the CSV file
+	 */
+	public Path fileOf(String ticker) {
+		return directory.resolve(ticker + ".csv");
+	}
+
+	@Override
+	public CompletableFuture<Void> stream(String ticker, LocalDate from, LocalDate to, StockRowHandler handler) {
+		int fromDay = (int) from.toEpochDay();
+		int toDay = (int) to.toEpochDay();
+		// the files hold the whole history, so only the rows inside the range are handed over
+		StockCsvParser parser = new StockCsvParser((day, opening, closing, lowest, highest, volume, validMask) -> {
+			if (day >= fromDay && day <= toDay) {
+				handler.row(day, opening, closing, lowest, highest, volume, validMask);
+			}
+		});
+		return CompletableFuture.runAsync(() -> {
+			try (InputStream stream = Files.newInputStream(fileOf(ticker))) {
+				parser.parse(stream);
+			} catch (NoSuchFileException e) {
+				throw new CompletionException(new Exception("Data not avaialbe.", e));
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, READERS);
+	}
+
+	@Override
+	public String getName() {
+		return "csv-" + directory.toAbsolutePath().normalize().getFileName();
+	}
+
+	/**
+	 * the files are local and may be edited at any time, so their values are not cached
+	 * @return null
+	 */
+	@Override
+	public String getCacheKey() {
+		return null;
+	}
+
+	private final Path directory;	// storing the directory of the CSV files
+}
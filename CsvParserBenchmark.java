@@ -0,0 +1,158 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * CsvParserBenchmark.java
+ *
+ * measures how many rows per second the historical prices feed can be parsed with. The
+ * original line based loading (<code>split</code>, <code>LocalDate.parse</code> and
+ * <code>Double.parseDouble</code> per row) is compared with <code>StockCsvParser</code> on the same
+ * generated input, which contains a share of missing values like the real feed.
+ *
+ * usage: java CsvParserBenchmark [rows] [rounds]
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class CsvParserBenchmark {
+
+	private static final int DEFAULT_ROWS = 1_000_000;	// number of generated rows
+	private static final int DEFAULT_ROUNDS = 5;		// measured rounds of each parser after warm up
+
+	/**
+	 * The main method generates the input and prints the rows per second of both parsers
+	 */
+	public static void main(String[] args) throws IOException {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+		byte[] csv = generate(rows, new Random(42));
+		System.out.printf("input: %,d rows, %,d bytes%n", rows, csv.length);
+
+		// warm up both paths so that the measured rounds run compiled code
+		for (int i = 0; i < 3; i++) {
+			legacyLoad(csv);
+			streamingLoad(csv);
+		}
+
+		report("line split (legacy load)", rows, rounds, () -> legacyLoad(csv));
+		report("StockCsvParser", rows, rounds, () -> streamingLoad(csv));
+	}
+
+	/**
+	 * run a parser several times and print its best and average throughput
+	 * @param name of the parser
+	 * @param rows number of rows in the input
+	 * @param rounds number of measured runs
+	 * @param run the parsing to measure
+	 */
+	private static void report(String name, int rows, int rounds, ParseRun run) throws IOException {
+		long best = Long.MAX_VALUE;
+		long total = 0;
+		int parsed = 0;
+		for (int i = 0; i < rounds; i++) {
+			long start = System.nanoTime();
+			parsed = run.parse();
+			long elapsed = System.nanoTime() - start;
+			best = Math.min(best, elapsed);
+			total += elapsed;
+		}
+		System.out.printf("%-26s %,12.0f rows/s best, %,12.0f rows/s average (%,d rows)%n", name,
+				rows / (best / 1e9), rows / (total / 1e9 / rounds), parsed);
+	}
+
+	/**
+	 * the loading loop of <code>StocksConfiguration.load</code> before the streaming parser
+	 * @param csv the input
+	 * @return number of rows read
+	 */
+	private static int legacyLoad(byte[] csv) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(csv)));
+		List<DailyStockValues> stockValueList = new ArrayList<>();
+		boolean firstLine = true;
+		String line = null;
+		while ((line = reader.readLine()) != null) {
+			if (firstLine) {
+				firstLine = false;
+				continue;
+			}
+			String[] parts = line.split(",");
+			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d-MMM-uu", Locale.ENGLISH);
+			LocalDate date = LocalDate.parse(parts[0], formatter);
+			stockValueList.add(new DailyStockValues(date, parseDouble(parts[1]), parseDouble(parts[4]),
+					parseDouble(parts[3]), parseDouble(parts[2]), parseInteger(parts[5])));
+		}
+		return stockValueList.size();
+	}
+
+	/**
+	 * parse the input with <code>StockCsvParser</code> into a columnar series
+	 * @param csv the input
+	 * @return number of rows read
+	 */
+	private static int streamingLoad(byte[] csv) throws IOException {
+		StockSeries series = new StockSeries();
+		new StockCsvParser(series::add).parse(new ByteArrayInputStream(csv));
+		return series.size();
+	}
+
+	private static Double parseDouble(String s) {
+		try {
+			return Double.parseDouble(s);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static Integer parseInteger(String s) {
+		try {
+			return Integer.parseInt(s);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * generate a feed in the Google Finance format, last day first, where about one row in
+	 * twenty has a missing price
+	 * @param rows number of rows
+	 * @param random source of the prices
+	 * @return CSV bytes
+	 */
+	private static byte[] generate(int rows, Random random) {
+		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d-MMM-uu", Locale.ENGLISH);
+		StringBuilder builder = new StringBuilder(rows * 48);
+		builder.append("Date,Open,High,Low,Close,Volume\n");
+		LocalDate date = LocalDate.of(2015, 12, 31);
+		double price = 100;
+		for (int i = 0; i < rows; i++) {
+			price = Math.max(1, price + random.nextGaussian());
+			String missing = random.nextInt(20) == 0 ? "-" : null;
+			builder.append(date.format(formatter)).append(',')
+					.append(missing != null ? missing : String.format(Locale.ROOT, "%.2f", price)).append(',')
+					.append(String.format(Locale.ROOT, "%.2f", price + 1)).append(',')
+					.append(String.format(Locale.ROOT, "%.2f", price - 1)).append(',')
+					.append(String.format(Locale.ROOT, "%.2f", price + 0.5)).append(',')
+					.append(random.nextInt(50_000_000)).append('\n');
+			// keep the dates inside the range of a two digit year
+			date = date.getYear() > 2000 ? date.minusDays(1) : LocalDate.of(2015, 12, 31);
+		}
+		return builder.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * a parser run that can be measured
+	 */
+	private interface ParseRun {
+		int parse() throws IOException;
+	}
+}
@@ -0,0 +1,74 @@
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32C;
+
+/**
+ * HttpStockDataSource.java
+ *
+ * streams the daily stock values from a remote CSV feed, by default the Google Finance URL of
+ * <code>StocksConfiguration.URL_PATTERN</code>. The requests are spaced by the shared
+ * <code>RateLimiter</code> of the source.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class HttpStockDataSource implements StockDataSource {
+
+	/**
+	 * The HttpStockDataSource constructor for the Google Finance feed
+	 */
+	public HttpStockDataSource() {
+		this(StocksConfiguration.URL_PATTERN, StocksConfiguration.DATE_PATTERN);
+	}
+
+	/**
+	 * The HttpStockDataSource constructor for any feed in the same CSV format
+	 * @param urlPattern <code>String.format</code> pattern taking the ticker, start and end dates
+	 * @param datePattern the pattern of the dates in the URL
+	 */
+	public HttpStockDataSource(String urlPattern, String datePattern) {
+		this.urlPattern = urlPattern;
+		this.datePattern = datePattern;
+		this.dateFormatter = DateTimeFormatter.ofPattern(datePattern);
+	}
+
+	/**
+	 * get the URL of the daily prices of a ticker between two dates
+	 * @param ticker the ticker name
+	 * @param from the start date of daily prices
+	 * @param to the end date of daily prices
+	 * @return URL with the ticker and the dates
+	 */
+	public String getURLString(String ticker, LocalDate from, LocalDate to) {
+		return String.format(urlPattern, ticker, from.format(dateFormatter), to.format(dateFormatter));
+	}
+
+	@Override
+	public CompletableFuture<Void> stream(String ticker, LocalDate from, LocalDate to, StockRowHandler handler) {
+		String url = getURLString(ticker, from, to);
+		return RateLimiter.forSource(getName()).submit(() -> StockFetcher.fetch(url, handler));
+	}
+
+	@Override
+	public String getName() {
+		return "http";
+	}
+
+	/**
+	 * the key tells the feeds apart by a checksum of their URL and date patterns
+	 * @return cache key
+	 */
+	@Override
+	public String getCacheKey() {
+		CRC32C checksum = new CRC32C();
+		checksum.update((urlPattern + "\n" + datePattern).getBytes(StandardCharsets.UTF_8));
+		return String.format("http-%08x", checksum.getValue());
+	}
+
+	private final String urlPattern;				// storing the URL pattern of the feed
+	private final String datePattern;				// storing the pattern of the dates in the URL
+	private final DateTimeFormatter dateFormatter;	// storing the formatter of the dates in the URL
+}
@@ -0,0 +1,458 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * IndicatorEngine.java
+ *
+ * computes technical indicators of a series of daily stock values: simple and exponential moving
+ * averages, Bollinger bands, the relative strength index, MACD and the volume weighted average
+ * price. Each indicator is computed in one streaming pass over primitive arrays of its inputs and
+ * keeps its running state per bar, so when days are appended or the last day changes only those
+ * days are computed again, from the state of the day before them, in constant time per day.
+ * The results are points that a <code>Plot</code> draws directly. An indicator is computed the
+ * first time it is asked for and kept under its name and parameters, so showing and hiding it, or
+ * asking for another one, never computes the ones already kept again.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class IndicatorEngine {
+
+	private static final int INITIAL_CAPACITY = 256;	// initial number of days of the arrays
+
+	/**
+	 * The IndicatorEngine constructor
+	 * @param series of daily stock values sorted by date
+	 */
+	public IndicatorEngine(StockBars series) {
+		this.closing = new double[INITIAL_CAPACITY];
+		this.typical = new double[INITIAL_CAPACITY];
+		this.volume = new double[INITIAL_CAPACITY];
+		this.indicators = new HashMap<>();
+		readInputs(series, 0);
+	}
+
+	/**
+	 * read the days from an index on again, after they were appended or changed in place, and
+	 * bring every kept indicator up to date from that day
+	 * @param series of daily stock values, including the changed days
+	 * @param fromIndex index of the first changed day
+	 */
+	public void update(StockBars series, int fromIndex) {
+		readInputs(series, fromIndex);
+		for (Indicator indicator : indicators.values()) {
+			indicator.computeFrom(fromIndex);
+		}
+	}
+
+	/**
+	 * get the simple moving average of the closing prices
+	 * @param period number of days averaged
+	 * @return points of the average, NaN until a full period is available
+	 */
+	public Points sma(int period) {
+		return get("SMA(" + period + ")", () -> new SimpleMovingAverage(period)).lines[0];
+	}
+
+	/**
+	 * get the exponential moving average of the closing prices
+	 * @param period number of days whose weight <code>2 / (period + 1)</code> is given to the newest day
+	 * @return points of the average, NaN until a full period is available
+	 */
+	public Points ema(int period) {
+		return get("EMA(" + period + ")", () -> new ExponentialMovingAverage(period)).lines[0];
+	}
+
+	/**
+	 * get the Bollinger bands of the closing prices
+	 * @param period number of days of the moving average and deviation
+	 * @param width number of standard deviations between the middle band and the outer ones
+	 * @return points of the middle, upper and lower bands
+	 */
+	public Points[] bollinger(int period, double width) {
+		return get("BOLLINGER(" + period + "," + width + ")", () -> new BollingerBands(period, width)).lines;
+	}
+
+	/**
+	 * get the relative strength index of the closing prices with the smoothing of Wilder
+	 * @param period number of changes averaged
+	 * @return points of the index, from 0 to 100
+	 */
+	public Points rsi(int period) {
+		return get("RSI(" + period + ")", () -> new RelativeStrengthIndex(period)).lines[0];
+	}
+
+	/**
+	 * get the moving average convergence divergence of the closing prices
+	 * @param fast period of the fast exponential average
+	 * @param slow period of the slow exponential average
+	 * @param signal period of the exponential average of the MACD line
+	 * @return points of the MACD line, the signal line and the histogram between them
+	 */
+	public Points[] macd(int fast, int slow, int signal) {
+		return get("MACD(" + fast + "," + slow + "," + signal + ")", () -> new MovingAverageConvergenceDivergence(fast, slow, signal)).lines;
+	}
+
+	/**
+	 * get the volume weighted average of the typical prices, the mean of the highest, lowest and
+	 * closing prices, from the first day of the series
+	 * @return points of the average
+	 */
+	public Points vwap() {
+		return get("VWAP", VolumeWeightedAveragePrice::new).lines[0];
+	}
+
+	/**
+	 * get a kept indicator, or compute and keep it
+	 * @param key the name and parameters of the indicator
+	 * @param factory creates the indicator
+	 * @return the indicator, computed up to the last day
+	 */
+	private Indicator get(String key, Supplier<Indicator> factory) {
+		Indicator indicator = indicators.get(key);
+		if (indicator == null) {
+			indicator = factory.get();
+			indicator.computeFrom(0);
+			indicators.put(key, indicator);
+		}
+		return indicator;
+	}
+
+	/**
+	 * copy the inputs of the indicators from the days from an index on into the primitive arrays.
+	 * A missing closing price repeats the last one; a missing typical price is the closing price,
+	 * and a missing volume is zero.
+	 */
+	private void readInputs(StockBars series, int fromIndex) {
+		int size = series.size();
+		if (size > closing.length) {
+			int capacity = Math.max(size, closing.length * 2);
+			closing = Arrays.copyOf(closing, capacity);
+			typical = Arrays.copyOf(typical, capacity);
+			volume = Arrays.copyOf(volume, capacity);
+		}
+		fromIndex = Math.max(0, Math.min(fromIndex, this.size));
+		if (fromIndex <= firstValid) {
+			firstValid = size;
+		}
+		for (int i = fromIndex; i < size; i++) {
+			double price = i > 0 ? closing[i - 1] : Double.NaN;
+			if (series.isValid(i, StockBars.Column.CLOSING)) {
+				price = series.getClosing(i);
+				firstValid = Math.min(firstValid, i);
+			}
+			closing[i] = price;
+			typical[i] = series.isValid(i, StockBars.Column.HIGHEST) && series.isValid(i, StockBars.Column.LOWEST)
+					? (series.getHighest(i) + series.getLowest(i) + price) / 3 : price;
+			volume[i] = series.isValid(i, StockBars.Column.VOLUME) ? series.getVolume(i) : 0;
+		}
+		this.size = size;
+	}
+
+	/**
+	 * grow a state array to hold the state of every day
+	 */
+	private double[] ensureCapacity(double[] state) {
+		return state.length >= size ? state : Arrays.copyOf(state, Math.max(size, state.length * 2));
+	}
+
+	/**
+	 * an indicator with one or more lines, computed day by day from its state of the day before
+	 */
+	private abstract class Indicator {
+		final Points[] lines;		// storing the points of each line of the indicator
+		int computed;				// storing the number of days computed
+
+		Indicator(int lineCount) {
+			this.lines = new Points[lineCount];
+			for (int l = 0; l < lineCount; l++) {
+				this.lines[l] = new Points();
+			}
+		}
+
+		/**
+		 * compute the days from an index to the last one. Days after the computed ones are never
+		 * skipped, so the state of the day before is always there.
+		 */
+		void computeFrom(int fromIndex) {
+			fromIndex = Math.max(0, Math.min(fromIndex, computed));
+			grow();
+			for (int i = fromIndex; i < size; i++) {
+				compute(i);
+			}
+			computed = size;
+		}
+
+		/**
+		 * set the value of a line on a day, in the order of the days
+		 */
+		void output(int line, int index, double value) {
+			Points points = lines[line];
+			if (index < points.size()) {
+				points.set(index, index, value);
+			} else {
+				points.add(index, value);
+			}
+		}
+
+		/**
+		 * get the number of valid closing prices up to a day, counting the day
+		 */
+		int validDays(int index) {
+			return index - firstValid + 1;
+		}
+
+		/**
+		 * grow the state arrays to the number of days
+		 */
+		abstract void grow();
+
+		/**
+		 * compute the state and the lines of a day from the state of the day before
+		 */
+		abstract void compute(int index);
+	}
+
+	/**
+	 * the mean of the last <code>period</code> closing prices, kept as a running sum
+	 */
+	private class SimpleMovingAverage extends Indicator {
+		private final int period;
+		private double[] sum = new double[0];
+
+		SimpleMovingAverage(int period) {
+			super(1);
+			this.period = period;
+		}
+
+		@Override
+		void grow() {
+			sum = ensureCapacity(sum);
+		}
+
+		@Override
+		void compute(int i) {
+			int days = validDays(i);
+			if (days <= 0) {
+				sum[i] = 0;
+				output(0, i, Double.NaN);
+				return;
+			}
+			sum[i] = (days > 1 ? sum[i - 1] : 0) + closing[i] - (days > period ? closing[i - period] : 0);
+			output(0, i, days >= period ? sum[i] / period : Double.NaN);
+		}
+	}
+
+	/**
+	 * the exponential average of the closing prices, seeded with the first of them
+	 */
+	private class ExponentialMovingAverage extends Indicator {
+		private final int period;
+		private final double alpha;
+		private double[] average = new double[0];
+
+		ExponentialMovingAverage(int period) {
+			super(1);
+			this.period = period;
+			this.alpha = 2.0 / (period + 1);
+		}
+
+		@Override
+		void grow() {
+			average = ensureCapacity(average);
+		}
+
+		@Override
+		void compute(int i) {
+			int days = validDays(i);
+			average[i] = days <= 0 ? Double.NaN : days == 1 ? closing[i] : average[i - 1] + alpha * (closing[i] - average[i - 1]);
+			output(0, i, days >= period ? average[i] : Double.NaN);
+		}
+	}
+
+	/**
+	 * the moving average of the closing prices between bands at a number of standard deviations,
+	 * kept as running sums of the prices and of their squares
+	 */
+	private class BollingerBands extends Indicator {
+		private final int period;
+		private final double width;
+		private double[] sum = new double[0];
+		private double[] squares = new double[0];
+
+		BollingerBands(int period, double width) {
+			super(3);
+			this.period = period;
+			this.width = width;
+		}
+
+		@Override
+		void grow() {
+			sum = ensureCapacity(sum);
+			squares = ensureCapacity(squares);
+		}
+
+		@Override
+		void compute(int i) {
+			int days = validDays(i);
+			if (days <= 0) {
+				sum[i] = squares[i] = 0;
+			} else {
+				double leaving = days > period ? closing[i - period] : 0;
+				sum[i] = (days > 1 ? sum[i - 1] : 0) + closing[i] - leaving;
+				squares[i] = (days > 1 ? squares[i - 1] : 0) + closing[i] * closing[i] - leaving * leaving;
+			}
+			if (days < period) {
+				output(0, i, Double.NaN);
+				output(1, i, Double.NaN);
+				output(2, i, Double.NaN);
+				return;
+			}
+			double mean = sum[i] / period;
+			double deviation = Math.sqrt(Math.max(0, squares[i] / period - mean * mean));
+			output(0, i, mean);
+			output(1, i, mean + width * deviation);
+			output(2, i, mean - width * deviation);
+		}
+	}
+
+	/**
+	 * the relative strength index: the average gains and losses of the first <code>period</code>
+	 * changes are plain means, later ones are smoothed by <code>1 / period</code>
+	 */
+	private class RelativeStrengthIndex extends Indicator {
+		private final int period;
+		private double[] gain = new double[0];
+		private double[] loss = new double[0];
+
+		RelativeStrengthIndex(int period) {
+			super(1);
+			this.period = period;
+		}
+
+		@Override
+		void grow() {
+			gain = ensureCapacity(gain);
+			loss = ensureCapacity(loss);
+		}
+
+		@Override
+		void compute(int i) {
+			int changes = validDays(i) - 1;
+			if (changes <= 0) {
+				gain[i] = loss[i] = 0;
+				output(0, i, Double.NaN);
+				return;
+			}
+			double change = closing[i] - closing[i - 1];
+			double up = Math.max(change, 0);
+			double down = Math.max(-change, 0);
+			if (changes <= period) {
+				gain[i] = gain[i - 1] + up / period;
+				loss[i] = loss[i - 1] + down / period;
+			} else {
+				gain[i] = (gain[i - 1] * (period - 1) + up) / period;
+				loss[i] = (loss[i - 1] * (period - 1) + down) / period;
+			}
+			if (changes < period) {
+				output(0, i, Double.NaN);
+			} else if (loss[i] == 0) {
+				output(0, i, gain[i] == 0 ? 50 : 100);
+			} else {
+				output(0, i, 100 - 100 / (1 + gain[i] / loss[i]));
+			}
+		}
+	}
+
+	/**
+	 * the difference between a fast and a slow exponential average of the closing prices, its
+	 * own exponential average as the signal line, and the difference of both as the histogram
+	 */
+	private class MovingAverageConvergenceDivergence extends Indicator {
+		private final int slowPeriod;
+		private final int signalPeriod;
+		private final double fastAlpha, slowAlpha, signalAlpha;
+		private double[] fast = new double[0];
+		private double[] slow = new double[0];
+		private double[] signal = new double[0];
+
+		MovingAverageConvergenceDivergence(int fastPeriod, int slowPeriod, int signalPeriod) {
+			super(3);
+			this.slowPeriod = slowPeriod;
+			this.signalPeriod = signalPeriod;
+			this.fastAlpha = 2.0 / (fastPeriod + 1);
+			this.slowAlpha = 2.0 / (slowPeriod + 1);
+			this.signalAlpha = 2.0 / (signalPeriod + 1);
+		}
+
+		@Override
+		void grow() {
+			fast = ensureCapacity(fast);
+			slow = ensureCapacity(slow);
+			signal = ensureCapacity(signal);
+		}
+
+		@Override
+		void compute(int i) {
+			int days = validDays(i);
+			if (days <= 0) {
+				fast[i] = slow[i] = signal[i] = Double.NaN;
+			} else if (days == 1) {
+				fast[i] = slow[i] = closing[i];
+				signal[i] = 0;
+			} else {
+				fast[i] = fast[i - 1] + fastAlpha * (closing[i] - fast[i - 1]);
+				slow[i] = slow[i - 1] + slowAlpha * (closing[i] - slow[i - 1]);
+				signal[i] = signal[i - 1] + signalAlpha * (fast[i] - slow[i] - signal[i - 1]);
+			}
+			double line = fast[i] - slow[i];
+			boolean lineReady = days >= slowPeriod;
+			boolean signalReady = days >= slowPeriod + signalPeriod - 1;
+			output(0, i, lineReady ? line : Double.NaN);
+			output(1, i, signalReady ? signal[i] : Double.NaN);
+			output(2, i, signalReady ? line - signal[i] : Double.NaN);
+		}
+	}
+
+	/**
+	 * the running sums of the typical prices weighted by volume and of the volumes
+	 */
+	private class VolumeWeightedAveragePrice extends Indicator {
+		private double[] weighted = new double[0];
+		private double[] volumes = new double[0];
+
+		VolumeWeightedAveragePrice() {
+			super(1);
+		}
+
+		@Override
+		void grow() {
+			weighted = ensureCapacity(weighted);
+			volumes = ensureCapacity(volumes);
+		}
+
+		@Override
+		void compute(int i) {
+			boolean traded = validDays(i) > 0 && volume[i] > 0;
+			weighted[i] = (i > 0 ? weighted[i - 1] : 0) + (traded ? typical[i] * volume[i] : 0);
+			volumes[i] = (i > 0 ? volumes[i - 1] : 0) + (traded ? volume[i] : 0);
+			output(0, i, volumes[i] > 0 ? weighted[i] / volumes[i] : Double.NaN);
+		}
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the inputs of each day: the closing price, the typical price and the volume
+	 * 		Storing the number of days and the index of the first valid closing price
+	 * 		Storing the computed indicators by name and parameters
+	 */
+	private double[] closing;
+	private double[] typical;
+	private double[] volume;
+	private int size;
+	private int firstValid;
+	private final Map<String, Indicator> indicators;
+}
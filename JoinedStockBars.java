@@ -0,0 +1,110 @@
+/**
+ * JoinedStockBars.java
+ *
+ * presents two runs of daily stock values, where every day of the first is before every
+ * day of the second, as one sequence without copying either of them
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class JoinedStockBars implements StockBars {
+
+	/**
+	 * join two runs of bars, skipping the empty ones
+	 * @param head the earlier bars
+	 * @param tail the later bars
+	 * @return bars of both runs
+	 */
+	public static StockBars of(StockBars head, StockBars tail) {
+		if (tail.size() == 0) {
+			return head;
+		}
+		if (head.size() == 0) {
+			return tail;
+		}
+		return new JoinedStockBars(head, tail);
+	}
+
+	/**
+	 * The JoinedStockBars constructor
+	 * @param head the earlier bars
+	 * @param tail the later bars
+	 */
+	public JoinedStockBars(StockBars head, StockBars tail) {
+		this.head = head;
+		this.tail = tail;
+	}
+
+	/**
+	 * get the earlier bars
+	 * @return head bars
+	 */
+	public StockBars getHead() {
+		return head;
+	}
+
+	/**
+	 * get the later bars
+	 * @return tail bars
+	 */
+	public StockBars getTail() {
+		return tail;
+	}
+
+	@Override
+	public int size() {
+		return head.size() + tail.size();
+	}
+
+	@Override
+	public int getEpochDay(int index) {
+		int headSize = head.size();
+		return index < headSize ? head.getEpochDay(index) : tail.getEpochDay(index - headSize);
+	}
+
+	@Override
+	public double getOpening(int index) {
+		int headSize = head.size();
+		return index < headSize ? head.getOpening(index) : tail.getOpening(index - headSize);
+	}
+
+	@Override
+	public double getClosing(int index) {
+		int headSize = head.size();
+		return index < headSize ? head.getClosing(index) : tail.getClosing(index - headSize);
+	}
+
+	@Override
+	public double getLowest(int index) {
+		int headSize = head.size();
+		return index < headSize ? head.getLowest(index) : tail.getLowest(index - headSize);
+	}
+
+	@Override
+	public double getHighest(int index) {
+		int headSize = head.size();
+		return index < headSize ? head.getHighest(index) : tail.getHighest(index - headSize);
+	}
+
+	@Override
+	public long getVolume(int index) {
+		int headSize = head.size();
+		return index < headSize ? head.getVolume(index) : tail.getVolume(index - headSize);
+	}
+
+	@Override
+	public boolean isValid(int index, Column column) {
+		int headSize = head.size();
+		return index < headSize ? head.isValid(index, column) : tail.isValid(index - headSize, column);
+	}
+
+	@Override
+	public int validMask(int index) {
+		int headSize = head.size();
+		return index < headSize ? head.validMask(index) : tail.validMask(index - headSize);
+	}
+
+	private final StockBars head;	// storing the earlier bars
+	private final StockBars tail;	// storing the later bars
+}
@@ -0,0 +1,130 @@
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Toolkit;
+import java.io.IOException;
+import javax.swing.*;
+
+/**
+ * LiveStocksWindow.java
+ *
+ * creates a stock pane frame that continues the daily history of a ticker with live ticks. A
+ * <code>TickFeed</code> pushes the ticks into a <code>TickRingBuffer</code> from its own thread;
+ * a timer on the event dispatch thread drains the buffer at most <code>MAX_FRAME_RATE</code> times
+ * per second, aggregates the ticks into daily bars, and redraws only what changed. However fast the
+ * ticks arrive, the event dispatch thread does a bounded amount of work per frame.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class LiveStocksWindow extends JFrame {
+
+	private static final int MAX_FRAME_RATE = 30;				// maximum number of redraws per second
+	private static final int BUFFER_CAPACITY = 1 << 16;			// number of ticks that can wait for a frame
+	private static final int STATUS_INTERVAL = 1000;			// period of the status line update in milliseconds
+
+	private StockBars history;				// storing the daily stock values before the live ticks
+	private StockSeries live;				// storing the daily bars built from the live ticks
+	private int liveFrom;					// storing the index of the first live bar in the series
+	private StockBars series;				// storing the history followed by the live bars
+	private TickFeed feed;					// creating the producer of the ticks
+	private TickRingBuffer buffer;			// creating the buffer between the feed and the event dispatch thread
+	private BarAggregator aggregator;		// creating the aggregator of ticks into daily bars
+	private StocksValues pane;				// creating a StocksValues object to draw the charts
+	private JLabel statusLbl;				// creating a label that shows the tick rate
+	private Timer frameTimer;				// creating a timer that drains the ticks and redraws the charts
+	private Timer statusTimer;				// creating a timer that updates the status line
+	private long lastTickCount;				// storing the number of ticks at the last status update
+
+	/**
+	 * The LiveStocksWindow constructor that shows the history and starts the feed
+	 * @param configuration of stocks whose values are shown before the live ticks
+	 * @param feed produces the live ticks
+	 */
+	public LiveStocksWindow(StocksConfiguration configuration, TickFeed feed) {
+		super(configuration.toString());
+		this.history = configuration.getSeries();
+		this.live = new StockSeries();
+		// the last daily bar moves to the live bars, so that the ticks of its day (today's partial bar
+		// when the range ends today) continue it instead of being counted late
+		this.liveFrom = Math.max(history.size() - 1, 0);
+		if (history.size() > 0) {
+			live.add(history.getEpochDay(liveFrom), history.getOpening(liveFrom), history.getClosing(liveFrom),
+					history.getLowest(liveFrom), history.getHighest(liveFrom), history.getVolume(liveFrom),
+					history.validMask(liveFrom));
+		}
+		// the join is built directly, not through JoinedStockBars.of, because the live bars may still be empty
+		this.series = new JoinedStockBars(history.head(liveFrom), live);
+		this.aggregator = new BarAggregator(live, Integer.MIN_VALUE);
+		this.buffer = new TickRingBuffer(BUFFER_CAPACITY);
+		this.feed = feed;
+		this.pane = new StocksValues();
+
+		pane.generateChart(series);
+		this.add(pane);
+
+		statusLbl = new JLabel("Waiting for ticks");
+		JPanel statusBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+		statusBar.add(statusLbl);
+		this.add(statusBar, BorderLayout.SOUTH);
+
+		frameTimer = new Timer(1000 / MAX_FRAME_RATE, e -> drawFrame());
+		frameTimer.setCoalesce(true);
+		statusTimer = new Timer(STATUS_INTERVAL, e -> updateStatus());
+		feed.start(buffer, history);
+		frameTimer.start();
+		statusTimer.start();
+
+		setTitle("Stock Market Viewer - Live");
+		Toolkit tk = Toolkit.getDefaultToolkit();
+		Dimension dim = tk.getScreenSize();
+		setSize(dim.width/2, dim.height/2);
+		setLocationRelativeTo(getRootPane());
+		setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+		setVisible(true);
+	}
+
+	/**
+	 * drain the waiting ticks into the daily bars and redraw the changed days. At most one buffer
+	 * full of ticks is drained per frame, the rest waits for the next frame.
+	 */
+	private void drawFrame() {
+		if (buffer.drain(aggregator, buffer.capacity()) == 0) {
+			return;
+		}
+		int firstChanged = aggregator.getFirstChanged();
+		if (firstChanged >= 0) {
+			aggregator.clearChanges();
+			pane.updateBars(series, liveFrom + firstChanged);
+		}
+	}
+
+	/**
+	 * show the tick rate and the number of dropped and late ticks, followed by the failure of the
+	 * feed once it stopped on its own
+	 */
+	private void updateStatus() {
+		long ticks = aggregator.getTickCount();
+		String status = String.format("%,d ticks/s, %,d ticks, %,d dropped, %,d late, %,d live days",
+				(ticks - lastTickCount) * 1000 / STATUS_INTERVAL, ticks, feed.getDroppedTicks(),
+				aggregator.getLateTickCount(), live.size());
+		IOException error = feed.getError();
+		if (error != null) {
+			status += " - feed stopped: " + (error.getMessage() != null ? error.getMessage() : error);
+		}
+		statusLbl.setText(status);
+		lastTickCount = ticks;
+	}
+
+	/**
+	 * stop the feed and the timers when the window is closed
+	 */
+	@Override
+	public void dispose() {
+		frameTimer.stop();
+		statusTimer.stop();
+		feed.stop();
+		super.dispose();
+	}
+}
@@ -0,0 +1,147 @@
+import java.nio.ByteBuffer;
+
+/**
+ * MappedColumnSeries.java
+ *
+ * reads daily stock values in place from columns, normally a block of a memory-mapped universe
+ * file (see <code>UniverseStore</code>). A block holds each column of all its rows contiguously:
+ * the four prices, the volumes, the days and the validity masks, each column starting at its own
+ * offset. The rows of a series are a range of the rows of the block. Nothing is copied onto the
+ * heap: every getter reads its value straight from the buffer, and a scan of one column reads
+ * only that column.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class MappedColumnSeries implements StockBars {
+
+	public static final int DAY_SIZE = 4;		// int, the day as number of days since 1970-01-01
+	public static final int MASK_SIZE = 1;		// byte, the validity mask of the row
+	public static final int PRICE_SIZE = 8;		// double, the opening, closing, lowest or highest price
+	public static final int VOLUME_SIZE = 8;	// long, the stocks volume
+	public static final int ROW_SIZE = DAY_SIZE + MASK_SIZE + 4 * PRICE_SIZE + VOLUME_SIZE;	// bytes of a row over all columns
+
+	/**
+	 * The MappedColumnSeries constructor over the rows of a block
+	 * @param block that holds the columns
+	 * @param rows number of rows of the block
+	 * @param start index of the first row of the series in the block
+	 * @param size number of rows of the series
+	 */
+	public MappedColumnSeries(ByteBuffer block, int rows, int start, int size) {
+		if (rows < 0 || (long) rows * ROW_SIZE > block.limit() || start < 0 || size < 0 || start + size > rows) {
+			throw new IndexOutOfBoundsException("rows outside of the block");
+		}
+		this.block = block;
+		this.rows = rows;
+		this.start = start;
+		this.size = size;
+		// the eight byte columns first, so that they stay aligned
+		this.openingOffset = 0;
+		this.closingOffset = openingOffset + rows * PRICE_SIZE;
+		this.lowestOffset = closingOffset + rows * PRICE_SIZE;
+		this.highestOffset = lowestOffset + rows * PRICE_SIZE;
+		this.volumeOffset = highestOffset + rows * PRICE_SIZE;
+		this.dayOffset = volumeOffset + rows * VOLUME_SIZE;
+		this.maskOffset = dayOffset + rows * DAY_SIZE;
+	}
+
+	/**
+	 * write rows of any bars into the columns of a block
+	 * @param block buffer of the block, written with absolute puts
+	 * @param rows number of rows of the block
+	 * @param start index in the block of the first written row
+	 * @param bars the source rows
+	 */
+	public static void writeRows(ByteBuffer block, int rows, int start, StockBars bars) {
+		MappedColumnSeries target = new MappedColumnSeries(block, rows, start, bars.size());
+		for (int i = 0; i < bars.size(); i++) {
+			int row = start + i;
+			block.putDouble(target.openingOffset + row * PRICE_SIZE, bars.getOpening(i));
+			block.putDouble(target.closingOffset + row * PRICE_SIZE, bars.getClosing(i));
+			block.putDouble(target.lowestOffset + row * PRICE_SIZE, bars.getLowest(i));
+			block.putDouble(target.highestOffset + row * PRICE_SIZE, bars.getHighest(i));
+			block.putLong(target.volumeOffset + row * VOLUME_SIZE, bars.getVolume(i));
+			block.putInt(target.dayOffset + row * DAY_SIZE, bars.getEpochDay(i));
+			block.put(target.maskOffset + row, (byte) bars.validMask(i));
+		}
+	}
+
+	/**
+	 * get a view of a range of the rows without copying them
+	 * @param from index of the first row
+	 * @param to index after the last row
+	 * @return rows from <code>from</code> to <code>to</code>
+	 */
+	public MappedColumnSeries slice(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("slice " + from + " to " + to + " out of " + size);
+		}
+		return new MappedColumnSeries(block, rows, start + from, to - from);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getEpochDay(int index) {
+		return block.getInt(dayOffset + row(index) * DAY_SIZE);
+	}
+
+	@Override
+	public double getOpening(int index) {
+		return block.getDouble(openingOffset + row(index) * PRICE_SIZE);
+	}
+
+	@Override
+	public double getClosing(int index) {
+		return block.getDouble(closingOffset + row(index) * PRICE_SIZE);
+	}
+
+	@Override
+	public double getLowest(int index) {
+		return block.getDouble(lowestOffset + row(index) * PRICE_SIZE);
+	}
+
+	@Override
+	public double getHighest(int index) {
+		return block.getDouble(highestOffset + row(index) * PRICE_SIZE);
+	}
+
+	@Override
+	public long getVolume(int index) {
+		return block.getLong(volumeOffset + row(index) * VOLUME_SIZE);
+	}
+
+	@Override
+	public boolean isValid(int index, Column column) {
+		return (validMask(index) & column.mask()) != 0;
+	}
+
+	@Override
+	public int validMask(int index) {
+		return block.get(maskOffset + row(index));
+	}
+
+	/**
+	 * get the row of the block of an index of the series
+	 * @param index of the row in the series
+	 * @return index of the row in the block
+	 */
+	private int row(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " out of " + size);
+		}
+		return start + index;
+	}
+
+	private final ByteBuffer block;		// storing the columns, read with absolute gets only so it can be shared
+	private final int rows;				// storing the number of rows of the block
+	private final int start;			// storing the index of the first row of the series in the block
+	private final int size;				// storing the number of rows of the series
+	private final int openingOffset, closingOffset, lowestOffset, highestOffset;	// storing the byte offsets of the price columns
+	private final int volumeOffset, dayOffset, maskOffset;						// storing the byte offsets of the other columns
+}
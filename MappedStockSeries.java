@@ -0,0 +1,129 @@
+import java.nio.ByteBuffer;
+
+/**
+ * MappedStockSeries.java
+ *
+ * reads daily stock values in place from fixed-width binary records, normally a memory-mapped
+ * cache file. Nothing is copied onto the heap: every getter reads its field straight from the
+ * buffer. The layout of a record is described by the <code>*_OFFSET</code> constants.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class MappedStockSeries implements StockBars {
+
+	public static final int RECORD_SIZE = 48;		// size of a record in bytes
+	public static final int DAY_OFFSET = 0;			// int, the day as number of days since 1970-01-01
+	public static final int MASK_OFFSET = 4;		// int, the validity mask of the record
+	public static final int OPENING_OFFSET = 8;		// double, the opening price
+	public static final int CLOSING_OFFSET = 16;	// double, the closing price
+	public static final int LOWEST_OFFSET = 24;		// double, the lowest price
+	public static final int HIGHEST_OFFSET = 32;	// double, the highest price
+	public static final int VOLUME_OFFSET = 40;		// long, the stocks volume
+
+	/**
+	 * The MappedStockSeries constructor
+	 * @param buffer that holds the records
+	 * @param position of the first record in the buffer, in bytes
+	 * @param size number of records
+	 */
+	public MappedStockSeries(ByteBuffer buffer, int position, int size) {
+		if (position < 0 || size < 0 || (long) position + (long) size * RECORD_SIZE > buffer.limit()) {
+			throw new IndexOutOfBoundsException("records outside of the buffer");
+		}
+		this.buffer = buffer;
+		this.position = position;
+		this.size = size;
+	}
+
+	/**
+	 * write a row of any bars as a record
+	 * @param target buffer to write into, at its current position
+	 * @param bars the source rows
+	 * @param index of the row to write
+	 */
+	public static void writeRecord(ByteBuffer target, StockBars bars, int index) {
+		target.putInt(bars.getEpochDay(index));
+		target.putInt(bars.validMask(index));
+		target.putDouble(bars.getOpening(index));
+		target.putDouble(bars.getClosing(index));
+		target.putDouble(bars.getLowest(index));
+		target.putDouble(bars.getHighest(index));
+		target.putLong(bars.getVolume(index));
+	}
+
+	/**
+	 * get a view of a range of the records without copying them
+	 * @param from index of the first row
+	 * @param to index after the last row
+	 * @return records from <code>from</code> to <code>to</code>
+	 */
+	public MappedStockSeries slice(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("slice " + from + " to " + to + " out of " + size);
+		}
+		return new MappedStockSeries(buffer, position + from * RECORD_SIZE, to - from);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getEpochDay(int index) {
+		return buffer.getInt(offset(index) + DAY_OFFSET);
+	}
+
+	@Override
+	public double getOpening(int index) {
+		return buffer.getDouble(offset(index) + OPENING_OFFSET);
+	}
+
+	@Override
+	public double getClosing(int index) {
+		return buffer.getDouble(offset(index) + CLOSING_OFFSET);
+	}
+
+	@Override
+	public double getLowest(int index) {
+		return buffer.getDouble(offset(index) + LOWEST_OFFSET);
+	}
+
+	@Override
+	public double getHighest(int index) {
+		return buffer.getDouble(offset(index) + HIGHEST_OFFSET);
+	}
+
+	@Override
+	public long getVolume(int index) {
+		return buffer.getLong(offset(index) + VOLUME_OFFSET);
+	}
+
+	@Override
+	public boolean isValid(int index, Column column) {
+		return (validMask(index) & column.mask()) != 0;
+	}
+
+	@Override
+	public int validMask(int index) {
+		return buffer.getInt(offset(index) + MASK_OFFSET);
+	}
+
+	/**
+	 * get the position of a record in the buffer
+	 * @param index of the row
+	 * @return byte offset
+	 */
+	private int offset(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " out of " + size);
+		}
+		return position + index * RECORD_SIZE;
+	}
+
+	private final ByteBuffer buffer;	// storing the records, read with absolute gets only so it can be shared
+	private final int position;			// storing the byte offset of the first record
+	private final int size;				// storing the number of records
+}
@@ -1,6 +1,9 @@
 import java.awt.*;
 import java.awt.event.*;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 import javax.swing.*;
 
 /**
@@ -15,10 +18,15 @@ import javax.swing.*;
 
 public class NavigationPanel extends JPanel implements ActionListener{
 
+	private static final int COMPARISON_PARALLELISM = 8;	// maximum number of compared tickers loaded at once
+
 	private TickerPanel tickerPanel;	  // creating a TickerPanel object
 	private DatesPanel  startDatesPanel;  // creating a DatesPanel object for start date
 	private DatesPanel  endDatesPanel;    // creating a DatesPanel object for end date
 	private JButton     retrieveBtn;      // creating a button (retrieve button)
+	private JButton     liveBtn;          // creating a button that opens the live chart
+	private JButton     compareBtn;       // creating a button that opens the comparison chart
+	private BatchLoader comparisonLoader; // creating a loader that fetches the compared tickers concurrently
 	private JLabel      applicationLbl;   // creating a label that shows the application name
 	private JLabel      instructionLbl;   // creating a label that shows the instructions
 
@@ -44,6 +52,17 @@ public class NavigationPanel extends JPanel implements ActionListener{
 		retrieveBtn.addActionListener(this);
 		this.add(retrieveBtn);
 
+		liveBtn = new JButton("Live");
+		liveBtn.setToolTipText("Continue the chart with live ticks");
+		liveBtn.addActionListener(this);
+		this.add(liveBtn);
+
+		compareBtn = new JButton("Compare");
+		compareBtn.setToolTipText("Compare the ticker with other tickers in percent");
+		compareBtn.addActionListener(this);
+		this.add(compareBtn);
+		comparisonLoader = new BatchLoader(StockDataSource.getDefault(), COMPARISON_PARALLELISM, 0);
+
 		applicationLbl = new JLabel();
 		applicationLbl.setFont(new Font("Felix Titling", 1, 24));
 		applicationLbl.setText("Stock Market Viewer");
@@ -83,7 +102,11 @@ public class NavigationPanel extends JPanel implements ActionListener{
 										.addComponent(instructionLbl))
 								.addGroup(layout.createSequentialGroup()
 										.addGap(142, 142, 142)
-										.addComponent(retrieveBtn, GroupLayout.PREFERRED_SIZE, 195, GroupLayout.PREFERRED_SIZE)))
+										.addComponent(retrieveBtn, GroupLayout.PREFERRED_SIZE, 120, GroupLayout.PREFERRED_SIZE)
+										.addGap(6, 6, 6)
+										.addComponent(liveBtn, GroupLayout.PREFERRED_SIZE, 69, GroupLayout.PREFERRED_SIZE)
+										.addGap(6, 6, 6)
+										.addComponent(compareBtn, GroupLayout.PREFERRED_SIZE, 87, GroupLayout.PREFERRED_SIZE)))
 						.addContainerGap(81, Short.MAX_VALUE))
 				);
 		layout.setVerticalGroup(
@@ -101,30 +124,92 @@ public class NavigationPanel extends JPanel implements ActionListener{
 						.addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
 								.addComponent(endDatesPanel, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
 						.addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, 36, Short.MAX_VALUE)
-						.addComponent(retrieveBtn, GroupLayout.PREFERRED_SIZE, 37, GroupLayout.PREFERRED_SIZE)
+						.addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+								.addComponent(retrieveBtn, GroupLayout.PREFERRED_SIZE, 37, GroupLayout.PREFERRED_SIZE)
+								.addComponent(liveBtn, GroupLayout.PREFERRED_SIZE, 37, GroupLayout.PREFERRED_SIZE)
+								.addComponent(compareBtn, GroupLayout.PREFERRED_SIZE, 37, GroupLayout.PREFERRED_SIZE))
 						.addGap(20, 20, 20))
 				);
 	}
 	
 	/**
 	 * <code>actionPerformed</code> method is invoked when the retrieve button is pressed to create
-	 * a new stocks configuration and a window that shows the stocks chart
+	 * a new stocks configuration and a window that shows the stocks chart, or when the live button
+	 * is pressed to create a window that continues the chart with the ticks of the default feed,
+	 * or when the compare button is pressed to create a window that compares several tickers.
+	 * The stock values are downloaded in the background and the window is created on the event
+	 * dispatch thread once they arrive, so the interface stays responsive and several retrievals
+	 * can run at once.
 	 */
 	public void actionPerformed(ActionEvent e) {
-		StocksConfiguration config = null;
-		try {
-			config = new StocksConfiguration(this.tickerPanel.getSelectedTicker(),
-					this.startDatesPanel.getSelectedDate(), this.endDatesPanel.getSelectedDate());
-		} catch (Exception e1) {
-			JOptionPane.showMessageDialog(this, "No data was returned due to: " + e1.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+		if (e.getSource() == compareBtn) {
+			compare();
 			return;
 		}
-		
-		try {
-			// spawn new window contained plot tabs
-			new StocksWindow(config);
-		} catch (Exception e1) {
-			JOptionPane.showMessageDialog(this, "No data was returned due to: " + e1.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+		boolean live = e.getSource() == liveBtn;
+		StocksConfiguration.fetch(this.tickerPanel.getSelectedTicker(),
+				this.startDatesPanel.getSelectedDate(), this.endDatesPanel.getSelectedDate())
+			.whenCompleteAsync((config, error) -> {
+				if (error != null) {
+					showError(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+					return;
+				}
+				try {
+					// spawn new window contained plot tabs
+					if (live) {
+						new LiveStocksWindow(config, TickFeed.getDefault());
+					} else {
+						new StocksWindow(config);
+					}
+				} catch (Exception e1) {
+					showError(e1);
+				}
+			}, SwingUtilities::invokeLater);
+	}
+
+	/**
+	 * load the compared tickers concurrently and open a window that draws them over each other.
+	 * Tickers that fail to load are left out of the comparison.
+	 */
+	private void compare() {
+		comparisonLoader.loadAll(getComparedTickers(), this.startDatesPanel.getSelectedDate(), this.endDatesPanel.getSelectedDate(), null)
+			.whenCompleteAsync((configurations, error) -> {
+				if (error != null) {
+					showError(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+					return;
+				}
+				if (configurations.isEmpty()) {
+					showError(new Exception("Data not avaialbe."));
+					return;
+				}
+				new ComparisonWindow(ComparisonSeries.of(configurations));
+			}, SwingUtilities::invokeLater);
+	}
+
+	/**
+	 * get the tickers to compare: the selected ticker followed by the tickers listed in the
+	 * <code>stockviewer.compare</code> property, separated by commas, or by the other supported
+	 * tickers if the property is not set
+	 * @return ticker names, each once
+	 */
+	private List<String> getComparedTickers() {
+		List<String> tickers = new ArrayList<>();
+		tickers.add(this.tickerPanel.getSelectedTicker());
+		String listed = System.getProperty("stockviewer.compare");
+		for (String ticker : listed != null ? listed.split(",") : TickerPanel.SUPPORTED_TICKERS) {
+			ticker = ticker.trim();
+			if (!ticker.isEmpty() && !tickers.contains(ticker)) {
+				tickers.add(ticker);
+			}
 		}
+		return tickers;
+	}
+
+	/**
+	 * show the reason of a failed retrieval to the user
+	 * @param error the failure
+	 */
+	private void showError(Throwable error) {
+		JOptionPane.showMessageDialog(this, "No data was returned due to: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
 	}
 }
@@ -1,9 +1,13 @@
 import javax.swing.*;
 import java.awt.*;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.function.BooleanSupplier;
 
 /**
  * Plot.java
@@ -24,66 +28,501 @@ public class Plot extends JPanel {
 	private static final int RIGHT_BORDER_GAP = 50;		// specifying the size of the right gap between the panel border and the plot
 	private static final int BOTTOM_BORDER_GAP = 50;	// specifying the size of the bottom gap between the panel border and the plot
 
-	private static final Color GRAPH_COLOR = new Color(58, 255, 134);  // specifying the graph color
+	static final Color GRAPH_COLOR = new Color(58, 255, 134);  		   // specifying the graph color
 	private static final Stroke GRAPH_STROKE = new BasicStroke(3f);	   // specifying the graph stroke
+	private static final int GRAPH_STROKE_WIDTH = 3;				   // the width of the graph stroke in pixels, rounded up
 
-	private static final int X_AXIS_MARKS_COUNT = 12;	// number of intervals (gaps) in X axis between dates
-	private static final int Y_AXIS_MARKS_COUNT = 10;   // number of intervals (gaps) in Y axis between prices
+	private static final int X_AXIS_MARKS_COUNT = 12;	// most dates shown in X axis
+	private static final int Y_AXIS_MARKS_COUNT = 10;   // most prices shown in Y axis
+	private static final int MARK_WIDTH = 12;			// length of the hatches of the axes in pixels
+	private static final int LAYER_SIZE_STEP = 256;		// the axes layer image grows in steps of this many pixels
+	private static final boolean BACKGROUND_RENDERING = "background".equals(System.getProperty("stockviewer.render"));	// see setBackgroundRendering
 	
 
-	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MMM d"); // format the date that will appear in X axis
-	private static final String Y_HATCH_LABEL_PATTERN = "%.2f"; // the price pattern that will appear in Y axis
-
-	private TreeMap<Integer, LocalDate> xUnitToDateLabelMapping;
+	private static final int X_LABEL_SPACING = 80;		// fewest pixels between two dates in X axis
+	private static final int Y_LABEL_SPACING = 30;		// fewest pixels between two prices in Y axis
+
+	private TradingCalendar calendar;							// storing the trading day of each X value
+	private double paintedMinY = Double.NaN;					// storing the lowest value when the plot was last painted
+	private double paintedMaxY = Double.NaN;					// storing the highest value when the plot was last painted
+	private final ScreenPoints screenPoints = new ScreenPoints();	// storing the screen coordinates, reused by every paint
+	private Points[] levels;									// storing the points of each level of bars, from daily to coarsest
+	private ColumnDecimator[] decimators;						// reducing the points of each level to a few per pixel column
+	private Points shown;										// storing the level of points drawn, see updateView
+	private ColumnDecimator decimator;							// storing the decimator of the drawn level
+	private SoftReference<BufferedImage> axesLayer;				// storing the background, axes and labels as last drawn, see getAxesLayer
+	private double layerScaleX, layerScaleY;					// storing the device scale the layer was drawn for
+	private int layerImageWidth, layerImageHeight;				// storing the part of the layer image in use, in device pixels
+	private int layerWidth, layerHeight, layerSize;				// storing the size of the panel and the number of points of the layer
+	private double layerMinX, layerMaxX, layerMinY, layerMaxY;	// storing the visible ranges of the layer
+	private final AxisTicks xTicks = new AxisTicks(false);		// placing the X ticks and keeping their labels
+	private final AxisTicks yTicks = new AxisTicks(false);		// placing the Y ticks and keeping their labels
+	private Viewport viewport;									// storing the visible range of X values
+	private double viewMinX, viewMaxX, viewMinY, viewMaxY;		// storing the visible ranges, see updateView
+	private int viewFrom, viewTo;								// storing the indices of the visible points, see updateView
+	private int viewLevel;										// storing the index of the drawn level, see updateView
+	private final List<Overlay> overlays = new ArrayList<>();	// storing the series drawn over the points, see addOverlay
+	private List<Overlay> overlaySnapshot;						// storing an unchanging copy of the overlays for the render thread
+	private boolean background = BACKGROUND_RENDERING;			// storing whether the frames are drawn on the render thread
+	private PlotRenderer<FrameSnapshot> renderer;				// drawing the frames on the render thread, created on first paint
+	private FrameState requestedState;							// storing the state of the last frame requested from the render thread
 
 	/**
 	 * A constructor that sets points values
 	 * @param points of stocks values
 	 */
 	public Plot(Points points) {
-		this.points = points;
+		this(points, null);
 	}
 
 	/**
-	 * A constructor that sets points values and mapping value between each date and its price
+	 * A constructor that sets points values and the trading days of their X values
 	 * @param points of stocks values
-	 * @param xLabelsMapping is a value of distance between a date and a stock price
+	 * @param calendar gives the date of each X value, or null to label the X values themselves
+	 */
+	public Plot(Points points, TradingCalendar calendar) {
+		this(new Points[] {points}, calendar);
+	}
+
+	/**
+	 * A constructor that sets the points of each level of bars of the same stock values, such as
+	 * those of a <code>StockPyramid</code>. All levels must use the same X units as the first,
+	 * daily, one; the plot draws the coarsest level that still has a bar for every pixel column.
+	 * @param levels points of stocks values from the finest level to the coarsest
+	 * @param calendar gives the date of each X value, or null to label the X values themselves
+	 */
+	public Plot(Points[] levels, TradingCalendar calendar) {
+		this.points = levels[0];
+		this.levels = levels;
+		this.decimators = new ColumnDecimator[levels.length];
+		for (int l = 0; l < levels.length; l++) {
+			this.decimators[l] = new ColumnDecimator(levels[l]);
+		}
+		this.shown = points;
+		this.decimator = decimators[0];
+		this.viewport = new Viewport(points);
+		this.calendar = calendar;
+
+		// the mouse wheel zooms around the pointer, dragging pans, and a double click shows everything again
+		viewport.navigate(this, LEFT_BORDER_GAP, RIGHT_BORDER_GAP);
+	}
+
+	/**
+	 * draw another series over the points of the plot, such as a moving average or a second
+	 * ticker, in the same X units. The range of the Y axis covers the overlays too. A line of a
+	 * width of 1 or less is drawn without antialiasing, which Java2D draws many times faster, so
+	 * that a plot of dozens of overlays stays interactive.
+	 * @param points of the series
+	 * @param color of its line
+	 * @param width of its line in pixels
+	 */
+	public void addOverlay(Points points, Color color, float width) {
+		addOverlay(new Points[] {points}, color, width);
+	}
+
+	/**
+	 * draw another series over the points of the plot with a point for each level of bars. The
+	 * overlay is drawn at the level drawn for the points of the plot, or at its coarsest level if
+	 * it has fewer.
+	 * @param levels points of the series from the finest level to the coarsest
+	 * @param color of its line
+	 * @param width of its line in pixels
+	 */
+	public void addOverlay(Points[] levels, Color color, float width) {
+		overlays.add(new Overlay(levels, color, width));
+		overlaySnapshot = null;
+		repaint();
+	}
+
+	/**
+	 * remove a series drawn over the points of the plot
+	 * @param points of the series, or of its finest level
+	 */
+	public void removeOverlay(Points points) {
+		overlays.removeIf(overlay -> overlay.levels[0] == points);
+		overlaySnapshot = null;
+		repaint();
+	}
+
+	/**
+	 * remove all series drawn over the points of the plot
 	 */
-	public Plot(Points points, TreeMap<Integer, LocalDate> xLabelsMapping) {
-		this.points = points;
-		this.xUnitToDateLabelMapping = xLabelsMapping;
+	public void clearOverlays() {
+		overlays.clear();
+		overlaySnapshot = null;
+		repaint();
 	}
 
 	/**
-	 * draw and paint axes and strokes between points
+	 * get the viewport that selects the visible range of the plot
+	 * @return viewport
+	 */
+	public Viewport getViewport() {
+		return viewport;
+	}
+
+	/**
+	 * replace the trading days of the X values, as when days were appended to the series. The
+	 * caller repaints the plot.
+	 * @param calendar gives the date of each X value, or null to label the X values themselves
+	 */
+	public void setCalendar(TradingCalendar calendar) {
+		if (calendar != this.calendar) {
+			this.calendar = calendar;
+			this.axesLayer = null;
+		}
+	}
+
+	/**
+	 * draw the frames of the plot on a render thread, so that painting the plot only copies the
+	 * last finished frame and costs the same however many points are drawn, or draw them while
+	 * painting again. Each frame is handed to the render thread as a snapshot taken while painting:
+	 * the screen paths of the visible points, already decimated to a few per pixel column, and the
+	 * ticks and labels of the axes. The render thread only strokes and fills them with Java2D and
+	 * never reads the points, which the event dispatch thread may change meanwhile. By default the
+	 * frames are drawn on the render thread if the <code>stockviewer.render</code> system property
+	 * is <code>background</code>.
+	 * @param background TRUE to draw the frames on the render thread
+	 */
+	public void setBackgroundRendering(boolean background) {
+		this.background = background;
+		if (!background) {
+			this.renderer = null;
+			this.requestedState = null;
+		}
+		repaint();
+	}
+
+	/**
+	 * check if the frames are drawn on the render thread
+	 * @return TRUE if painting only copies the last finished frame
+	 */
+	public boolean isBackgroundRendering() {
+		return background;
+	}
+
+	/**
+	 * get the number of frames drawn on the render thread, and the number of those cancelled
+	 * because a newer one was requested while they were drawn
+	 * @return drawn and cancelled frames, zero if the frames are drawn while painting
+	 */
+	public long[] getBackgroundFrameCounts() {
+		return renderer == null ? new long[2] : new long[] {renderer.getDrawnFrames(), renderer.getCancelledFrames()};
+	}
+
+	/**
+	 * draw and paint axes and strokes between points. The background, axes and labels only
+	 * change with the size of the panel and the visible ranges, so they are copied from a cached
+	 * image, and only the strokes are drawn each time. When the frames are drawn on the render
+	 * thread, a snapshot of the frame is requested if the plot changed since the last one, and
+	 * the last finished frame is copied.
 	 */
 	@Override
 	protected void paintComponent(Graphics g) {
 		super.paintComponent(g);
 		Graphics2D g2 = (Graphics2D) g;
+		if (background) {
+			if (renderer == null) {
+				renderer = new PlotRenderer<>(this, (frame, frameGraphics, width, height, stale) -> frame.draw(frameGraphics, stale));
+			}
+			AffineTransform transform = g2.getTransform();
+			FrameState state = frameState(transform.getScaleX(), transform.getScaleY());
+			if (!state.equals(requestedState)) {
+				requestedState = state;
+				renderer.request(snapshot(), getWidth(), getHeight(), transform.getScaleX(), transform.getScaleY(),
+						getGraphicsConfiguration());
+			}
+			renderer.paintLatest(g2);
+			return;
+		}
+		updateView();
+		BufferedImage layer = getAxesLayer(g2.getTransform());
+		g2.drawImage(layer, 0, 0, getWidth(), getHeight(), 0, 0, layerImageWidth, layerImageHeight, null);
 		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		drawWhiteBackground(g2);
-		drawAxes(g2);
+		drawSeries(g2);
+	}
+
+	/**
+	 * get what the next frame shows besides the points themselves, whose changes are told by the
+	 * sum of the versions of the points of every level and overlay
+	 * @param scaleX device pixels per pixel of the panel
+	 * @param scaleY device pixels per pixel of the panel
+	 * @return state of the plot
+	 */
+	private FrameState frameState(double scaleX, double scaleY) {
+		if (overlaySnapshot == null) {
+			overlaySnapshot = List.copyOf(overlays);
+		}
+		long version = 0;
+		for (Points level : levels) {
+			version += level.getVersion();
+		}
+		for (Overlay overlay : overlaySnapshot) {
+			for (Points level : overlay.levels) {
+				version += level.getVersion();
+			}
+		}
+		return new FrameState(viewport.getMinX(), viewport.getMaxX(), viewport.isZoomed(), version, overlaySnapshot,
+				calendar, getFont(), getBackground(), getWidth(), getHeight(), scaleX, scaleY);
+	}
+
+	/**
+	 * take the snapshot of a frame for the render thread: the visible points of the series and
+	 * of the overlays scaled into new paths, decimated as when painting so that their size depends
+	 * on the width of the plot and not on the number of points, and copies of the ticks and labels
+	 * @return snapshot that shares nothing that is changed later
+	 */
+	private FrameSnapshot snapshot() {
+		updateView();
+		FontMetrics fontMetrics = getFontMetrics(getFont());
+		placeXTicks(fontMetrics);
+		placeYTicks(fontMetrics);
+		int[] xTickCoordinates = new int[xTicks.size()];
+		String[] xLabels = new String[xTicks.size()];
+		for (int i = 0; i < xTicks.size(); i++) {
+			xTickCoordinates[i] = (int) xTickCoordinate(xTicks.getValue(i));
+			xLabels[i] = xTicks.getLabel(i);
+		}
+		int[] yTickCoordinates = new int[yTicks.size()];
+		String[] yLabels = new String[yTicks.size()];
+		for (int i = 0; i < yTicks.size(); i++) {
+			yTickCoordinates[i] = (int) yTickCoordinate(yTicks.getValue(i));
+			yLabels[i] = yTicks.getLabel(i);
+		}
+
+		Shape[] lines = new Shape[1 + overlays.size()];
+		Color[] colors = new Color[lines.length];
+		Stroke[] strokes = new Stroke[lines.length];
+		boolean[] thin = new boolean[lines.length];
+		scaleLine(shown, decimator, viewFrom, viewTo, null);
+		lines[0] = screenPoints.copyPath();
+		colors[0] = GRAPH_COLOR;
+		strokes[0] = GRAPH_STROKE;
+		for (int o = 0; o < overlays.size(); o++) {
+			Overlay overlay = overlays.get(o);
+			Points line = overlay.getLevel(viewLevel);
+			scaleLine(line, overlay.getDecimator(viewLevel),
+					Math.max(0, line.indexOfX(viewMinX) - 1), Math.min(line.size(), line.indexOfX(viewMaxX) + 2), null);
+			lines[o + 1] = screenPoints.copyPath();
+			colors[o + 1] = overlay.color;
+			strokes[o + 1] = overlay.stroke;
+			thin[o + 1] = overlay.thin;
+		}
+		return new FrameSnapshot(getWidth(), getHeight(), getFont(), getBackground(), viewport.isZoomed(),
+				xTickCoordinates, xLabels, yTickCoordinates, yLabels, lines, colors, strokes, thin);
+	}
+
+	/**
+	 * get the image of the background, axes and labels, drawing it again if the panel was resized,
+	 * moved to a screen of another scale, or the visible ranges changed. The image is only softly
+	 * reachable, so the garbage collector may release it when memory runs low, least recently
+	 * painted first, which are the layers of the tabs that are not shown; it is drawn again on the
+	 * next paint.
+	 * @param transform of the graphics the image will be drawn on, for its device scale
+	 * @return the image, its top left <code>layerImageWidth</code> by <code>layerImageHeight</code>
+	 * pixels cover the whole panel at device resolution
+	 */
+	private BufferedImage getAxesLayer(AffineTransform transform) {
+		double scaleX = transform.getScaleX();
+		double scaleY = transform.getScaleY();
+		BufferedImage image = axesLayer != null ? axesLayer.get() : null;
+		if (image != null && layerWidth == getWidth() && layerHeight == getHeight()
+				&& layerScaleX == scaleX && layerScaleY == scaleY && layerSize == points.size()
+				&& layerMinX == viewMinX && layerMaxX == viewMaxX && layerMinY == viewMinY && layerMaxY == viewMaxY) {
+			return image;
+		}
+		int imageWidth = Math.max(1, (int) Math.ceil(getWidth() * scaleX));
+		int imageHeight = Math.max(1, (int) Math.ceil(getHeight() * scaleY));
+		if (image == null || image.getWidth() < imageWidth || image.getHeight() < imageHeight) {
+			// grown in steps, so that dragging the window edge does not allocate an image per frame
+			int allocatedWidth = (imageWidth + LAYER_SIZE_STEP - 1) / LAYER_SIZE_STEP * LAYER_SIZE_STEP;
+			int allocatedHeight = (imageHeight + LAYER_SIZE_STEP - 1) / LAYER_SIZE_STEP * LAYER_SIZE_STEP;
+			GraphicsConfiguration configuration = getGraphicsConfiguration();
+			image = configuration != null ? configuration.createCompatibleImage(allocatedWidth, allocatedHeight)
+					: new BufferedImage(allocatedWidth, allocatedHeight, BufferedImage.TYPE_INT_RGB);
+			axesLayer = new SoftReference<>(image);
+		}
+		layerImageWidth = imageWidth;
+		layerImageHeight = imageHeight;
+
+		Graphics2D layer = image.createGraphics();
+		try {
+			layer.scale(scaleX, scaleY);
+			layer.setFont(getFont());
+			layer.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			layer.setColor(getBackground());
+			layer.fillRect(0, 0, getWidth(), getHeight());
+			drawWhiteBackground(layer);
+			drawAxes(layer);
+		} finally {
+			layer.dispose();
+		}
+		layerWidth = getWidth();
+		layerHeight = getHeight();
+		layerScaleX = scaleX;
+		layerScaleY = scaleY;
+		layerSize = points.size();
+		layerMinX = viewMinX;
+		layerMaxX = viewMaxX;
+		layerMinY = viewMinY;
+		layerMaxY = viewMaxY;
+		return image;
+	}
+
+	/**
+	 * find the level to draw, the visible points and their range of values. The coarsest level
+	 * with at least one point per pixel column in the visible range is drawn, so that a long range
+	 * touches a small part of the data without showing fewer bars than pixels. The points are found
+	 * by binary search over their X values and the range by a query of the range extrema of the
+	 * points, so this costs O(log n) however many points are visible. One point beyond each edge
+	 * is included so that the lines leaving the plot are drawn up to its border. The range of
+	 * values takes in the visible points of the overlays, found the same way.
+	 */
+	private void updateView() {
+		viewMinX = viewport.getMinX();
+		viewMaxX = viewport.getMaxX();
+		viewLevel = 0;
+		for (int l = levels.length - 1; l > 0; l--) {
+			if (levels[l].indexOfX(viewMaxX) - levels[l].indexOfX(viewMinX) >= getPlotWidth()) {
+				viewLevel = l;
+				break;
+			}
+		}
+		shown = levels[viewLevel];
+		decimator = decimators[viewLevel];
+		viewFrom = Math.max(0, shown.indexOfX(viewMinX) - 1);
+		viewTo = Math.min(shown.size(), shown.indexOfX(viewMaxX) + 2);
+		viewMinY = shown.size() > 0 ? shown.getMinY(viewFrom, viewTo) : shown.getMinY();
+		viewMaxY = shown.size() > 0 ? shown.getMaxY(viewFrom, viewTo) : shown.getMaxY();
+		for (Overlay overlay : overlays) {
+			Points line = overlay.getLevel(viewLevel);
+			if (line.size() > 0) {
+				int from = Math.max(0, line.indexOfX(viewMinX) - 1);
+				int to = Math.min(line.size(), line.indexOfX(viewMaxX) + 2);
+				viewMinY = Math.min(viewMinY, line.getMinY(from, to));
+				viewMaxY = Math.max(viewMaxY, line.getMaxY(from, to));
+			}
+		}
+		if (viewMinY > viewMaxY) {
+			// nothing but missing values in view
+			viewMinY = shown.getMinY();
+			viewMaxY = shown.getMaxY();
+		}
+	}
 
+	/**
+	 * get the X value shown at a horizontal position of the panel
+	 * @param x coordinate in the panel
+	 * @return X value
+	 */
+	private double xValueAt(int x) {
+		double minX = viewport.getMinX();
+		return minX + (x - originX()) * (viewport.getMaxX() - minX) / getPlotWidth();
+	}
+
+	/**
+	 * draw the strokes between the visible points. The points are scaled into a reused path and
+	 * drawn in one call, with one sub path per run of present values, which jumps over the missing
+	 * points. When there are more visible points than the plot can show, they are first reduced to
+	 * a few per pixel column by the decimator; otherwise only the points that cross the clip are
+	 * scaled, which is a few of them after <code>repaintFrom</code>. The overlays are drawn the same
+	 * way after the points, each with its own color and stroke.
+	 * @param g2 is the object of the graphics which invokes drawing methods
+	 */
+	public void drawSeries(Graphics2D g2) {
+		updateView();
+		this.paintedMinY = viewMinY;
+		this.paintedMaxY = viewMaxY;
+		if (viewport.isZoomed()) {
+			// the points beyond the edges must not be drawn over the axes
+			g2 = (Graphics2D) g2.create();
+			g2.clipRect(originX(), 0, getPlotWidth() + 1, getHeight());
+		}
 		g2.setColor(GRAPH_COLOR);
 		g2.setStroke(GRAPH_STROKE);
+		drawLine(g2, shown, decimator, viewFrom, viewTo);
+		Object antialiasing = g2.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+		for (Overlay overlay : overlays) {
+			Points line = overlay.getLevel(viewLevel);
+			g2.setColor(overlay.color);
+			g2.setStroke(overlay.stroke);
+			if (overlay.thin && antialiasing != null) {
+				g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+			}
+			drawLine(g2, line, overlay.getDecimator(viewLevel),
+					Math.max(0, line.indexOfX(viewMinX) - 1), Math.min(line.size(), line.indexOfX(viewMaxX) + 2));
+			if (overlay.thin && antialiasing != null) {
+				g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+			}
+		}
+		if (viewport.isZoomed()) {
+			g2.dispose();
+		}
+	}
 
-		List<ApproximatePoint> scaledPointList = this.points.scaledToScreen(getOrigin().getX().intValue(),
-				getOrigin().getY().intValue(), getPlotWidth(), getPlotHeight()).asList();
+	/**
+	 * scale the visible points of a series into the reused path and draw it with the current color
+	 * and stroke, reduced by its decimator if there are more than the plot can show
+	 * @param g2 is the object of the graphics which invokes drawing methods
+	 * @param line the points of the series
+	 * @param lineDecimator the decimator of these points
+	 * @param from index of the first visible point
+	 * @param to index after the last visible point
+	 */
+	private void drawLine(Graphics2D g2, Points line, ColumnDecimator lineDecimator, int from, int to) {
+		scaleLine(line, lineDecimator, from, to, g2.getClipBounds());
+		screenPoints.draw(g2);
+	}
 
-		// to have an opportunity to jump over missing points
-		int i = 0;
-		while (i < scaledPointList.size() - 1) {
-			// if we are in the missing point (i = position), or missing point is next, go to the next position
-			if (scaledPointList.get(i).getY() == null || scaledPointList.get(i+1) == null) {
-				i += 1;
-				continue;
+	/**
+	 * scale the visible points of a series into the reused path, reduced by its decimator if there
+	 * are more than the plot can show, or only those that cross a clip otherwise
+	 * @param clip the part of the panel that is drawn, null for all of it
+	 */
+	private void scaleLine(Points line, ColumnDecimator lineDecimator, int from, int to, Rectangle clip) {
+		if (to - from > ColumnDecimator.POINTS_PER_COLUMN * getPlotWidth()) {
+			int count = lineDecimator.decimate(from, to, viewMinX, viewMaxX, getPlotWidth());
+			line.scaleToScreen(originX(), originY(), getPlotWidth(), getPlotHeight(), viewMinX, viewMaxX, viewMinY, viewMaxY,
+					lineDecimator.getIndices(), count, screenPoints);
+		} else {
+			if (clip != null && line.size() > 1) {
+				double clipLeft = xValueAt(clip.x - GRAPH_STROKE_WIDTH);
+				double clipRight = xValueAt(clip.x + clip.width + GRAPH_STROKE_WIDTH);
+				// keep one point on each side so that the segments crossing the clip edges are drawn
+				from = Math.max(from, line.indexOfX(clipLeft) - 1);
+				to = Math.min(to, line.indexOfX(clipRight) + 1);
 			}
-			Point startPoint = scaledPointList.get(i).getPoint();
-			Point endPoint = scaledPointList.get(i + 1).getPoint();
-			g2.drawLine(startPoint.x, startPoint.y, endPoint.x, endPoint.y);
-			i += 1;
+			line.scaleToScreen(originX(), originY(), getPlotWidth(), getPlotHeight(), viewMinX, viewMaxX, viewMinY, viewMaxY,
+					from, Math.max(from, to), screenPoints);
+		}
+	}
+
+	/**
+	 * repaint the plot after the points from an index to the end changed in place. If the range of
+	 * the values is unchanged the axes stay the same, so only the strip from the point before
+	 * <code>index</code> to the right end of the plot is repainted; otherwise, or if a coarser level
+	 * than the daily one is drawn, the whole plot is.
+	 * @param index of the first changed point
+	 */
+	public void repaintFrom(int index) {
+		if (background) {
+			// the frame is drawn whole on the render thread, copying it costs the same
+			repaint();
+			return;
+		}
+		updateView();
+		if (shown != points || points.size() < 2 || index < 1 || paintedMinY != viewMinY || paintedMaxY != viewMaxY) {
+			repaint();
+			return;
+		}
+		double scale = getPlotWidth() / (viewMaxX - viewMinX);
+		int left = Math.max(0, (int) Math.floor(originX() + (points.getX(index - 1) - viewMinX) * scale) - GRAPH_STROKE_WIDTH);
+		int right = originX() + getPlotWidth() + GRAPH_STROKE_WIDTH;
+		if (left >= right) {
+			// the changed points are right of the visible range
+			return;
 		}
+		repaint(left, TOP_BORDER_GAP - GRAPH_STROKE_WIDTH, right - left, getPlotHeight() + 2 * GRAPH_STROKE_WIDTH);
 	}
 
 	/**
@@ -91,8 +530,8 @@ public class Plot extends JPanel {
 	 * @param g2 is the object of the graphics which invokes drawing methods
 	 */
 	public void drawWhiteBackground(Graphics2D g2) {
-		g2.setColor(new Color(255, 255, 255));
-		g2.fillRect(getOrigin().getPoint().x, TOP_BORDER_GAP, getPlotWidth(), getPlotHeight());
+		g2.setColor(Color.WHITE);
+		g2.fillRect(originX(), TOP_BORDER_GAP, getPlotWidth(), getPlotHeight());
 	}
 
 	/**
@@ -100,26 +539,33 @@ public class Plot extends JPanel {
 	 * @param g2 is the object of the graphics which invokes drawing methods
 	 */
 	public void drawAxes(Graphics2D g2) {
-		g2.setColor(new Color(0, 0, 0));
+		g2.setColor(Color.BLACK);
 		
 		// Y-axis, (20, height - 20) bottom-left, to (20, 20) top-left
-		Point originPoint = getOrigin().getPoint();
-		g2.drawLine(originPoint.x, originPoint.y, originPoint.x, TOP_BORDER_GAP);
+		g2.drawLine(originX(), originY(), originX(), TOP_BORDER_GAP);
 
 		// X-axis, (20, height - 20) bottom-left to (width - 20, height - 20) bottom-right
-		g2.drawLine(originPoint.x, originPoint.y,
-				originPoint.x + getPlotWidth(), originPoint.y);
+		g2.drawLine(originX(), originY(),
+				originX() + getPlotWidth(), originY());
 
 		drawXHatches(g2);	// draw X axis dates
 		drawYHatches(g2);	// draw Y axis prices labels
 	}
 
 	/**
-	 * get the original point in which the two axes will start from
-	 * @return approximate point of starting point of the plot
+	 * get the X coordinate of the original point in which the two axes will start from
+	 * @return X coordinate of the starting point of the plot
+	 */
+	private int originX() {
+		return LEFT_BORDER_GAP;
+	}
+
+	/**
+	 * get the Y coordinate of the original point in which the two axes will start from
+	 * @return Y coordinate of the starting point of the plot
 	 */
-	private ApproximatePoint getOrigin() {
-		return new ApproximatePoint(LEFT_BORDER_GAP, getHeight() - BOTTOM_BORDER_GAP);
+	private int originY() {
+		return getHeight() - BOTTOM_BORDER_GAP;
 	}
 
 	/**
@@ -138,39 +584,16 @@ public class Plot extends JPanel {
 		return getWidth() - LEFT_BORDER_GAP - RIGHT_BORDER_GAP;
 	}
 
-	/**
-	 * check if two points can be close to each other in the axis. This will help in arranging the points
-	 * in the axis.
-	 * @param currentCoordinate current point coordinate
-	 * @param nextCoordinate next point coordinate
-	 * @param destinationPoint the last point
-	 * @return TRUE if current distance higher than or equals to next distance, FALSE otherwise
-	 */
-	private boolean canComeCloser(Double currentCoordinate, Double nextCoordinate, Double destinationPoint) {
-		Double currentDistance = Math.abs(destinationPoint - currentCoordinate);
-		Double nextDistance = Math.abs(destinationPoint - nextCoordinate);
-		return currentDistance >= nextDistance;
-	}
-
 	/**
 	 * get the coordinates of X axis hatches. This method specifies the dates will be 
-	 * shown in the axis and the gap between each of them
+	 * shown in the axis and the gap between each of them.
 	 * @return coordinate pairs of each hatch
 	 */
 	public TreeMap<Double, Integer> getXAxisHatchesCoordinates() {
-		// X-s have to be discrete values that has even gap between all of them
+		placeXTicks(getFontMetrics(getFont()));
 		TreeMap<Double, Integer> coordinatePairs = new TreeMap<>();
-		Double approximatePixelGapWidth = (double) getPlotWidth() / (X_AXIS_MARKS_COUNT - 1);
-		Double discretePointGapWidth = (double) getPlotWidth() / (points.size() - 1);
-		Integer hatchNum = 0;
-		for (int i = 1; i < points.size(); i++) {
-			Double xCoordinate = getOrigin().getX() + i * discretePointGapWidth;
-
-			if (!canComeCloser(xCoordinate, xCoordinate + discretePointGapWidth,
-					getOrigin().getX() + hatchNum * approximatePixelGapWidth)) {
-				coordinatePairs.put(xCoordinate, points.get(i).getX().intValue());
-				hatchNum++;
-			}
+		for (int i = 0; i < xTicks.size(); i++) {
+			coordinatePairs.put(xTickCoordinate(xTicks.getValue(i)), (int) xTicks.getValue(i));
 		}
 		return coordinatePairs;
 	}
@@ -181,21 +604,52 @@ public class Plot extends JPanel {
 	 * @return coordinates of hatches
 	 */
 	public TreeMap<Double, Double> getYAxisHatchesCoordinates() {
-		Double minY = points.getMinY();
-		Double maxY = points.getMaxY();
-		Double yRange = maxY - minY;
-		Double unitsToPixel = yRange / getPlotHeight();
-
+		placeYTicks(getFontMetrics(getFont()));
 		TreeMap<Double, Double> coordinatePairs = new TreeMap<>();
-		Integer pixelGapWidth = getPlotHeight() / (Y_AXIS_MARKS_COUNT - 1);
-		for (int i = 0; i < Y_AXIS_MARKS_COUNT; i++) {
-			Double yCoordinate = getOrigin().getY() - i * pixelGapWidth;
-			Double label = minY + unitsToPixel * (getOrigin().getY() - yCoordinate);
-			coordinatePairs.put(yCoordinate, label);
+		for (int i = 0; i < yTicks.size(); i++) {
+			coordinatePairs.put(yTickCoordinate(yTicks.getValue(i)), yTicks.getValue(i));
 		}
 		return coordinatePairs;
 	}
 
+	/**
+	 * place the X ticks on the first days of calendar units of the visible days, or on round
+	 * indices when the plot has no dates
+	 * @param metrics of the font the labels are drawn with
+	 */
+	private void placeXTicks(FontMetrics metrics) {
+		updateView();
+		int maxTicks = Math.max(2, Math.min(X_AXIS_MARKS_COUNT, getPlotWidth() / X_LABEL_SPACING));
+		if (calendar == null || calendar.size() == 0) {
+			xTicks.valueTicks(viewMinX, viewMaxX, maxTicks, metrics);
+			return;
+		}
+		int first = Math.max(0, (int) Math.ceil(viewMinX));
+		int last = Math.min(calendar.size() - 1, (int) Math.floor(viewMaxX));
+		xTicks.dateTicks(first, last, calendar, maxTicks, metrics);
+	}
+
+	/**
+	 * place the Y ticks on round values of the visible range
+	 * @param metrics of the font the labels are drawn with
+	 */
+	private void placeYTicks(FontMetrics metrics) {
+		updateView();
+		int maxTicks = Math.max(2, Math.min(Y_AXIS_MARKS_COUNT, getPlotHeight() / Y_LABEL_SPACING));
+		yTicks.valueTicks(viewMinY, viewMaxY, maxTicks, metrics);
+	}
+
+	private double xTickCoordinate(double x) {
+		return originX() + (x - viewMinX) * getPlotWidth() / (viewMaxX - viewMinX);
+	}
+
+	private double yTickCoordinate(double y) {
+		if (viewMaxY == viewMinY) {
+			return originY();
+		}
+		return originY() - (y - viewMinY) * getPlotHeight() / (viewMaxY - viewMinY);
+	}
+
 	/**
 	 * define constant two axes X and Y 
 	 */
@@ -209,22 +663,17 @@ public class Plot extends JPanel {
 	 * @param g2 is the object of the graphics which invokes drawing methods
 	 */
 	public void drawXHatches(Graphics2D g2) {
-		TreeMap<Double, Integer> xCoordinatePairs = getXAxisHatchesCoordinates();
-		for (Double xCoordinate : xCoordinatePairs.keySet()) {
-			int x0 = xCoordinate.intValue();
-			int y0 = getOrigin().getY().intValue();
+		FontMetrics fontMetrics = g2.getFontMetrics();
+		placeXTicks(fontMetrics);
+		for (int i = 0; i < xTicks.size(); i++) {
+			int x0 = (int) xTickCoordinate(xTicks.getValue(i));
+			int y0 = originY();
 			drawHatch(g2, x0, y0, HatchAxis.X);
 
-			Integer tickNum = xCoordinatePairs.get(xCoordinate);
-			String label = DATE_FORMATTER.format(xUnitToDateLabelMapping.get(tickNum));
-			FontMetrics fontMetrics = g2.getFontMetrics();
 			// the label width and height will help in drawing the String in a proper position
-			int labelWidth = fontMetrics.stringWidth(label);
-			int labelHeight = fontMetrics.getHeight();
-
-			int xLabelPosition = x0 - (labelWidth / 2);
-			int yLabelPosition = y0 + labelHeight;
-			g2.drawString(label, xLabelPosition, yLabelPosition);
+			int xLabelPosition = x0 - (xTicks.getLabelWidth(i) / 2);
+			int yLabelPosition = y0 + fontMetrics.getHeight();
+			g2.drawString(xTicks.getLabel(i), xLabelPosition, yLabelPosition);
 		}
 	}
 
@@ -234,21 +683,91 @@ public class Plot extends JPanel {
 	 * @param g2 is the object of the graphics which invokes drawing methods
 	 */
 	public void drawYHatches(Graphics2D g2) {
-		TreeMap<Double, Double> yCoordinatePairs = getYAxisHatchesCoordinates();
-		for (Double yCoordinate : yCoordinatePairs.keySet()) {
-			int x0 = getOrigin().getX().intValue();
-			int y0 = yCoordinate.intValue();
+		FontMetrics fontMetrics = g2.getFontMetrics();
+		placeYTicks(fontMetrics);
+		for (int i = 0; i < yTicks.size(); i++) {
+			int x0 = originX();
+			int y0 = (int) yTickCoordinate(yTicks.getValue(i));
 			drawHatch(g2, x0, y0, HatchAxis.Y);
 
-			String label = String.format(Y_HATCH_LABEL_PATTERN, yCoordinatePairs.get(yCoordinate));
-			FontMetrics fontMetrics = g2.getFontMetrics();
-			int labelWidth = fontMetrics.stringWidth(label);
-
-			int xLabelPosition = x0 - labelWidth - 5;
+			int xLabelPosition = x0 - yTicks.getLabelWidth(i) - 5;
 			int yLabelPosition = y0 + (fontMetrics.getHeight() / 2) - 3;
-			g2.drawString(label, xLabelPosition, yLabelPosition);
+			g2.drawString(yTicks.getLabel(i), xLabelPosition, yLabelPosition);
+		}
+	}
 
+	/**
+	 * write the plot as it would be painted at its current size as an SVG document: the same
+	 * background, axes, ticks and labels, and the same decimated strokes of the points and the
+	 * overlays, as paths. The labels are placed by their anchor instead of their measured width,
+	 * so they stay centered in any font the viewer substitutes.
+	 * @param out receives the document
+	 * @throws IOException if writing fails
+	 */
+	public void writeSvg(Appendable out) throws IOException {
+		updateView();
+		int width = getWidth(), height = getHeight();
+		FontMetrics fontMetrics = getFontMetrics(getFont());
+		placeXTicks(fontMetrics);
+		placeYTicks(fontMetrics);
+		out.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(Integer.toString(width))
+				.append("\" height=\"").append(Integer.toString(height))
+				.append("\" font-family=\"sans-serif\" font-size=\"").append(Integer.toString(getFont().getSize())).append("\">\n");
+		out.append("<rect width=\"100%\" height=\"100%\" fill=\"").append(svgColor(getBackground())).append("\"/>\n");
+		out.append(String.format("<rect x=\"%d\" y=\"%d\" width=\"%d\" height=\"%d\" fill=\"#ffffff\"/>%n",
+				originX(), TOP_BORDER_GAP, getPlotWidth(), getPlotHeight()));
+
+		// the axes and their hatches, the hatch of a Y tick is as long as in drawHatch
+		out.append("<g stroke=\"#000000\" stroke-width=\"1\">\n");
+		out.append(String.format("<path d=\"M%d %dV%dM%d %dH%d\"/>%n", originX(), TOP_BORDER_GAP, originY(),
+				originX(), originY(), originX() + getPlotWidth()));
+		for (int i = 0; i < xTicks.size(); i++) {
+			out.append(String.format("<path d=\"M%d %dv-12\"/>%n", (int) xTickCoordinate(xTicks.getValue(i)), originY()));
 		}
+		for (int i = 0; i < yTicks.size(); i++) {
+			out.append(String.format("<path d=\"M%d %dh12\"/>%n", originX(), (int) yTickCoordinate(yTicks.getValue(i))));
+		}
+		out.append("</g>\n<g fill=\"#000000\">\n");
+		for (int i = 0; i < xTicks.size(); i++) {
+			out.append(String.format("<text x=\"%d\" y=\"%d\" text-anchor=\"middle\">%s</text>%n",
+					(int) xTickCoordinate(xTicks.getValue(i)), originY() + fontMetrics.getHeight(), xTicks.getLabel(i)));
+		}
+		for (int i = 0; i < yTicks.size(); i++) {
+			out.append(String.format("<text x=\"%d\" y=\"%d\" text-anchor=\"end\">%s</text>%n", originX() - 5,
+					(int) yTickCoordinate(yTicks.getValue(i)) + fontMetrics.getHeight() / 2 - 3, yTicks.getLabel(i)));
+		}
+		out.append("</g>\n");
+
+		// the strokes, clipped to the plot like drawSeries does when zoomed
+		if (viewport.isZoomed()) {
+			out.append(String.format("<clipPath id=\"plot\"><rect x=\"%d\" y=\"0\" width=\"%d\" height=\"%d\"/></clipPath>%n<g clip-path=\"url(#plot)\">%n",
+					originX(), getPlotWidth() + 1, height));
+		} else {
+			out.append("<g>\n");
+		}
+		scaleLine(shown, decimator, viewFrom, viewTo, null);
+		writeSvgPath(out, GRAPH_COLOR, GRAPH_STROKE_WIDTH);
+		for (Overlay overlay : overlays) {
+			Points line = overlay.getLevel(viewLevel);
+			scaleLine(line, overlay.getDecimator(viewLevel),
+					Math.max(0, line.indexOfX(viewMinX) - 1), Math.min(line.size(), line.indexOfX(viewMaxX) + 2), null);
+			writeSvgPath(out, overlay.color, overlay.width);
+		}
+		out.append("</g>\n</svg>\n");
+	}
+
+	/**
+	 * write the reused path of screen points as an SVG path
+	 */
+	private void writeSvgPath(Appendable out, Color color, float width) throws IOException {
+		out.append("<path fill=\"none\" stroke=\"").append(svgColor(color)).append("\" stroke-width=\"")
+				.append(Float.toString(width)).append("\" stroke-linecap=\"square\" d=\"");
+		screenPoints.appendSvgPath(out);
+		out.append("\"/>\n");
+	}
+
+	private static String svgColor(Color color) {
+		return String.format("#%06x", color.getRGB() & 0xFFFFFF);
 	}
 
 	/*
@@ -256,7 +775,6 @@ public class Plot extends JPanel {
 	 * that is set in <code>drawXHatches</code> and <code>drawYHatches</code>
 	 */
 	public void drawHatch(Graphics2D g2, int x0, int y0, HatchAxis axis) {
-		int MARK_WIDTH = 12;
 		if (axis == HatchAxis.X) {
 			// hatch for X-axis
 			int x1 = x0;
@@ -277,4 +795,167 @@ public class Plot extends JPanel {
 	public Dimension getPreferredSize() {
 		return new Dimension(PREF_W, PREF_H);
 	}
+
+	/**
+	 * a series drawn over the points of the plot, with its levels, their decimators and its style
+	 */
+	private static class Overlay {
+		private final Points[] levels;					// storing the points of each level, from the finest
+		private final ColumnDecimator[] decimators;		// storing the decimator of each level
+		private final Color color;						// storing the color of the line
+		private final Stroke stroke;					// storing the stroke of the line
+		private final boolean thin;						// storing whether the line is drawn without antialiasing
+		private final float width;						// storing the width of the line
+
+		Overlay(Points[] levels, Color color, float width) {
+			this.levels = levels;
+			this.decimators = new ColumnDecimator[levels.length];
+			for (int l = 0; l < levels.length; l++) {
+				this.decimators[l] = new ColumnDecimator(levels[l]);
+			}
+			this.color = color;
+			this.stroke = new BasicStroke(width);
+			this.thin = width <= 1;
+			this.width = width;
+		}
+
+		Points getLevel(int level) {
+			return levels[Math.min(level, levels.length - 1)];
+		}
+
+		ColumnDecimator getDecimator(int level) {
+			return decimators[Math.min(level, levels.length - 1)];
+		}
+	}
+
+	/**
+	 * what a frame drawn on the render thread shows besides the points, compared with the state
+	 * of the last requested frame to tell whether a new snapshot is needed
+	 */
+	private static final class FrameState {
+		private final double minX, maxX;				// storing the visible range of X values
+		private final boolean zoomed;					// storing whether the viewport is zoomed
+		private final long version;						// storing the sum of the versions of all points
+		private final List<Overlay> overlays;			// storing the overlays, a copy that is never changed
+		private final TradingCalendar calendar;			// storing the calendar of the X axis
+		private final Font font;						// storing the font of the labels
+		private final Color background;					// storing the color around the plot
+		private final int width, height;				// storing the size of the panel
+		private final double scaleX, scaleY;			// storing the device scale
+
+		FrameState(double minX, double maxX, boolean zoomed, long version, List<Overlay> overlays,
+				TradingCalendar calendar, Font font, Color background, int width, int height, double scaleX, double scaleY) {
+			this.minX = minX;
+			this.maxX = maxX;
+			this.zoomed = zoomed;
+			this.version = version;
+			this.overlays = overlays;
+			this.calendar = calendar;
+			this.font = font;
+			this.background = background;
+			this.width = width;
+			this.height = height;
+			this.scaleX = scaleX;
+			this.scaleY = scaleY;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof FrameState)) {
+				return false;
+			}
+			FrameState state = (FrameState) other;
+			return minX == state.minX && maxX == state.maxX && zoomed == state.zoomed && version == state.version
+					&& overlays == state.overlays && calendar == state.calendar
+					&& font.equals(state.font) && background.equals(state.background)
+					&& width == state.width && height == state.height && scaleX == state.scaleX && scaleY == state.scaleY;
+		}
+
+		@Override
+		public int hashCode() {
+			return Double.hashCode(minX) * 31 + Double.hashCode(maxX) * 17 + Long.hashCode(version);
+		}
+	}
+
+	/**
+	 * everything a frame drawn on the render thread needs, in screen coordinates, taken on the
+	 * event dispatch thread and never changed afterwards. It is drawn with the same colors, strokes
+	 * and hints as the axes layer and the strokes painted directly.
+	 */
+	private static final class FrameSnapshot {
+		private final int width, height;				// storing the size of the panel
+		private final Font font;						// storing the font of the labels
+		private final Color background;					// storing the color around the plot
+		private final boolean zoomed;					// storing whether the lines are clipped to the plot
+		private final int[] xTickCoordinates;			// storing the X coordinate of each X tick
+		private final String[] xLabels;					// storing the label of each X tick
+		private final int[] yTickCoordinates;			// storing the Y coordinate of each Y tick
+		private final String[] yLabels;					// storing the label of each Y tick
+		private final Shape[] lines;					// storing the path of the points, then of each overlay
+		private final Color[] colors;					// storing the color of each line
+		private final Stroke[] strokes;					// storing the stroke of each line
+		private final boolean[] thin;					// storing whether each line is drawn without antialiasing
+
+		FrameSnapshot(int width, int height, Font font, Color background, boolean zoomed,
+				int[] xTickCoordinates, String[] xLabels, int[] yTickCoordinates, String[] yLabels,
+				Shape[] lines, Color[] colors, Stroke[] strokes, boolean[] thin) {
+			this.width = width;
+			this.height = height;
+			this.font = font;
+			this.background = background;
+			this.zoomed = zoomed;
+			this.xTickCoordinates = xTickCoordinates;
+			this.xLabels = xLabels;
+			this.yTickCoordinates = yTickCoordinates;
+			this.yLabels = yLabels;
+			this.lines = lines;
+			this.colors = colors;
+			this.strokes = strokes;
+			this.thin = thin;
+		}
+
+		/**
+		 * draw the frame, stopping between lines once it is stale
+		 * @param g2 graphics of the frame image
+		 * @param stale tells whether a newer frame was requested
+		 */
+		void draw(Graphics2D g2, BooleanSupplier stale) {
+			int originX = LEFT_BORDER_GAP, originY = height - BOTTOM_BORDER_GAP;
+			int plotWidth = width - LEFT_BORDER_GAP - RIGHT_BORDER_GAP;
+			int plotHeight = height - BOTTOM_BORDER_GAP - TOP_BORDER_GAP;
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g2.setColor(background);
+			g2.fillRect(0, 0, width, height);
+			g2.setColor(Color.WHITE);
+			g2.fillRect(originX, TOP_BORDER_GAP, plotWidth, plotHeight);
+
+			// the axes, hatches and labels as drawAxes places them
+			g2.setColor(Color.BLACK);
+			g2.setFont(font);
+			FontMetrics fontMetrics = g2.getFontMetrics();
+			g2.drawLine(originX, originY, originX, TOP_BORDER_GAP);
+			g2.drawLine(originX, originY, originX + plotWidth, originY);
+			for (int i = 0; i < xTickCoordinates.length; i++) {
+				int x0 = xTickCoordinates[i];
+				g2.drawLine(x0, originY, x0, originY - MARK_WIDTH);
+				g2.drawString(xLabels[i], x0 - fontMetrics.stringWidth(xLabels[i]) / 2, originY + fontMetrics.getHeight());
+			}
+			for (int i = 0; i < yTickCoordinates.length; i++) {
+				int y0 = yTickCoordinates[i];
+				g2.drawLine(originX, y0, LEFT_BORDER_GAP + MARK_WIDTH, y0);
+				g2.drawString(yLabels[i], originX - fontMetrics.stringWidth(yLabels[i]) - 5, y0 + (fontMetrics.getHeight() / 2) - 3);
+			}
+
+			if (zoomed) {
+				g2.clipRect(originX, 0, plotWidth + 1, height);
+			}
+			for (int l = 0; l < lines.length && !stale.getAsBoolean(); l++) {
+				g2.setColor(colors[l]);
+				g2.setStroke(strokes[l]);
+				g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+						thin[l] ? RenderingHints.VALUE_ANTIALIAS_OFF : RenderingHints.VALUE_ANTIALIAS_ON);
+				g2.draw(lines[l]);
+			}
+		}
+	}
 }
@@ -0,0 +1,258 @@
+import javax.swing.JComponent;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * PlotRenderer.java
+ *
+ * draws the frames of a chart on a background thread, so that painting the chart on the event
+ * dispatch thread only copies the last finished frame, whatever the amount of data. The chart
+ * describes each frame by an immutable state, which must hold everything the frame draws, since
+ * the render thread must not read data that the event dispatch thread changes; a frame is drawn
+ * only when the state or the size of the panel changes. Every request takes a new generation
+ * number, and a frame whose generation is no longer the latest is stale: its drawing stops at
+ * the next check and it is never shown, so a burst of resizes or viewport moves draws the last
+ * of them only. An outdated frame is
+ * still finished and shown if the shown frame is older than <code>MAX_FRAME_AGE</code>, so that
+ * dragging steadily over a series that takes longer to draw than the drag events come in keeps
+ * moving instead of waiting for the drag to stop; whether it may is decided once when its drawing
+ * starts, so a frame whose drawing stopped early is never shown. Frames are drawn into an image
+ * that is not shown and swapped with the shown one when finished; the swap and the copy to the
+ * screen hold the same lock, which is never held while drawing.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class PlotRenderer<S> {
+
+	private static final int IMAGE_SIZE_STEP = 256;		// the frame images grow in steps of this many pixels
+	private static final long MAX_FRAME_AGE = 100_000_000L;	// nanoseconds after which an outdated frame is shown rather than cancelled
+
+	// one thread draws the frames of every chart, the requests of a chart replace each other
+	private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "plot-renderer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * draws a frame of a chart on the render thread
+	 */
+	public interface FrameDrawer<S> {
+		/**
+		 * draw a frame
+		 * @param state of the chart when the frame was requested
+		 * @param g2 graphics of the frame image, scaled to the device
+		 * @param width of the panel
+		 * @param height of the panel
+		 * @param stale tells whether a newer frame was requested, in which case drawing may stop
+		 */
+		void draw(S state, Graphics2D g2, int width, int height, BooleanSupplier stale);
+	}
+
+	/**
+	 * The PlotRenderer constructor
+	 * @param chart the component that shows the frames, repainted when a frame is finished
+	 * @param drawer draws the frames on the render thread
+	 */
+	public PlotRenderer(JComponent chart, FrameDrawer<S> drawer) {
+		this.chart = chart;
+		this.drawer = drawer;
+		this.generation = new AtomicLong();
+		this.frameLock = new Object();
+		this.shownTime = System.nanoTime() - MAX_FRAME_AGE;
+	}
+
+	/**
+	 * request a frame unless the last request had the same state and size
+	 * @param state immutable description of the frame, compared with <code>equals</code>
+	 * @param width of the panel
+	 * @param height of the panel
+	 * @param scaleX device pixels per pixel of the panel
+	 * @param scaleY device pixels per pixel of the panel
+	 * @param configuration of the screen the frames are shown on, or null
+	 */
+	public void request(S state, int width, int height, double scaleX, double scaleY, GraphicsConfiguration configuration) {
+		Request<S> last = this.requested;
+		if (last != null && last.state.equals(state) && last.width == width && last.height == height
+				&& last.scaleX == scaleX && last.scaleY == scaleY) {
+			return;
+		}
+		Request<S> request = new Request<>(state, width, height, scaleX, scaleY, configuration, generation.incrementAndGet());
+		this.requested = request;
+		synchronized (this) {
+			this.pending = request;
+			if (scheduled) {
+				return;
+			}
+			scheduled = true;
+		}
+		WORKER.execute(this::drawPending);
+	}
+
+	/**
+	 * copy the last finished frame to the top left corner of a graphics
+	 * @param g2 is the object of the graphics which invokes drawing methods
+	 * @return TRUE if a frame was copied
+	 */
+	public boolean paintLatest(Graphics2D g2) {
+		synchronized (frameLock) {
+			if (front == null) {
+				return false;
+			}
+			g2.drawImage(front.image, 0, 0, front.width, front.height, 0, 0, front.imageWidth, front.imageHeight, null);
+			return true;
+		}
+	}
+
+	/**
+	 * get the number of frames drawn and shown so far
+	 * @return number of frames
+	 */
+	public long getDrawnFrames() {
+		return drawnFrames;
+	}
+
+	/**
+	 * get the number of frames dropped because a newer one was requested while they were drawn
+	 * @return number of frames
+	 */
+	public long getCancelledFrames() {
+		return cancelledFrames;
+	}
+
+	/**
+	 * draw the latest request on the render thread, and show it unless it became stale meanwhile
+	 */
+	private void drawPending() {
+		Request<S> request;
+		synchronized (this) {
+			request = pending;
+			pending = null;
+			scheduled = false;
+		}
+		if (request == null) {
+			return;
+		}
+		// decided once, so that stale never turns from true back to false: a frame whose drawer saw
+		// it true and stopped early is dropped by the check after drawing
+		boolean overdue = System.nanoTime() - shownTime >= MAX_FRAME_AGE;
+		BooleanSupplier stale = () -> !overdue && generation.get() != request.generation;
+		if (stale.getAsBoolean()) {
+			cancelledFrames++;
+			return;
+		}
+		Frame frame = backFrame(request);
+		Graphics2D g2 = frame.image.createGraphics();
+		try {
+			g2.scale(request.scaleX, request.scaleY);
+			drawer.draw(request.state, g2, request.width, request.height, stale);
+		} catch (RuntimeException e) {
+			spare = new SoftReference<>(frame);
+			throw e;
+		} finally {
+			g2.dispose();
+		}
+		if (stale.getAsBoolean()) {
+			spare = new SoftReference<>(frame);
+			cancelledFrames++;
+			return;
+		}
+		synchronized (frameLock) {
+			if (front != null) {
+				spare = new SoftReference<>(front);
+			}
+			front = frame;
+		}
+		shownTime = System.nanoTime();
+		drawnFrames++;
+		chart.repaint();
+	}
+
+	/**
+	 * get an image that is not shown to draw a frame into, reusing the spare one if it is large
+	 * enough
+	 */
+	private Frame backFrame(Request<S> request) {
+		int imageWidth = Math.max(1, (int) Math.ceil(request.width * request.scaleX));
+		int imageHeight = Math.max(1, (int) Math.ceil(request.height * request.scaleY));
+		Frame frame = spare != null ? spare.get() : null;
+		spare = null;
+		if (frame == null || frame.image.getWidth() < imageWidth || frame.image.getHeight() < imageHeight) {
+			// grown in steps, so that dragging the window edge does not allocate an image per frame
+			int allocatedWidth = (imageWidth + IMAGE_SIZE_STEP - 1) / IMAGE_SIZE_STEP * IMAGE_SIZE_STEP;
+			int allocatedHeight = (imageHeight + IMAGE_SIZE_STEP - 1) / IMAGE_SIZE_STEP * IMAGE_SIZE_STEP;
+			BufferedImage image = request.configuration != null
+					? request.configuration.createCompatibleImage(allocatedWidth, allocatedHeight)
+					: new BufferedImage(allocatedWidth, allocatedHeight, BufferedImage.TYPE_INT_RGB);
+			frame = new Frame(image);
+		}
+		frame.width = request.width;
+		frame.height = request.height;
+		frame.imageWidth = imageWidth;
+		frame.imageHeight = imageHeight;
+		return frame;
+	}
+
+	/**
+	 * a requested frame
+	 */
+	private static final class Request<S> {
+		private final S state;								// storing the state of the chart
+		private final int width, height;					// storing the size of the panel
+		private final double scaleX, scaleY;				// storing the device scale
+		private final GraphicsConfiguration configuration;	// storing the screen the frame is shown on
+		private final long generation;						// storing the number of the request
+
+		Request(S state, int width, int height, double scaleX, double scaleY, GraphicsConfiguration configuration, long generation) {
+			this.state = state;
+			this.width = width;
+			this.height = height;
+			this.scaleX = scaleX;
+			this.scaleY = scaleY;
+			this.configuration = configuration;
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * an image and the part of it a frame covers
+	 */
+	private static final class Frame {
+		private final BufferedImage image;		// storing the pixels
+		private int width, height;				// storing the size of the panel the frame was drawn for
+		private int imageWidth, imageHeight;	// storing the part of the image in use, in device pixels
+
+		Frame(BufferedImage image) {
+			this.image = image;
+		}
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the chart and what draws its frames
+	 * 		Storing the number of the latest request and the latest request, read on the event dispatch thread
+	 * 		Storing the request not yet drawn and whether the render thread will draw it
+	 * 		Storing the lock of the shown frame, the shown frame and the image to draw the next one into
+	 * 		Storing when the shown frame was finished and the numbers of drawn and cancelled frames
+	 */
+	private final JComponent chart;
+	private final FrameDrawer<S> drawer;
+	private final AtomicLong generation;
+	private Request<S> requested;
+	private Request<S> pending;
+	private boolean scheduled;
+	private final Object frameLock;
+	private Frame front;
+	private SoftReference<Frame> spare;
+	private long shownTime;
+	private volatile long drawnFrames;
+	private volatile long cancelledFrames;
+}
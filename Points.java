@@ -1,159 +1,252 @@
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.function.BinaryOperator;
+import java.util.Arrays;
 
 /**
  * Points.java
- * 
+ *
  * This class helps in creating points for stock values. It is invoked when there is a need
- * to create a point such as opening prices, etc. This class depends on <code>ApproximatePoint</code>
- * class to determine points coordinates.
- * 
- * @version 1 28 Dec 2015                                                              
- * @author Nasser Albunian	
+ * to create a point such as opening prices, etc. The coordinates are kept in primitive arrays,
+ * X in ascending order and a missing Y as NaN, and they are scaled to the screen into a reused
+ * <code>ScreenPoints</code> buffer, so that drawing the points allocates nothing.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
 */
 
 public class Points {
-	private List<ApproximatePoint> pointList;	// storing points in an Arraylist of ApproximatePoint type
-	private List<Double> xValues;				// storing X values in an Arraylist of double type
-	private List<Double> yValues;				// storing Y values in an Arraylist of double type
+	private static final int INITIAL_CAPACITY = 256;	// initial number of points of the arrays
+
+	private double[] xValues;		// storing X values in ascending order
+	private double[] yValues;		// storing Y values, NaN for a missing value
+	private int size;				// storing the number of points
+	private RangeExtrema xExtrema;	// storing the minimum and maximum of any range of X values
+	private RangeExtrema yExtrema;	// storing the minimum and maximum of any range of Y values
+	private long version;			// storing the number of changes, so that derived data can tell it is stale
 
 	/**
-	 * Initialize the three objects defined above
+	 * Initialize the coordinate arrays and their extrema
 	 */
 	public Points() {
-		this.pointList = new ArrayList<>();
-		this.xValues = new ArrayList<>();
-		this.yValues = new ArrayList<>();
+		this.xValues = new double[INITIAL_CAPACITY];
+		this.yValues = new double[INITIAL_CAPACITY];
+		this.xExtrema = new RangeExtrema(INITIAL_CAPACITY);
+		this.yExtrema = new RangeExtrema(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * adding a point after the last one and adding its coordinates to the extrema, so that
+	 * the extrema never have to be searched for
+	 * @param x is the X coordinate, not lower than the X coordinate of the last point
+	 * @param y is the Y coordinate, NaN if the value is missing
+	 */
+	public void add(double x, double y) {
+		if (size == xValues.length) {
+			this.xValues = Arrays.copyOf(xValues, size * 2);
+			this.yValues = Arrays.copyOf(yValues, size * 2);
+		}
+		this.xValues[size] = x;
+		this.yValues[size] = y;
+		size++;
+		version++;
+		this.xExtrema.add(x);
+		this.yExtrema.add(y);
 	}
 
 	/**
-	 * adding a point coordinates (approximate point) to the <code>pointList</code> and adding its X coordinate
-	 * to the <code>XValues</code> and Y coordinate to the <code>YValues</code>
-	 * @param point as <code>ApproximatePoint</code>
+	 * replace the point whose index is <code>index</code>, for example when the last value
+	 * of a live chart changes
+	 * @param index of the point
+	 * @param x is the X coordinate, keeping the X coordinates in ascending order
+	 * @param y is the Y coordinate, NaN if the value is missing
 	 */
-	public void add(ApproximatePoint point) {
-		this.pointList.add(point);
-		this.xValues.add(point.getX());
-		this.yValues.add(point.getY());
+	public void set(int index, double x, double y) {
+		checkIndex(index);
+		this.xValues[index] = x;
+		this.yValues[index] = y;
+		version++;
+		this.xExtrema.set(index, x);
+		this.yExtrema.set(index, y);
 	}
 
 	/**
 	 * This method is necessary to scale the points to the screen based on the screen
-	 * height and width.
+	 * height and width. The given ranges of X and Y values are mapped to the screen, and the
+	 * points whose indices are from <code>from</code> to <code>to</code> are written to
+	 * <code>target</code>, which is cleared first. A missing point ends a run of connected points.
 	 * @param x0 is the point X coordinate
 	 * @param y0 is the point Y coordinate
 	 * @param screenWidth is the screen width
 	 * @param screenHeight is the screen height
-	 * @return the points that are needed to draw the graph
+	 * @param minX is the X value at the left edge of the screen
+	 * @param maxX is the X value at the right edge of the screen
+	 * @param minY is the Y value at the bottom edge of the screen
+	 * @param maxY is the Y value at the top edge of the screen
+	 * @param from index of the first point to scale
+	 * @param to index after the last point to scale
+	 * @param target receives the screen coordinates
 	 */
-	public Points scaledToScreen(int x0, int y0, int screenWidth, int screenHeight) {
-		Points scaledPoints = new Points();
-		for (ApproximatePoint point : this.pointList) {
-			Double scaledX = this.scaleMinMax(point.getX(), getMinX(), getMaxX());
-			Double scaledY = this.scaleMinMax(point.getY(), getMinY(), getMaxY());
-
-			ApproximatePoint scaledPoint;
-			if (scaledY == null) {
-				scaledPoint = new ApproximatePoint((x0 + scaledX * screenWidth), null);
+	public void scaleToScreen(int x0, int y0, int screenWidth, int screenHeight, double minX, double maxX, double minY, double maxY,
+			int from, int to, ScreenPoints target) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("range " + from + " to " + to + " out of " + size);
+		}
+		target.clear();
+		// one pass: the ranges are known up front, so each point is scaled with a multiply and an add
+		double xScale = screenWidth / (maxX - minX);
+		double yScale = screenHeight / (maxY - minY);
+		for (int i = from; i < to; i++) {
+			double y = yValues[i];
+			if (Double.isNaN(y)) {
+				target.endRun();
 			} else {
-				scaledPoint = new ApproximatePoint((x0 + scaledX * screenWidth), (y0 - (scaledY * screenHeight)));
+				target.add(x0 + (xValues[i] - minX) * xScale, y0 - (y - minY) * yScale);
 			}
+		}
+		target.endRun();
+	}
 
-			scaledPoints.add(scaledPoint);
+	/**
+	 * scale the points whose indices are listed, as selected by <code>ColumnDecimator</code>, to
+	 * the screen like <code>scaleToScreen</code> does with a range. A negative index ends a run
+	 * of connected points.
+	 * @param x0 is the point X coordinate
+	 * @param y0 is the point Y coordinate
+	 * @param screenWidth is the screen width
+	 * @param screenHeight is the screen height
+	 * @param minX is the X value at the left edge of the screen
+	 * @param maxX is the X value at the right edge of the screen
+	 * @param minY is the Y value at the bottom edge of the screen
+	 * @param maxY is the Y value at the top edge of the screen
+	 * @param indices of the points to scale, in ascending order
+	 * @param count number of used entries of <code>indices</code>
+	 * @param target receives the screen coordinates
+	 */
+	public void scaleToScreen(int x0, int y0, int screenWidth, int screenHeight, double minX, double maxX, double minY, double maxY,
+			int[] indices, int count, ScreenPoints target) {
+		target.clear();
+		double xScale = screenWidth / (maxX - minX);
+		double yScale = screenHeight / (maxY - minY);
+		for (int k = 0; k < count; k++) {
+			int i = indices[k];
+			if (i < 0 || Double.isNaN(yValues[i])) {
+				target.endRun();
+			} else {
+				target.add(x0 + (xValues[i] - minX) * xScale, y0 - (yValues[i] - minY) * yScale);
+			}
 		}
-		return scaledPoints;
+		target.endRun();
 	}
-	
+
 	/**
-	 * return the scaled value for a coordinate
-	 * @param value is the coordinate X or Y
-	 * @param min is minimum value in values of X or Y
-	 * @param max is maximum value in values of X or Y
-	 * @return scaled value
+	 * find the first point whose X coordinate is not lower than <code>x</code> with a binary search
+	 * @param x is the X coordinate to look for
+	 * @return index of the point, or <code>size()</code> if all points are lower
 	 */
-	private Double scaleMinMax(Double value, Double min, Double max) {
-		if (value == null) {
-			return null;
+	public int indexOfX(double x) {
+		int low = 0, high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (xValues[middle] < x) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
 		}
-		return (value - min) / (max - min);
+		return low;
 	}
 
 	/**
-	 * get the minimum value in <code>xValues</code> list
+	 * get the minimum of the X values
 	 * @return minimum value
 	 */
-	public Double getMinX() {
-		return this.xValues.stream().reduce(Double.MAX_VALUE, (d1, d2) -> {
-			if (d2 == null) {
-				return d1;
-			}
-			return Math.min(d1, d2);
-		});
+	public double getMinX() {
+		return this.xExtrema.min();
 	}
 
 	/**
-	 * get the maximum value in <code>xValues</code> list
+	 * get the maximum of the X values
 	 * @return maximum value
 	 */
-	public Double getMaxX() {
-		return this.xValues.stream().reduce((-1) * Double.MAX_VALUE, (d1, d2) -> {
-			if (d2 == null) {
-				return d1;
-			}
-			return Math.max(d1, d2);
-		});
+	public double getMaxX() {
+		return this.xExtrema.max();
 	}
-	
+
 	/**
-	 * get the minimum value in <code>yValues</code> list
+	 * get the minimum of the Y values
 	 * @return minimum value
 	 */
-	public Double getMinY() {
-		return this.yValues.stream().reduce(Double.MAX_VALUE, (d1, d2) -> {
-			if (d2 == null) {
-				return d1;
-			}
-			return Math.min(d1, d2);
-		});
+	public double getMinY() {
+		return this.yExtrema.min();
 	}
 
 	/**
-	 * get the maximum value in <code>yValues</code> list
+	 * get the maximum of the Y values
 	 * @return maximum value
 	 */
-	public Double getMaxY() {
-		return this.yValues.stream().reduce((-1) * Double.MAX_VALUE, (d1, d2) -> {
-			if (d2 == null) {
-				return d1;
-			}
-			return Math.max(d1, d2);
-		});
+	public double getMaxY() {
+		return this.yExtrema.max();
 	}
 
 	/**
-	 * @return points values as a point list
+	 * get the minimum Y value of the points whose indices are from <code>from</code> to
+	 * <code>to</code>, for example the points of a zoomed view
+	 * @param from index of the first point
+	 * @param to index after the last point
+	 * @return minimum value
+	 */
+	public double getMinY(int from, int to) {
+		return this.yExtrema.min(from, to);
+	}
+
+	/**
+	 * get the maximum Y value of the points whose indices are from <code>from</code> to
+	 * <code>to</code>
+	 * @param from index of the first point
+	 * @param to index after the last point
+	 * @return maximum value
 	 */
-	public List<ApproximatePoint> asList() {
-		return this.pointList;
+	public double getMaxY(int from, int to) {
+		return this.yExtrema.max(from, to);
 	}
 
 	/**
-	 * get the point whose index is <code>index</code>
-	 * @param index
-	 * @return point
+	 * get the X coordinate of the point whose index is <code>index</code>
+	 * @param index of the point
+	 * @return X coordinate
 	 */
-	public ApproximatePoint get(int index) {
-		return this.pointList.get(index);
+	public double getX(int index) {
+		checkIndex(index);
+		return this.xValues[index];
 	}
 
 	/**
-	 * get the size of point list
-	 * @return <code>pointList</code> size
+	 * get the Y coordinate of the point whose index is <code>index</code>
+	 * @param index of the point
+	 * @return Y coordinate, NaN if the value is missing
+	 */
+	public double getY(int index) {
+		checkIndex(index);
+		return this.yValues[index];
+	}
+
+	/**
+	 * get the number of changes made to the points so far
+	 * @return version, it grows with every <code>add</code> and <code>set</code>
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * get the number of points
+	 * @return number of points
 	 */
 	public int size() {
-		return this.pointList.size();
+		return this.size;
 	}
 
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " out of " + size);
+		}
+	}
 }
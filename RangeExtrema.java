@@ -0,0 +1,176 @@
+import java.util.Arrays;
+
+/**
+ * RangeExtrema.java
+ *
+ * keeps the minimum and the maximum of a growable sequence of values in a segment tree, so that
+ * the extrema of the whole sequence are read in constant time and the extrema of any range of it
+ * in logarithmic time. Appending or replacing a value updates the tree in logarithmic time.
+ * A NaN value stands for a missing value and is ignored by the queries.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class RangeExtrema {
+
+	private static final int INITIAL_CAPACITY = 16;			// initial number of leaves of the tree
+	private static final double NO_MIN = Double.MAX_VALUE;		// minimum of a range without values
+	private static final double NO_MAX = -Double.MAX_VALUE;		// maximum of a range without values
+
+	/**
+	 * The RangeExtrema constructor with a default capacity
+	 */
+	public RangeExtrema() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * The RangeExtrema constructor that reserves room for <code>capacity</code> values
+	 * @param capacity expected number of values
+	 */
+	public RangeExtrema(int capacity) {
+		allocate(Integer.highestOneBit(Math.max(2, capacity - 1)) << 1);
+	}
+
+	/**
+	 * append a value
+	 * @param value the value, NaN if missing
+	 */
+	public void add(double value) {
+		if (size == leaves) {
+			grow();
+		}
+		size++;
+		set(size - 1, value);
+	}
+
+	/**
+	 * replace a value
+	 * @param index of the value
+	 * @param value the new value, NaN if missing
+	 */
+	public void set(int index, double value) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " out of " + size);
+		}
+		int node = leaves + index;
+		mins[node] = Double.isNaN(value) ? NO_MIN : value;
+		maxs[node] = Double.isNaN(value) ? NO_MAX : value;
+		for (node >>>= 1; node > 0; node >>>= 1) {
+			double min = Math.min(mins[2 * node], mins[2 * node + 1]);
+			double max = Math.max(maxs[2 * node], maxs[2 * node + 1]);
+			if (min == mins[node] && max == maxs[node]) {
+				// the nodes above depend only on this one, so they are unchanged too
+				break;
+			}
+			mins[node] = min;
+			maxs[node] = max;
+		}
+	}
+
+	/**
+	 * get the minimum of all values
+	 * @return minimum, <code>Double.MAX_VALUE</code> if there is no value
+	 */
+	public double min() {
+		return mins[1];
+	}
+
+	/**
+	 * get the maximum of all values
+	 * @return maximum, <code>-Double.MAX_VALUE</code> if there is no value
+	 */
+	public double max() {
+		return maxs[1];
+	}
+
+	/**
+	 * get the minimum of a range of values
+	 * @param from index of the first value
+	 * @param to index after the last value
+	 * @return minimum, <code>Double.MAX_VALUE</code> if the range has no value
+	 */
+	public double min(int from, int to) {
+		checkRange(from, to);
+		double min = NO_MIN;
+		for (int lo = from + leaves, hi = to + leaves; lo < hi; lo >>>= 1, hi >>>= 1) {
+			if ((lo & 1) != 0) {
+				min = Math.min(min, mins[lo++]);
+			}
+			if ((hi & 1) != 0) {
+				min = Math.min(min, mins[--hi]);
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * get the maximum of a range of values
+	 * @param from index of the first value
+	 * @param to index after the last value
+	 * @return maximum, <code>-Double.MAX_VALUE</code> if the range has no value
+	 */
+	public double max(int from, int to) {
+		checkRange(from, to);
+		double max = NO_MAX;
+		for (int lo = from + leaves, hi = to + leaves; lo < hi; lo >>>= 1, hi >>>= 1) {
+			if ((lo & 1) != 0) {
+				max = Math.max(max, maxs[lo++]);
+			}
+			if ((hi & 1) != 0) {
+				max = Math.max(max, maxs[--hi]);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * get the number of values
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * double the number of leaves and rebuild the inner nodes from them
+	 */
+	private void grow() {
+		double[] oldMins = mins;
+		double[] oldMaxs = maxs;
+		int oldLeaves = leaves;
+		allocate(leaves * 2);
+		System.arraycopy(oldMins, oldLeaves, mins, leaves, oldLeaves);
+		System.arraycopy(oldMaxs, oldLeaves, maxs, leaves, oldLeaves);
+		for (int node = leaves - 1; node > 0; node--) {
+			mins[node] = Math.min(mins[2 * node], mins[2 * node + 1]);
+			maxs[node] = Math.max(maxs[2 * node], maxs[2 * node + 1]);
+		}
+	}
+
+	private void allocate(int leaves) {
+		this.leaves = leaves;
+		this.mins = new double[2 * leaves];
+		this.maxs = new double[2 * leaves];
+		Arrays.fill(mins, NO_MIN);
+		Arrays.fill(maxs, NO_MAX);
+	}
+
+	private void checkRange(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("range " + from + " to " + to + " out of " + size);
+		}
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the number of values and the number of leaves, a power of two
+	 * 		Storing the minimum and the maximum trees; node 1 is the root, the children of node n
+	 * 		are 2n and 2n+1, and the values are the leaves from index <code>leaves</code> on
+	 */
+	private int size;
+	private int leaves;
+	private double[] mins;
+	private double[] maxs;
+}
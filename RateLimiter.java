@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * RateLimiter.java
+ *
+ * spaces out the requests made to a data source so that no more than a given number of them
+ * start per second. A caller reserves the next free slot and is told how long to wait for it,
+ * so no thread has to sleep while waiting. The requests of a data source share the limiter of
+ * <code>forSource</code>, whoever makes them.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class RateLimiter {
+
+	private static final ConcurrentHashMap<String, RateLimiter> SHARED = new ConcurrentHashMap<>();
+
+	/**
+	 * The RateLimiter constructor
+	 * @param permitsPerSecond maximum number of requests per second, zero or less for no limit
+	 */
+	public RateLimiter(double permitsPerSecond) {
+		this.limitNanos = interval(permitsPerSecond);
+		this.intervalNanos = limitNanos;
+		this.restrictions = new ArrayList<>();
+	}
+
+	/**
+	 * get the limiter shared by every request to a data source, without a limit until one is set
+	 * with <code>restrict</code>
+	 * @param source name of the data source
+	 * @return shared rate limiter of the source
+	 */
+	public static RateLimiter forSource(String source) {
+		return SHARED.computeIfAbsent(source, name -> new RateLimiter(0));
+	}
+
+	/**
+	 * lower the limit to a number of requests per second until the returned restriction is
+	 * closed. The strictest of the open restrictions applies, so that every user of a shared
+	 * limiter gets at least its own limit while it needs it, and none outlives its user.
+	 * @param permitsPerSecond maximum number of requests per second, zero or less for no limit
+	 * @return restriction to close once the limit is no longer needed
+	 */
+	public synchronized Restriction restrict(double permitsPerSecond) {
+		Restriction restriction = new Restriction(interval(permitsPerSecond));
+		restrictions.add(restriction);
+		intervalNanos = Math.max(intervalNanos, restriction.intervalNanos);
+		return restriction;
+	}
+
+	/**
+	 * start a request in the next free slot. Cancelling the returned future before the slot
+	 * comes skips the request, cancelling it later aborts the request.
+	 * @param request starts the request
+	 * @return future of the result of the request
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> request) {
+		long delay = reserve();
+		if (delay == 0) {
+			return request.get();
+		}
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Executor executor = CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, ForkJoinPool.commonPool());
+		executor.execute(() -> {
+			if (result.isDone()) {
+				return;
+			}
+			CompletableFuture<T> started = request.get();
+			StockFetcher.cancelWith(result, started);
+			started.whenComplete((value, error) -> {
+				if (error != null) {
+					result.completeExceptionally(error);
+				} else {
+					result.complete(value);
+				}
+			});
+		});
+		return result;
+	}
+
+	/**
+	 * reserve the next request slot
+	 * @return nanoseconds to wait before the request may start, 0 if it may start now
+	 */
+	public synchronized long reserve() {
+		if (intervalNanos == 0) {
+			return 0;
+		}
+		long now = System.nanoTime();
+		if (nextFreeNanos - now < 0) {
+			nextFreeNanos = now;
+		}
+		long delay = nextFreeNanos - now;
+		nextFreeNanos += intervalNanos;
+		return delay;
+	}
+
+	/**
+	 * remove a closed restriction and go back to the strictest of the others
+	 */
+	private synchronized void release(Restriction restriction) {
+		if (!restrictions.remove(restriction)) {
+			return;
+		}
+		intervalNanos = limitNanos;
+		for (Restriction other : restrictions) {
+			intervalNanos = Math.max(intervalNanos, other.intervalNanos);
+		}
+	}
+
+	private static long interval(double permitsPerSecond) {
+		return permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+	}
+
+	/**
+	 * a limit set by <code>restrict</code>, in force until it is closed
+	 */
+	public final class Restriction implements AutoCloseable {
+		private final long intervalNanos;	// storing the time between two requests it asks for
+
+		private Restriction(long intervalNanos) {
+			this.intervalNanos = intervalNanos;
+		}
+
+		/**
+		 * lift the limit; closing it again does nothing
+		 */
+		@Override
+		public void close() {
+			release(this);
+		}
+	}
+
+	private final long limitNanos;					// storing the time between two requests of the limiter itself
+	private final List<Restriction> restrictions;	// storing the open restrictions
+	private long intervalNanos;						// storing the time between two requests in force
+	private long nextFreeNanos = System.nanoTime();	// storing the start time of the next free slot
+}
@@ -0,0 +1,184 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RenderBenchmark.java
+ *
+ * measures the time and the heap allocation per frame of painting a plot off screen. Scaling the
+ * points into the reused screen buffer is measured alone, then the series path
+ * (<code>Plot.drawSeries</code>), then the whole paint, which also draws the axes and their labels,
+ * with an unchanged size, while panning a zoomed view, while panning with the frames drawn on the
+ * render thread, which leaves painting a copy of the last frame, resized before every frame and with
+ * indicators drawn over the points, and last the candlestick chart of all stock values and a
+ * comparison of many tickers of ten years each.
+ * Scaling should allocate nothing; what the series path allocates beyond it is spent inside Java2D
+ * on stroking the polylines. The allocation is read from the allocated bytes counter of
+ * the current thread, so it must run on a JVM whose thread management bean supports it, such as
+ * HotSpot. Runs headless.
+ *
+ * usage: java RenderBenchmark [bars] [frames]
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class RenderBenchmark {
+
+	private static final int DEFAULT_BARS = 10_000;		// number of generated daily bars
+	private static final int DEFAULT_FRAMES = 200;		// measured frames of each path after warm up
+	private static final int WIDTH = 1600;				// width of the off screen plot
+	private static final int HEIGHT = 900;				// height of the off screen plot
+	private static final int COMPARED_TICKERS = 50;		// number of tickers of the comparison plot
+
+	/**
+	 * The main method paints a generated series repeatedly and prints the cost per frame
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int bars = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BARS;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_FRAMES;
+
+		StockSeries series = new StockSeries(bars);
+		// five of seven days are week days, so this range holds at least the requested bars
+		new SyntheticDataSource().generate("BENCH", 0, bars * 7 / 5 + 7, (epochDay, opening, closing, lowest, highest, volume, validMask) -> {
+			if (series.size() < bars) {
+				series.add(epochDay, opening, closing, lowest, highest, volume, validMask);
+			}
+		});
+		StocksValues pane = new StocksValues();
+		pane.generateChart(series);
+		Plot plot = pane.getPlot(StockBars.Column.CLOSING);
+		plot.setSize(WIDTH, HEIGHT);
+
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = image.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		System.out.printf("plot: %,d bars, %dx%d%n", series.size(), WIDTH, HEIGHT);
+
+		// warm up both paths so that the measured frames run compiled code and the buffers are grown
+		for (int i = 0; i < 50; i++) {
+			plot.drawSeries(g2);
+			plot.paint(g2);
+		}
+
+		// the same points scaled without drawing, the part of the series path that is ours and not Java2D's
+		Points points = new Points();
+		for (int i = 0; i < series.size(); i++) {
+			points.add(i, series.getClosing(i));
+		}
+		ScreenPoints screenPoints = new ScreenPoints();
+		Runnable scale = () -> points.scaleToScreen(0, HEIGHT, WIDTH, HEIGHT, points.getMinX(), points.getMaxX(),
+				points.getMinY(), points.getMaxY(), 0, points.size(), screenPoints);
+		for (int i = 0; i < 50; i++) {
+			scale.run();
+		}
+
+		report("scaling (scaleToScreen)", frames, scale);
+		report("series path (drawSeries)", frames, () -> plot.drawSeries(g2));
+		report("whole paint", frames, () -> plot.paint(g2));
+		plot.setSize(WIDTH, HEIGHT);
+		Viewport viewport = plot.getViewport();
+		viewport.zoom(Math.min(1, 2.0 * WIDTH / series.size()), series.size() / 2.0);
+		double[] step = {3};
+		report("whole paint while panning", frames, () -> {
+			// back and forth over a zoomed view of about two points per pixel
+			double before = viewport.getMinX();
+			viewport.pan(step[0]);
+			if (viewport.getMinX() == before) {
+				step[0] = -step[0];
+			}
+			plot.paint(g2);
+		});
+
+		// the same panning with the frames drawn on the render thread, so painting only copies them
+		plot.setBackgroundRendering(true);
+		report("background paint while panning", frames, () -> {
+			double before = viewport.getMinX();
+			viewport.pan(step[0]);
+			if (viewport.getMinX() == before) {
+				step[0] = -step[0];
+			}
+			plot.paint(g2);
+		});
+		long[] counts = plot.getBackgroundFrameCounts();
+		System.out.printf("  (render thread: %d frames shown, %d cancelled)%n", counts[0], counts[1]);
+		plot.setBackgroundRendering(false);
+		viewport.reset();
+
+		int[] frame = new int[1];
+		report("whole paint while resizing", frames, () -> {
+			// a different size every frame, as while the window edge is dragged
+			plot.setSize(WIDTH - 1 - frame[0]++ % 100, HEIGHT);
+			plot.paint(g2);
+		});
+
+		// the closing prices under moving averages and bands
+		plot.setSize(WIDTH, HEIGHT);
+		pane.setIndicatorShown(StocksValues.PriceIndicator.SMA_20, true);
+		pane.setIndicatorShown(StocksValues.PriceIndicator.SMA_50, true);
+		pane.setIndicatorShown(StocksValues.PriceIndicator.BOLLINGER, true);
+		for (int i = 0; i < 50; i++) {
+			plot.paint(g2);
+		}
+		report("whole paint, 5 indicator lines", frames, () -> plot.paint(g2));
+
+		// all stock values in one chart, read from the bars without points
+		CandlestickPlot candles = pane.getCandlestickPlot();
+		candles.setSize(WIDTH, HEIGHT);
+		for (int i = 0; i < 50; i++) {
+			candles.paint(g2);
+		}
+		report("candlestick paint", frames, () -> candles.paint(g2));
+		candles.getViewport().zoom(Math.min(1, 300.0 / series.size()), series.size() / 2.0);
+		report("candlestick paint, 300 days", frames, () -> candles.paint(g2));
+
+		// many tickers of ten years over each other, each with holidays of its own
+		List<String> tickers = new ArrayList<>();
+		List<StockBars> tickerSeries = new ArrayList<>();
+		for (int t = 0; t < COMPARED_TICKERS; t++) {
+			int holiday = 17 + t;
+			StockSeries tickerBars = new StockSeries();
+			new SyntheticDataSource().generate(String.format("T%04d", t), 0, 3652, (epochDay, opening, closing, lowest, highest, volume, validMask) -> {
+				if (epochDay % holiday != 0) {
+					tickerBars.add(epochDay, opening, closing, lowest, highest, volume, validMask);
+				}
+			});
+			tickers.add(String.format("T%04d", t));
+			tickerSeries.add(tickerBars);
+		}
+		ComparisonSeries comparison = new ComparisonSeries(tickers, tickerSeries);
+		Plot overlaid = new Plot(comparison.toPoints(0), comparison.getCalendar());
+		for (int t = 1; t < COMPARED_TICKERS; t++) {
+			overlaid.addOverlay(comparison.toPoints(t), ComparisonWindow.colorOf(t), 1f);
+		}
+		overlaid.setSize(WIDTH, HEIGHT);
+		for (int i = 0; i < 20; i++) {
+			overlaid.paint(g2);
+		}
+		report("comparison paint, " + COMPARED_TICKERS + " tickers", frames, () -> overlaid.paint(g2));
+		g2.dispose();
+	}
+
+	/**
+	 * paint several frames and print the average time and allocated bytes per frame
+	 * @param name of the measured path
+	 * @param frames number of measured frames
+	 * @param frame paints one frame
+	 */
+	private static void report(String name, int frames, Runnable frame) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < frames; i++) {
+			frame.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+		System.out.printf("%-32s %8.3f ms/frame %,12d bytes/frame%n", name, elapsed / 1e6 / frames, allocated / frames);
+	}
+}
@@ -0,0 +1,126 @@
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+
+/**
+ * ScreenPoints.java
+ *
+ * a reusable path of points in screen coordinates, split into runs of connected points. A plot
+ * keeps one and refills it on every paint, then draws the whole series with a single call. The
+ * path keeps its storage when it is reset, so once it is large enough for the series, scaling
+ * the points allocates nothing.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class ScreenPoints {
+
+	private static final int INITIAL_CAPACITY = 256;	// initial number of points of the path
+
+	/**
+	 * The ScreenPoints constructor
+	 */
+	public ScreenPoints() {
+		this.path = new Path2D.Float(Path2D.WIND_NON_ZERO, INITIAL_CAPACITY);
+	}
+
+	/**
+	 * remove all points
+	 */
+	public void clear() {
+		path.reset();
+		size = 0;
+		runOpen = false;
+	}
+
+	/**
+	 * add a point to the current run, or start a new run if the last one was ended
+	 * @param x is the X screen coordinate
+	 * @param y is the Y screen coordinate
+	 */
+	public void add(double x, double y) {
+		if (runOpen) {
+			path.lineTo(x, y);
+		} else {
+			path.moveTo(x, y);
+			runOpen = true;
+		}
+		size++;
+	}
+
+	/**
+	 * end the current run, the next point is not connected to the previous one
+	 */
+	public void endRun() {
+		runOpen = false;
+	}
+
+	/**
+	 * draw all runs with the current color and stroke in one call
+	 * @param g2 is the object of the graphics which invokes drawing methods
+	 */
+	public void draw(Graphics2D g2) {
+		g2.draw(path);
+	}
+
+	/**
+	 * get a copy of all runs, which later changes to these points do not affect
+	 * @return path of the runs
+	 */
+	public Shape copyPath() {
+		return new Path2D.Float(path);
+	}
+
+	/**
+	 * write all runs as the data of an SVG path, a move to the first point of each run and a line
+	 * to each next point, in screen coordinates rounded to tenths of a pixel
+	 * @param out receives the path data
+	 * @throws IOException if writing fails
+	 */
+	public void appendSvgPath(Appendable out) throws IOException {
+		float[] coordinates = new float[6];
+		StringBuilder text = new StringBuilder(16 * size + 16);
+		for (PathIterator segments = path.getPathIterator(null); !segments.isDone(); segments.next()) {
+			text.append(segments.currentSegment(coordinates) == PathIterator.SEG_MOVETO ? 'M' : 'L');
+			appendTenths(text, coordinates[0]).append(' ');
+			appendTenths(text, coordinates[1]);
+		}
+		out.append(text);
+	}
+
+	/**
+	 * append a coordinate rounded to one decimal, without the formatting cost of String.format
+	 */
+	private static StringBuilder appendTenths(StringBuilder text, float value) {
+		long tenths = Math.round(value * 10.0);
+		if (tenths < 0) {
+			text.append('-');
+			tenths = -tenths;
+		}
+		text.append(tenths / 10);
+		if (tenths % 10 != 0) {
+			text.append('.').append(tenths % 10);
+		}
+		return text;
+	}
+
+	/**
+	 * get the number of points
+	 * @return number of points
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the runs as the sub paths of one path, and the number of points in it
+	 * 		Storing whether the last run takes more points
+	 */
+	private final Path2D.Float path;
+	private int size;
+	private boolean runOpen;
+}
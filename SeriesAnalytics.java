@@ -0,0 +1,482 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * SeriesAnalytics.java
+ *
+ * computes statistics of many tickers at once: the 52-week highs and the tickers at them, the
+ * volatility, the largest drawdown, and the matrix of the correlations of every pair of tickers.
+ * The prices are first copied from the series into primitive arrays per ticker. The work is split
+ * over the threads of a fork/join pool, by ranges of tickers for the statistics of each ticker
+ * and by tiles of the matrix for the correlations. A tile multiplies the returns of two blocks of
+ * tickers a block of days at a time, so the rows it reads stay in the cache while they are used.
+ *
+ * usage: java SeriesAnalytics [tickers] [years] [maximum parallelism]
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class SeriesAnalytics {
+
+	private static final int TRADING_DAYS_PER_YEAR = 252;	// number of trading days of a year, to annualize the volatility
+	private static final int DAYS_PER_52_WEEKS = 364;		// number of calendar days of the 52-week range
+	private static final int TICKERS_PER_TASK = 8;			// number of tickers below which a task is not split any more
+	private static final int TICKERS_PER_TILE = 64;			// number of tickers of each side of a tile of the correlation matrix
+	private static final int DAYS_PER_TILE = 256;			// number of days of the returns multiplied at once within a tile
+
+	/**
+	 * The SeriesAnalytics constructor that runs on the common fork/join pool
+	 * @param tickers the ticker names, in the order of <code>series</code>
+	 * @param series the daily stock values of each ticker, sorted by date
+	 */
+	public SeriesAnalytics(List<String> tickers, List<StockBars> series) {
+		this(tickers, series, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * The SeriesAnalytics constructor
+	 * @param tickers the ticker names, in the order of <code>series</code>
+	 * @param series the daily stock values of each ticker, sorted by date
+	 * @param pool runs the computations
+	 */
+	public SeriesAnalytics(List<String> tickers, List<StockBars> series, ForkJoinPool pool) {
+		if (tickers.size() != series.size()) {
+			throw new IllegalArgumentException("one series is needed for each ticker");
+		}
+		this.tickers = new ArrayList<>(tickers);
+		this.pool = pool;
+		int count = tickers.size();
+		this.epochDays = new int[count][];
+		this.closing = new double[count][];
+		this.highest = new double[count][];
+		// only the days with a closing price are kept, a missing highest price is the closing one
+		forEachTicker(t -> {
+			StockBars bars = series.get(t);
+			int[] days = new int[bars.size()];
+			double[] close = new double[bars.size()];
+			double[] high = new double[bars.size()];
+			int size = 0;
+			for (int i = 0; i < bars.size(); i++) {
+				if (bars.isValid(i, StockBars.Column.CLOSING) && bars.getClosing(i) > 0) {
+					days[size] = bars.getEpochDay(i);
+					close[size] = bars.getClosing(i);
+					high[size] = bars.isValid(i, StockBars.Column.HIGHEST) ? Math.max(bars.getHighest(i), close[size]) : close[size];
+					size++;
+				}
+			}
+			epochDays[t] = Arrays.copyOf(days, size);
+			closing[t] = Arrays.copyOf(close, size);
+			highest[t] = Arrays.copyOf(high, size);
+		});
+	}
+
+	/**
+	 * create the analytics of loaded configurations on the common fork/join pool
+	 * @param configurations by ticker, as returned by <code>BatchLoader.loadAll</code>
+	 * @return the analytics
+	 */
+	public static SeriesAnalytics of(Map<String, StocksConfiguration> configurations) {
+		List<String> tickers = new ArrayList<>();
+		List<StockBars> series = new ArrayList<>();
+		for (Map.Entry<String, StocksConfiguration> entry : configurations.entrySet()) {
+			tickers.add(entry.getKey());
+			series.add(entry.getValue().getSeries());
+		}
+		return new SeriesAnalytics(tickers, series);
+	}
+
+	/**
+	 * get the number of tickers
+	 * @return number of tickers
+	 */
+	public int getTickerCount() {
+		return tickers.size();
+	}
+
+	/**
+	 * get the name of a ticker
+	 * @param ticker index of the ticker
+	 * @return ticker name
+	 */
+	public String getTicker(int ticker) {
+		return tickers.get(ticker);
+	}
+
+	/**
+	 * get the highest price of each ticker in the 52 weeks up to its last day
+	 * @return the high of each ticker, NaN if it has no price
+	 */
+	public double[] fiftyTwoWeekHighs() {
+		double[] highs = new double[tickers.size()];
+		forEachTicker(t -> {
+			int[] days = epochDays[t];
+			double high = Double.NaN;
+			if (days.length > 0) {
+				high = -Double.MAX_VALUE;
+				for (int i = firstDayOfYear(t); i < days.length; i++) {
+					high = Math.max(high, highest[t][i]);
+				}
+			}
+			highs[t] = high;
+		});
+		return highs;
+	}
+
+	/**
+	 * get the tickers whose last day reached their 52-week high
+	 * @return ticker names
+	 */
+	public List<String> newFiftyTwoWeekHighs() {
+		double[] highs = fiftyTwoWeekHighs();
+		List<String> found = new ArrayList<>();
+		for (int t = 0; t < highs.length; t++) {
+			int last = epochDays[t].length - 1;
+			if (last >= 0 && highest[t][last] >= highs[t]) {
+				found.add(tickers.get(t));
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * get the annualized volatility of each ticker, the standard deviation of its daily
+	 * logarithmic returns times the square root of the trading days of a year
+	 * @return the volatility of each ticker, NaN if it has fewer than two returns
+	 */
+	public double[] volatilities() {
+		double[] volatility = new double[tickers.size()];
+		forEachTicker(t -> {
+			double[] close = closing[t];
+			int returns = close.length - 1;
+			if (returns < 2) {
+				volatility[t] = Double.NaN;
+				return;
+			}
+			double sum = 0, squares = 0;
+			for (int i = 1; i < close.length; i++) {
+				double r = Math.log(close[i] / close[i - 1]);
+				sum += r;
+				squares += r * r;
+			}
+			double mean = sum / returns;
+			double variance = Math.max(0, (squares - returns * mean * mean) / (returns - 1));
+			volatility[t] = Math.sqrt(variance * TRADING_DAYS_PER_YEAR);
+		});
+		return volatility;
+	}
+
+	/**
+	 * get the largest drawdown of each ticker, the largest fall of its closing price from the
+	 * highest closing price before it
+	 * @return the drawdown of each ticker in percent, 0 if the price never fell
+	 */
+	public double[] maxDrawdowns() {
+		double[] drawdown = new double[tickers.size()];
+		forEachTicker(t -> {
+			double peak = 0;
+			double largest = 0;
+			for (double price : closing[t]) {
+				peak = Math.max(peak, price);
+				largest = Math.max(largest, 1 - price / peak);
+			}
+			drawdown[t] = largest * 100;
+		});
+		return drawdown;
+	}
+
+	/**
+	 * get the correlation of the daily logarithmic returns of every pair of tickers. The tickers
+	 * are aligned on the union of their days; on a day a ticker did not trade its price is the
+	 * last one, so that its return is zero and the next return covers the gap.
+	 * @return symmetric matrix of the correlations, NaN for a ticker whose price never changes
+	 */
+	public double[][] correlations() {
+		int count = tickers.size();
+		int[] union = unionOfDays();
+		int length = Math.max(0, union.length - 1);
+		// each row is scaled so that the correlation of two tickers is the dot product of their rows
+		double[][] scaled = new double[count][];
+		boolean[] constant = new boolean[count];
+		double[] zeros = new double[length];
+		forEachTicker(t -> {
+			scaled[t] = standardizedReturns(t, union);
+			if (scaled[t] == null) {
+				constant[t] = true;
+				scaled[t] = zeros;
+			}
+		});
+
+		double[][] matrix = new double[count][count];
+		int blocks = (count + TICKERS_PER_TILE - 1) / TICKERS_PER_TILE;
+		int tiles = blocks * (blocks + 1) / 2;
+		int[] rowBlock = new int[tiles];
+		int[] columnBlock = new int[tiles];
+		for (int i = 0, tile = 0; i < blocks; i++) {
+			for (int j = i; j < blocks; j++, tile++) {
+				rowBlock[tile] = i;
+				columnBlock[tile] = j;
+			}
+		}
+		// the tiles of the upper triangle cover disjoint cells, with their mirror below the diagonal
+		pool.invoke(new RangeTask(0, tiles, 1, tile -> multiplyTile(scaled, length,
+				rowBlock[tile] * TICKERS_PER_TILE, columnBlock[tile] * TICKERS_PER_TILE, matrix)));
+		for (int t = 0; t < count; t++) {
+			if (constant[t]) {
+				Arrays.fill(matrix[t], Double.NaN);
+				for (int u = 0; u < count; u++) {
+					matrix[u][t] = Double.NaN;
+				}
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * multiply the rows of two blocks of tickers into their tile of the matrix and its mirror. A
+	 * row is multiplied with four columns at once, which reads it once for the four of them and
+	 * keeps four independent sums instead of waiting on one.
+	 * @param rows the scaled returns of each ticker
+	 * @param length number of returns of a row
+	 * @param rowStart first ticker of the rows of the tile
+	 * @param columnStart first ticker of the columns of the tile
+	 * @param matrix receives the dot products
+	 */
+	private static void multiplyTile(double[][] rows, int length, int rowStart, int columnStart, double[][] matrix) {
+		int rowEnd = Math.min(rows.length, rowStart + TICKERS_PER_TILE);
+		int columnEnd = Math.min(rows.length, columnStart + TICKERS_PER_TILE);
+		for (int from = 0; from < length; from += DAYS_PER_TILE) {
+			int to = Math.min(length, from + DAYS_PER_TILE);
+			for (int i = rowStart; i < rowEnd; i++) {
+				double[] a = rows[i];
+				// on the diagonal tile only the pairs above the diagonal and the diagonal itself
+				int j = rowStart == columnStart ? i : columnStart;
+				for (; j + 3 < columnEnd; j += 4) {
+					double[] b0 = rows[j], b1 = rows[j + 1], b2 = rows[j + 2], b3 = rows[j + 3];
+					double dot0 = 0, dot1 = 0, dot2 = 0, dot3 = 0;
+					for (int k = from; k < to; k++) {
+						double value = a[k];
+						dot0 += value * b0[k];
+						dot1 += value * b1[k];
+						dot2 += value * b2[k];
+						dot3 += value * b3[k];
+					}
+					matrix[i][j] += dot0;
+					matrix[i][j + 1] += dot1;
+					matrix[i][j + 2] += dot2;
+					matrix[i][j + 3] += dot3;
+				}
+				for (; j < columnEnd; j++) {
+					double[] b = rows[j];
+					double dot = 0;
+					for (int k = from; k < to; k++) {
+						dot += a[k] * b[k];
+					}
+					matrix[i][j] += dot;
+				}
+			}
+		}
+		for (int i = rowStart; i < rowEnd; i++) {
+			for (int j = rowStart == columnStart ? i + 1 : columnStart; j < columnEnd; j++) {
+				matrix[j][i] = matrix[i][j];
+			}
+		}
+	}
+
+	/**
+	 * get the sorted union of the days of all tickers, marking them in a bitmap over their range
+	 * @return days on which at least one ticker traded
+	 */
+	private int[] unionOfDays() {
+		int first = Integer.MAX_VALUE, last = Integer.MIN_VALUE;
+		for (int[] days : epochDays) {
+			if (days.length > 0) {
+				first = Math.min(first, days[0]);
+				last = Math.max(last, days[days.length - 1]);
+			}
+		}
+		if (first > last) {
+			return new int[0];
+		}
+		boolean[] traded = new boolean[last - first + 1];
+		for (int[] days : epochDays) {
+			for (int day : days) {
+				traded[day - first] = true;
+			}
+		}
+		int[] union = new int[traded.length];
+		int size = 0;
+		for (int d = 0; d < traded.length; d++) {
+			if (traded[d]) {
+				union[size++] = first + d;
+			}
+		}
+		return Arrays.copyOf(union, size);
+	}
+
+	/**
+	 * get the daily logarithmic returns of a ticker on the union of days, less their mean and
+	 * divided by their norm, so that the dot product of two rows is the correlation
+	 * @param ticker index of the ticker
+	 * @param union the union of the days of all tickers
+	 * @return the scaled returns, null if the price of the ticker never changes
+	 */
+	private double[] standardizedReturns(int ticker, int[] union) {
+		int[] days = epochDays[ticker];
+		double[] close = closing[ticker];
+		double[] returns = new double[Math.max(0, union.length - 1)];
+		double previous = Double.NaN;
+		int j = 0;
+		double sum = 0;
+		for (int k = 0; k < union.length; k++) {
+			double price = previous;
+			// a duplicated day takes its last row
+			while (j < days.length && days[j] == union[k]) {
+				price = close[j++];
+			}
+			if (k > 0) {
+				returns[k - 1] = Double.isNaN(previous) ? 0 : Math.log(price / previous);
+				sum += returns[k - 1];
+			}
+			previous = price;
+		}
+		double mean = returns.length > 0 ? sum / returns.length : 0;
+		double squares = 0;
+		for (int k = 0; k < returns.length; k++) {
+			returns[k] -= mean;
+			squares += returns[k] * returns[k];
+		}
+		if (squares == 0) {
+			return null;
+		}
+		double norm = Math.sqrt(squares);
+		for (int k = 0; k < returns.length; k++) {
+			returns[k] /= norm;
+		}
+		return returns;
+	}
+
+	/**
+	 * get the index of the first day of a ticker within the 52 weeks up to its last day
+	 */
+	private int firstDayOfYear(int ticker) {
+		int[] days = epochDays[ticker];
+		int start = days[days.length - 1] - DAYS_PER_52_WEEKS;
+		int low = 0, high = days.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (days[middle] <= start) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * run an action for every ticker on the pool, split into ranges of tickers
+	 */
+	private void forEachTicker(IntConsumer action) {
+		pool.invoke(new RangeTask(0, tickers.size(), TICKERS_PER_TASK, action));
+	}
+
+	/**
+	 * runs an action for a range of indices, split in halves until a range is small enough
+	 */
+	private static class RangeTask extends RecursiveAction {
+		private final int from, to;		// storing the range of indices
+		private final int threshold;	// storing the number of indices below which the range is not split
+		private final IntConsumer action;	// storing the action run for each index
+
+		RangeTask(int from, int to, int threshold, IntConsumer action) {
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= threshold) {
+				for (int i = from; i < to; i++) {
+					action.accept(i);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RangeTask(from, middle, threshold, action), new RangeTask(middle, to, threshold, action));
+		}
+	}
+
+	/**
+	 * The main method generates a universe of tickers and prints the time of each computation
+	 * with 1, 2, 4 and so on up to the maximum number of threads, with the speedup over one
+	 * thread and the efficiency, the speedup divided by the number of threads
+	 */
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int years = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int maximum = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		List<String> tickerNames = new ArrayList<>();
+		List<StockBars> series = new ArrayList<>();
+		SyntheticDataSource source = new SyntheticDataSource();
+		for (int t = 0; t < count; t++) {
+			String ticker = String.format("T%04d", t);
+			StockSeries bars = new StockSeries();
+			source.generate(ticker, 0, years * 365, bars::add);
+			tickerNames.add(ticker);
+			series.add(bars);
+		}
+		System.out.printf("universe: %,d tickers of %d years, %d processors%n", count, years, Runtime.getRuntime().availableProcessors());
+		System.out.printf("%-12s %8s %10s %8s %10s%n", "computation", "threads", "ms", "speedup", "efficiency");
+
+		String[] computationNames = {"load", "52-week", "volatility", "drawdown", "correlation"};
+		double[] single = new double[computationNames.length];
+		for (int threads = 1; threads <= maximum; threads = threads < maximum ? Math.min(maximum, threads * 2) : threads + 1) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			SeriesAnalytics[] analytics = new SeriesAnalytics[1];
+			Runnable[] computations = {
+					() -> analytics[0] = new SeriesAnalytics(tickerNames, series, pool),
+					() -> analytics[0].newFiftyTwoWeekHighs(),
+					() -> analytics[0].volatilities(),
+					() -> analytics[0].maxDrawdowns(),
+					() -> analytics[0].correlations()};
+			for (int c = 0; c < computations.length; c++) {
+				// a few runs to warm up, then the best of three
+				for (int round = 0; round < 3; round++) {
+					computations[c].run();
+				}
+				long best = Long.MAX_VALUE;
+				for (int round = 0; round < 3; round++) {
+					long start = System.nanoTime();
+					computations[c].run();
+					best = Math.min(best, System.nanoTime() - start);
+				}
+				double ms = best / 1e6;
+				if (threads == 1) {
+					single[c] = ms;
+				}
+				System.out.printf("%-12s %8d %10.1f %8.2f %10.2f%n", computationNames[c], threads, ms, single[c] / ms, single[c] / ms / threads);
+			}
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the ticker names and the pool that runs the computations
+	 * 		Storing the days with a closing price of each ticker, and the closing and highest prices of these days
+	 */
+	private final List<String> tickers;
+	private final ForkJoinPool pool;
+	private final int[][] epochDays;
+	private final double[][] closing;
+	private final double[][] highest;
+}
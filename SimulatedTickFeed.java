@@ -0,0 +1,144 @@
+import java.time.DayOfWeek;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SimulatedTickFeed.java
+ *
+ * produces a random walk of intraday ticks at a fixed rate, starting from the last closing price
+ * and the day after the last day of the history. Simulated time runs faster than real time: a
+ * trading day lasts <code>ticksPerDay</code> ticks and the next week day starts right after it, so
+ * new bars keep appearing while the current one is updated. This feed is meant to exercise the
+ * live mode on machines without a market connection.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class SimulatedTickFeed implements TickFeed {
+
+	private static final int DEFAULT_TICKS_PER_SECOND = 20_000;		// rate of the default feed
+	private static final int DEFAULT_TICKS_PER_DAY = 200_000;		// ticks of a simulated trading day
+	private static final long SESSION_OPEN = (14 * 60 + 30) * 60 * 1000L;	// 9:30 New York time, in milliseconds after midnight UTC
+	private static final long SESSION_LENGTH = (6 * 60 + 30) * 60 * 1000L;	// length of a trading session in milliseconds
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+	private static final long PARK_NANOS = 1_000_000;				// pause of the producer between batches
+	private static final double VOLATILITY = 0.0005;				// relative size of a price step
+
+	/**
+	 * The SimulatedTickFeed constructor with the default rate
+	 */
+	public SimulatedTickFeed() {
+		this(DEFAULT_TICKS_PER_SECOND);
+	}
+
+	/**
+	 * The SimulatedTickFeed constructor
+	 * @param ticksPerSecond rate of the produced ticks
+	 */
+	public SimulatedTickFeed(int ticksPerSecond) {
+		this(ticksPerSecond, DEFAULT_TICKS_PER_DAY);
+	}
+
+	/**
+	 * The SimulatedTickFeed constructor
+	 * @param ticksPerSecond rate of the produced ticks
+	 * @param ticksPerDay number of ticks of a simulated trading day
+	 */
+	public SimulatedTickFeed(int ticksPerSecond, int ticksPerDay) {
+		if (ticksPerSecond < 1 || ticksPerDay < 1) {
+			throw new IllegalArgumentException("the tick rates must be positive");
+		}
+		this.ticksPerSecond = ticksPerSecond;
+		this.ticksPerDay = ticksPerDay;
+	}
+
+	@Override
+	public synchronized void start(TickRingBuffer buffer, StockBars history) {
+		if (producer != null) {
+			throw new IllegalStateException("a feed can only be started once");
+		}
+		int last = history.size() - 1;
+		double startPrice = 100;
+		int startDay = (int) Math.floorDiv(System.currentTimeMillis(), MILLIS_PER_DAY) - 1;
+		if (last >= 0) {
+			startDay = history.getEpochDay(last);
+			if (history.isValid(last, StockBars.Column.CLOSING)) {
+				startPrice = history.getClosing(last);
+			}
+		}
+		double firstPrice = startPrice;
+		int firstDay = nextWeekDay(startDay);
+		running = true;
+		producer = new Thread(() -> produce(buffer, firstPrice, firstDay), "simulated-tick-feed");
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	@Override
+	public synchronized void stop() {
+		running = false;
+		if (producer != null) {
+			LockSupport.unpark(producer);
+		}
+	}
+
+	@Override
+	public long getDroppedTicks() {
+		return dropped;
+	}
+
+	/**
+	 * the loop of the producer thread: emit the ticks that are due, then pause briefly
+	 * @param buffer receives the ticks
+	 * @param price the price of the first tick
+	 * @param day the day of the first tick
+	 */
+	private void produce(TickRingBuffer buffer, double price, int day) {
+		SplittableRandom random = new SplittableRandom(day);
+		long startNanos = System.nanoTime();
+		long produced = 0;
+		long tickOfDay = 0;
+		long step = Math.max(1, SESSION_LENGTH / ticksPerDay);
+		while (running) {
+			long due = (long) ((System.nanoTime() - startNanos) / 1e9 * ticksPerSecond);
+			for (; produced < due; produced++) {
+				if (tickOfDay == ticksPerDay) {
+					day = nextWeekDay(day);
+					tickOfDay = 0;
+				}
+				price *= 1 + VOLATILITY * (random.nextDouble() - 0.5);
+				long time = day * MILLIS_PER_DAY + SESSION_OPEN + tickOfDay * step;
+				long size = 1 + random.nextInt(100) * 100L;
+				if (!buffer.offer(time, Math.round(price * 100) / 100.0, size)) {
+					dropped++;
+				}
+				tickOfDay++;
+			}
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+	}
+
+	/**
+	 * get the first Monday to Friday after a day
+	 * @param day as number of days since 1970-01-01
+	 * @return next week day
+	 */
+	private static int nextWeekDay(int day) {
+		do {
+			day++;
+		} while (Math.floorMod(day + 3, 7) + 1 >= DayOfWeek.SATURDAY.getValue());	// 1970-01-01 was a Thursday
+		return day;
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the rate of the ticks and the length of a simulated day
+	 * 		Storing the producer thread, whether it should keep running, and the number of dropped ticks
+	 */
+	private final int ticksPerSecond;
+	private final int ticksPerDay;
+	private Thread producer;
+	private volatile boolean running;
+	private volatile long dropped;
+}
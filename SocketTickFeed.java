@@ -0,0 +1,175 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * SocketTickFeed.java
+ *
+ * reads intraday ticks from a TCP connection. Every tick is a line of text
+ * <code>&lt;time&gt;,&lt;price&gt;,&lt;size&gt;</code>, where the time is in milliseconds since
+ * 1970-01-01T00:00Z and the price may have decimals. The bytes are parsed as they arrive into a
+ * reused buffer, without building strings, and malformed lines are skipped.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class SocketTickFeed implements TickFeed {
+
+	private static final int CONNECT_TIMEOUT = 10 * 1000;	// time allowed to connect in milliseconds
+	private static final int BUFFER_SIZE = 64 * 1024;		// size of the read buffer in bytes
+
+	/**
+	 * The SocketTickFeed constructor
+	 * @param host name or address of the tick server
+	 * @param port of the tick server
+	 */
+	public SocketTickFeed(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	@Override
+	public synchronized void start(TickRingBuffer buffer, StockBars history) {
+		if (reader != null) {
+			throw new IllegalStateException("a feed can only be started once");
+		}
+		this.buffer = buffer;
+		running = true;
+		reader = new Thread(this::read, "socket-tick-feed-" + host + ":" + port);
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	@Override
+	public synchronized void stop() {
+		running = false;
+		closeSocket();
+	}
+
+	@Override
+	public long getDroppedTicks() {
+		return dropped;
+	}
+
+	@Override
+	public IOException getError() {
+		return error;
+	}
+
+	/**
+	 * the loop of the reader thread: connect, then parse everything that arrives until the
+	 * server closes the connection or the feed is stopped
+	 */
+	private void read() {
+		try (Socket connection = new Socket()) {
+			synchronized (this) {
+				if (!running) {
+					return;
+				}
+				socket = connection;
+			}
+			connection.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+			InputStream in = connection.getInputStream();
+			byte[] bytes = new byte[BUFFER_SIZE];
+			int count;
+			while (running && (count = in.read(bytes)) >= 0) {
+				for (int i = 0; i < count; i++) {
+					accept(bytes[i]);
+				}
+			}
+			if (running) {
+				error = new EOFException("the tick server " + host + ":" + port + " closed the connection");
+			}
+		} catch (IOException e) {
+			if (running) {
+				error = e;
+			}
+		}
+	}
+
+	/**
+	 * advance the line parser by one byte
+	 * @param b the next byte of the stream
+	 */
+	private void accept(byte b) {
+		if (b == '\n') {
+			if (!malformed && field == 2 && digits > 0) {
+				if (!buffer.offer(time, price, value)) {
+					dropped++;
+				}
+			}
+			resetLine();
+			return;
+		}
+		if (malformed || b == '\r') {
+			return;
+		}
+		if (b >= '0' && b <= '9') {
+			value = value * 10 + (b - '0');
+			digits++;
+			if (fractionDigits >= 0) {
+				fractionDigits++;
+			}
+		} else if (b == '.' && field == 1 && fractionDigits < 0) {
+			fractionDigits = 0;
+		} else if (b == ',' && field < 2 && digits > 0) {
+			if (field == 0) {
+				time = value;
+			} else {
+				price = fractionDigits > 0 ? value / Math.pow(10, fractionDigits) : value;
+			}
+			field++;
+			value = 0;
+			digits = 0;
+			fractionDigits = -1;
+		} else {
+			malformed = true;
+		}
+	}
+
+	private void resetLine() {
+		field = 0;
+		value = 0;
+		digits = 0;
+		fractionDigits = -1;
+		malformed = false;
+	}
+
+	private synchronized void closeSocket() {
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// the connection is being dropped anyway
+			}
+		}
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the address of the tick server, the buffer that receives the ticks, and the
+	 * 		reader thread with its connection
+	 * 		Storing whether the feed should keep running, the number of dropped ticks, and the
+	 * 		failure that ended the connection
+	 * 		Storing the state of the line parser: the current field, the digits of its value, the
+	 * 		number of decimals (-1 before the decimal point), and the fields parsed so far
+	 */
+	private final String host;
+	private final int port;
+	private TickRingBuffer buffer;
+	private Thread reader;
+	private Socket socket;
+	private volatile boolean running;
+	private volatile long dropped;
+	private volatile IOException error;
+	private int field;
+	private long value;
+	private int digits;
+	private int fractionDigits = -1;
+	private boolean malformed;
+	private long time;
+	private double price;
+}
@@ -0,0 +1,261 @@
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * StockBars.java
+ *
+ * read access to daily stock values sorted by date. The values can live in heap arrays
+ * (<code>StockSeries</code>) or in a memory-mapped file (<code>MappedStockSeries</code>); the charts
+ * only read them through this interface, so neither kind has to be copied into the other.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public interface StockBars {
+
+	/**
+	 * define the value columns of a daily bar along with the title of their chart
+	 */
+	enum Column {
+		OPENING("Opening"), CLOSING("Closing"), LOWEST("Lowest"), HIGHEST("Highest"), VOLUME("Volumes");
+
+		private final String title;		// storing the title shown in the chart tab
+
+		Column(String title) {
+			this.title = title;
+		}
+
+		/**
+		 * get the title of the column
+		 * @return column title
+		 */
+		public String getTitle() {
+			return title;
+		}
+
+		/**
+		 * get the bit of this column in a row validity mask
+		 * @return validity bit
+		 */
+		public int mask() {
+			return 1 << ordinal();
+		}
+	}
+
+	int ALL_VALID = (1 << Column.values().length) - 1;	// validity mask of a complete row
+
+	/**
+	 * get the number of days
+	 * @return number of rows
+	 */
+	int size();
+
+	/**
+	 * get the day of a row as number of days since 1970-01-01
+	 * @param index of the row
+	 * @return epoch day
+	 */
+	int getEpochDay(int index);
+
+	/**
+	 * get the opening price of a row
+	 * @param index of the row
+	 * @return opening price, meaningless if not valid
+	 */
+	double getOpening(int index);
+
+	/**
+	 * get the closing price of a row
+	 * @param index of the row
+	 * @return closing price, meaningless if not valid
+	 */
+	double getClosing(int index);
+
+	/**
+	 * get the lowest price of a row
+	 * @param index of the row
+	 * @return lowest price, meaningless if not valid
+	 */
+	double getLowest(int index);
+
+	/**
+	 * get the highest price of a row
+	 * @param index of the row
+	 * @return highest price, meaningless if not valid
+	 */
+	double getHighest(int index);
+
+	/**
+	 * get the stocks volume of a row
+	 * @param index of the row
+	 * @return stocks volume, meaningless if not valid
+	 */
+	long getVolume(int index);
+
+	/**
+	 * check if the value of a column is available in a row
+	 * @param index of the row
+	 * @param column to check
+	 * @return TRUE if the value is present, FALSE if it is missing
+	 */
+	boolean isValid(int index, Column column);
+
+	/**
+	 * get the day of a row as a date
+	 * @param index of the row
+	 * @return date
+	 */
+	default LocalDate getDate(int index) {
+		return LocalDate.ofEpochDay(getEpochDay(index));
+	}
+
+	/**
+	 * get the value of any column of a row as a double
+	 * @param index of the row
+	 * @param column to read
+	 * @return value of the column
+	 */
+	default double getValue(int index, Column column) {
+		switch (column) {
+		case OPENING:
+			return getOpening(index);
+		case CLOSING:
+			return getClosing(index);
+		case LOWEST:
+			return getLowest(index);
+		case HIGHEST:
+			return getHighest(index);
+		default:
+			return getVolume(index);
+		}
+	}
+
+	/**
+	 * get the validity mask of a row
+	 * @param index of the row
+	 * @return bits of the valid columns
+	 */
+	default int validMask(int index) {
+		int mask = 0;
+		for (Column column : Column.values()) {
+			if (isValid(index, column)) {
+				mask |= column.mask();
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * find the first row whose day is not before <code>epochDay</code> with a binary search
+	 * @param epochDay the day to look for
+	 * @return index of the row, or <code>size()</code> if all the rows are before that day
+	 */
+	default int lowerBound(int epochDay) {
+		int low = 0;
+		int high = size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getEpochDay(middle) < epochDay) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * get a view of the first rows. The view reads the rows in place and sees later changes of them.
+	 * @param size number of rows of the view
+	 * @return bars of the rows from 0 to <code>size - 1</code>
+	 * @throws IndexOutOfBoundsException if <code>size</code> is negative or larger than <code>size()</code>
+	 */
+	default StockBars head(int size) {
+		if (size < 0 || size > size()) {
+			throw new IndexOutOfBoundsException("head of " + size + " rows out of " + size());
+		}
+		StockBars bars = this;
+		return new StockBars() {
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public int getEpochDay(int index) {
+				return bars.getEpochDay(index);
+			}
+
+			@Override
+			public double getOpening(int index) {
+				return bars.getOpening(index);
+			}
+
+			@Override
+			public double getClosing(int index) {
+				return bars.getClosing(index);
+			}
+
+			@Override
+			public double getLowest(int index) {
+				return bars.getLowest(index);
+			}
+
+			@Override
+			public double getHighest(int index) {
+				return bars.getHighest(index);
+			}
+
+			@Override
+			public long getVolume(int index) {
+				return bars.getVolume(index);
+			}
+
+			@Override
+			public boolean isValid(int index, Column column) {
+				return bars.isValid(index, column);
+			}
+
+			@Override
+			public int validMask(int index) {
+				return bars.validMask(index);
+			}
+		};
+	}
+
+	/**
+	 * get a row as a <code>DailyStockValues</code> object. This is only a view for the code that
+	 * still needs boxed values; the bars themselves do not keep such objects.
+	 * @param index of the row
+	 * @return daily stock values of that row
+	 */
+	default DailyStockValues getDailyStockValues(int index) {
+		return new DailyStockValues(getDate(index),
+				isValid(index, Column.OPENING) ? getOpening(index) : null,
+				isValid(index, Column.CLOSING) ? getClosing(index) : null,
+				isValid(index, Column.LOWEST) ? getLowest(index) : null,
+				isValid(index, Column.HIGHEST) ? getHighest(index) : null,
+				isValid(index, Column.VOLUME) ? (int) Math.min(getVolume(index), Integer.MAX_VALUE) : null);
+	}
+
+	/**
+	 * get the bars as a read-only list of <code>DailyStockValues</code>. The objects are
+	 * created on access, so the list costs nothing until it is read.
+	 * @return list view of daily stock values
+	 */
+	default List<DailyStockValues> asDailyStockValues() {
+		return new AbstractList<DailyStockValues>() {
+			@Override
+			public DailyStockValues get(int index) {
+				return getDailyStockValues(index);
+			}
+
+			@Override
+			public int size() {
+				return StockBars.this.size();
+			}
+		};
+	}
+}
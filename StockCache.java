@@ -0,0 +1,419 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StockCache.java
+ *
+ * keeps the downloaded daily stock values on disk, one file per ticker. A file holds a small
+ * header followed by fixed-width records (see <code>MappedStockSeries</code>) sorted by date, and
+ * it covers one continuous range of days. The file is memory-mapped, so the part of a requested
+ * range that is already covered is served as a view over the mapping without any copy, and only
+ * the days outside the covered range are downloaded and merged into the file.
+ *
+ * A merge never writes over a file that may still be mapped: it writes the next generation of the
+ * file of the ticker (<code>&lt;ticker&gt;.ohlc</code>, then <code>&lt;ticker&gt;@1.ohlc</code>,
+ * <code>&lt;ticker&gt;@2.ohlc</code> and so on), and the older generations are deleted once the
+ * system lets them go, which on Windows is only after their mappings were released.
+ *
+ * Days whose session is not over in New York are never cached, since their values may still
+ * change; they are downloaded on every load and joined to the cached days.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class StockCache {
+
+	private static final int MAGIC = 0x4F484C43;	// "OHLC", marks a cache file
+	private static final int VERSION = 1;			// version of the file layout
+	private static final int HEADER_SIZE = 32;		// magic, version, count, first and last covered day, padding
+	private static final String FILE_SUFFIX = ".ohlc";
+	private static final String GENERATION_SEPARATOR = "@";	// between the ticker and the generation, never in a ticker file name
+	private static final Segment EMPTY = new Segment(new MappedStockSeries(ByteBuffer.allocate(0), 0, 0), 0, -1, -1);
+
+	private static final ConcurrentHashMap<String, StockCache> SHARED = new ConcurrentHashMap<>();
+													// storing the cache of each cache key
+
+	/**
+	 * get the cache shared by the application for a data source. The caches live in the directory
+	 * of the <code>stockviewer.cache</code> system property, by default .stockviewer/cache in the
+	 * home directory of the user, with a sub-directory per cache key of the source. Setting the
+	 * property to <code>none</code> turns caching off.
+	 * @param source the data source whose values are cached
+	 * @return shared cache, or null if caching is off or the source is not cached
+	 */
+	public static StockCache getDefault(StockDataSource source) {
+		String directory = System.getProperty("stockviewer.cache",
+				Paths.get(System.getProperty("user.home"), ".stockviewer", "cache").toString());
+		String key = source.getCacheKey();
+		if (directory.equals("none") || key == null) {
+			return null;
+		}
+		return SHARED.computeIfAbsent(key, name -> new StockCache(Paths.get(directory, name)));
+	}
+
+	/**
+	 * The StockCache constructor
+	 * @param directory where the cache files are kept, created on first write
+	 */
+	public StockCache(Path directory) {
+		this.directory = directory;
+		this.segments = new ConcurrentHashMap<>();
+		this.pending = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * load the daily stock values of a ticker between two dates. Covered days are read from the
+	 * cache, the missing days before and after them are requested from the source.
+	 * Loads of the same ticker run one after the other; different tickers run concurrently.
+	 * @param source provides the values of the days that are not cached
+	 * @param ticker the ticker name
+	 * @param from the start date of daily prices
+	 * @param to the end date of daily prices
+	 * @return future of the daily stock values, sorted by date
+	 */
+	public CompletableFuture<StockBars> load(StockDataSource source, String ticker, LocalDate from, LocalDate to) {
+		CompletableFuture<StockBars> result = new CompletableFuture<>();
+		CompletableFuture<?> previous = pending.put(ticker, result);
+		CompletableFuture<?> start = previous == null ? CompletableFuture.completedFuture(null) : previous;
+		start.whenComplete((ignored, error) -> {
+			if (result.isDone()) {
+				return;
+			}
+			try {
+				load(source, ticker, (int) from.toEpochDay(), (int) to.toEpochDay(), result);
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+		result.whenComplete((bars, error) -> pending.remove(ticker, result));
+		return result;
+	}
+
+	/**
+	 * drop the cached values of a ticker, both in memory and on disk
+	 * @param ticker the ticker name
+	 * @throws IOException if a file cannot be deleted
+	 */
+	public synchronized void invalidate(String ticker) throws IOException {
+		segments.remove(ticker);
+		for (int generation : generations(ticker)) {
+			Files.deleteIfExists(fileOf(ticker, generation));
+		}
+	}
+
+	/**
+	 * find the missing days, download them, merge them into the cache and complete the result
+	 */
+	private void load(StockDataSource source, String ticker, int fromDay, int toDay, CompletableFuture<StockBars> result) {
+		int lastCacheable = TradingCalendar.lastClosedDay();
+		int cachedTo = Math.min(toDay, lastCacheable);
+		Segment segment = segment(ticker);
+
+		// the covered range stays continuous, so a gap may also bridge the days between the
+		// requested range and the covered one
+		List<int[]> gaps = new ArrayList<>();
+		if (fromDay <= cachedTo) {
+			if (segment.isEmpty()) {
+				gaps.add(new int[] {fromDay, cachedTo});
+			} else {
+				if (fromDay < segment.coveredFrom) {
+					gaps.add(new int[] {fromDay, segment.coveredFrom - 1});
+				}
+				if (cachedTo > segment.coveredTo) {
+					gaps.add(new int[] {segment.coveredTo + 1, cachedTo});
+				}
+			}
+		}
+		int liveFrom = Math.max(fromDay, lastCacheable + 1);
+
+		List<CompletableFuture<StockSeries>> downloads = new ArrayList<>();
+		for (int[] gap : gaps) {
+			downloads.add(source.fetch(ticker, LocalDate.ofEpochDay(gap[0]), LocalDate.ofEpochDay(gap[1])));
+		}
+		CompletableFuture<StockSeries> live = liveFrom <= toDay
+				? source.fetch(ticker, LocalDate.ofEpochDay(liveFrom), LocalDate.ofEpochDay(toDay))
+				: CompletableFuture.completedFuture(new StockSeries(1));
+		downloads.add(live);
+		for (CompletableFuture<StockSeries> download : downloads) {
+			StockFetcher.cancelWith(result, download);
+		}
+
+		CompletableFuture.allOf(downloads.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+			if (error != null) {
+				result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+				return;
+			}
+			try {
+				Segment merged = segment;
+				if (!gaps.isEmpty()) {
+					merged = merge(ticker, segment, gaps, downloads);
+				}
+				int first = merged.records.lowerBound(fromDay);
+				int last = Math.max(first, merged.records.lowerBound(cachedTo + 1));
+				MappedStockSeries cached = merged.records.slice(first, last);
+				result.complete(JoinedStockBars.of(cached, between(live.join(), liveFrom, toDay)));
+			} catch (IOException | RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		});
+	}
+
+	/**
+	 * get the segment of a ticker from memory, or map it from its file
+	 * @param ticker the ticker name
+	 * @return cached segment, empty if nothing is cached
+	 */
+	private synchronized Segment segment(String ticker) {
+		Segment segment = segments.get(ticker);
+		if (segment != null) {
+			return segment;
+		}
+		try {
+			List<Integer> generations = generations(ticker);
+			if (!generations.isEmpty()) {
+				int generation = generations.get(generations.size() - 1);
+				segment = read(fileOf(ticker, generation), generation);
+			} else {
+				segment = EMPTY;
+			}
+		} catch (IOException e) {
+			segment = EMPTY;
+		}
+		segments.put(ticker, segment);
+		return segment;
+	}
+
+	/**
+	 * write the next generation of the file of a ticker, made of the downloaded gaps around the
+	 * records of a segment, and map it
+	 * @param ticker the ticker name
+	 * @param segment the current segment
+	 * @param gaps the downloaded ranges, (from, to) inclusive
+	 * @param downloads the values of each gap, in the same order
+	 * @return the merged segment
+	 * @throws IOException if the file cannot be written
+	 */
+	private synchronized Segment merge(String ticker, Segment segment, List<int[]> gaps,
+			List<CompletableFuture<StockSeries>> downloads) throws IOException {
+		int coveredFrom = segment.isEmpty() ? Integer.MAX_VALUE : segment.coveredFrom;
+		int coveredTo = segment.isEmpty() ? Integer.MIN_VALUE : segment.coveredTo;
+		List<StockBars> before = new ArrayList<>();
+		List<StockBars> after = new ArrayList<>();
+		int count = segment.records.size();
+		for (int i = 0; i < gaps.size(); i++) {
+			int[] gap = gaps.get(i);
+			StockSeries rows = between(downloads.get(i).join(), gap[0], gap[1]);
+			count += rows.size();
+			if (gap[1] < coveredFrom) {
+				before.add(rows);
+			} else {
+				after.add(rows);
+			}
+			coveredFrom = Math.min(coveredFrom, gap[0]);
+			coveredTo = Math.max(coveredTo, gap[1]);
+		}
+
+		Files.createDirectories(directory);
+		Path temporary = Files.createTempFile(directory, ticker, ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer target = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					HEADER_SIZE + (long) count * MappedStockSeries.RECORD_SIZE);
+			target.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(coveredFrom).putInt(coveredTo);
+			target.position(HEADER_SIZE);
+			for (StockBars rows : before) {
+				write(target, rows);
+			}
+			write(target, segment.records);
+			for (StockBars rows : after) {
+				write(target, rows);
+			}
+			target.force();
+		}
+		// the current file may still be mapped by earlier views, so it is not replaced; another
+		// process may have written the next generation already, then the one after is taken
+		int generation = segment.generation + 1;
+		while (true) {
+			try {
+				// without REPLACE_EXISTING, since an atomic move would silently replace a file written
+				// by another process; on one file system the move is still a rename
+				Files.move(temporary, fileOf(ticker, generation));
+				break;
+			} catch (FileAlreadyExistsException e) {
+				generation++;
+			} catch (IOException e) {
+				Files.deleteIfExists(temporary);
+				throw e;
+			}
+		}
+
+		Segment merged = read(fileOf(ticker, generation), generation);
+		segments.put(ticker, merged);
+		for (int older : generations(ticker)) {
+			if (older < generation) {
+				try {
+					Files.deleteIfExists(fileOf(ticker, older));
+				} catch (IOException e) {
+					// still mapped, a later merge deletes it
+				}
+			}
+		}
+		return merged;
+	}
+
+
+	/**
+	 * append rows to a file being written
+	 * @param target the mapped file
+	 * @param rows to write
+	 */
+	private static void write(ByteBuffer target, StockBars rows) {
+		for (int i = 0; i < rows.size(); i++) {
+			MappedStockSeries.writeRecord(target, rows, i);
+		}
+	}
+
+	/**
+	 * map a cache file and read its header
+	 * @param file the cache file
+	 * @param generation of the file
+	 * @return segment of the file, empty if the file does not exist
+	 * @throws IOException if the file cannot be read or is not a cache file
+	 */
+	private static Segment read(Path file, int generation) throws IOException {
+		if (!Files.exists(file)) {
+			return EMPTY;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("not a cache file: " + file);
+			}
+			int count = buffer.getInt(8);
+			// the mapping stays valid after the channel is closed
+			return new Segment(new MappedStockSeries(buffer, HEADER_SIZE, count), buffer.getInt(12), buffer.getInt(16),
+					generation);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("truncated cache file: " + file, e);
+		}
+	}
+
+	/**
+	 * keep the rows of a series that fall between two days, sorted by date
+	 * @param series the downloaded rows
+	 * @param fromDay first day to keep
+	 * @param toDay last day to keep
+	 * @return rows in range
+	 */
+	private static StockSeries between(StockSeries series, int fromDay, int toDay) {
+		series.sortByDate();
+		int first = series.lowerBound(fromDay);
+		int last = series.lowerBound(toDay + 1);
+		if (first == 0 && last == series.size()) {
+			return series;
+		}
+		StockSeries rows = new StockSeries(last - first);
+		for (int i = first; i < last; i++) {
+			rows.add(series.getEpochDay(i), series.getOpening(i), series.getClosing(i), series.getLowest(i),
+					series.getHighest(i), series.getVolume(i), series.validMask(i));
+		}
+		return rows;
+	}
+
+	/**
+	 * get a generation of the cache file of a ticker
+	 * @param ticker the ticker name
+	 * @param generation of the file, 0 for the first one
+	 * @return file path
+	 */
+	private Path fileOf(String ticker, int generation) {
+		String name = fileNameOf(ticker);
+		return directory.resolve(generation == 0 ? name + FILE_SUFFIX : name + GENERATION_SEPARATOR + generation + FILE_SUFFIX);
+	}
+
+	/**
+	 * list the generations of the cache file of a ticker that are on disk
+	 * @param ticker the ticker name
+	 * @return generations in ascending order, empty if nothing is cached
+	 * @throws IOException if the directory cannot be read
+	 */
+	private List<Integer> generations(String ticker) throws IOException {
+		List<Integer> generations = new ArrayList<>();
+		if (!Files.isDirectory(directory)) {
+			return generations;
+		}
+		String name = fileNameOf(ticker);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				String fileName = file.getFileName().toString();
+				if (fileName.equals(name + FILE_SUFFIX)) {
+					generations.add(0);
+				} else if (fileName.startsWith(name + GENERATION_SEPARATOR) && fileName.endsWith(FILE_SUFFIX)) {
+					int start = name.length() + GENERATION_SEPARATOR.length();
+					String generation = fileName.substring(start, Math.max(start, fileName.length() - FILE_SUFFIX.length()));
+					if (generation.matches("[1-9][0-9]{0,8}")) {
+						generations.add(Integer.parseInt(generation));
+					}
+				}
+			}
+		}
+		Collections.sort(generations);
+		return generations;
+	}
+
+	/**
+	 * get the base of the file names of a ticker
+	 * @param ticker the ticker name
+	 * @return ticker with the characters that are unsafe in file names replaced, so that it never
+	 * holds the generation separator
+	 */
+	private static String fileNameOf(String ticker) {
+		return ticker.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	/**
+	 * the mapped records of a ticker along with the range of days they cover
+	 */
+	private static class Segment {
+		private final MappedStockSeries records;	// storing the records in a mapped file
+		private final int coveredFrom;				// storing the first covered day
+		private final int coveredTo;				// storing the last covered day
+		private final int generation;				// storing the generation of the file, -1 if there is none
+
+		Segment(MappedStockSeries records, int coveredFrom, int coveredTo, int generation) {
+			this.records = records;
+			this.coveredFrom = coveredFrom;
+			this.coveredTo = coveredTo;
+			this.generation = generation;
+		}
+
+		boolean isEmpty() {
+			return coveredTo < coveredFrom;
+		}
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the directory of the cache files
+	 * 		Storing the mapped segment of each ticker that was read
+	 * 		Storing the last load of each ticker so that loads of a ticker do not overlap
+	 */
+	private final Path directory;
+	private final ConcurrentHashMap<String, Segment> segments;
+	private final ConcurrentHashMap<String, CompletableFuture<?>> pending;
+}
@@ -0,0 +1,394 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * StockCsvParser.java
+ *
+ * parses the historical prices feed (Date,Open,High,Low,Close,Volume) straight into a
+ * <code>StockRowHandler</code>, such as a <code>StockSeries</code>. The parser works on the raw
+ * bytes one at a time and keeps its state between calls, so the input can be fed in chunks of any
+ * size as they arrive. Dates, prices and volumes are decoded in place; no String, boxed value or
+ * exception is created per row, and a missing value (such as "-") simply clears its bit in the
+ * row validity mask.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class StockCsvParser {
+
+	private static final int BUFFER_SIZE = 64 * 1024;		// size of the reused read buffer
+	private static final int MAX_DIGITS = 18;				// significant digits that fit in a long mantissa
+	private static final double[] POW10 = new double[23];	// exact powers of ten representable as doubles
+	private static final int[] MONTH_CODES = new int[12];	// packed lower case month abbreviations
+
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++) {
+			POW10[i] = POW10[i - 1] * 10;
+		}
+		String[] months = {"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"};
+		for (int i = 0; i < months.length; i++) {
+			int code = 0;
+			for (int j = 0; j < 3; j++) {
+				code = (code << 5) | (months[i].charAt(j) - 'a');
+			}
+			MONTH_CODES[i] = code;
+		}
+	}
+
+	/**
+	 * The StockCsvParser constructor. The first line of the input is treated as the header
+	 * and skipped.
+	 * @param handler that receives the parsed rows
+	 */
+	public StockCsvParser(StockRowHandler handler) {
+		this.handler = handler;
+		this.inHeader = true;
+		resetRow();
+	}
+
+	/**
+	 * read the whole stream through a reused buffer and parse it
+	 * @param stream of CSV bytes
+	 * @throws IOException if reading from the stream fails
+	 */
+	public void parse(InputStream stream) throws IOException {
+		if (buffer == null) {
+			buffer = new byte[BUFFER_SIZE];
+		}
+		int count;
+		while ((count = stream.read(buffer)) != -1) {
+			feed(buffer, 0, count);
+		}
+		finish();
+	}
+
+	/**
+	 * parse the next chunk of bytes. A row may be split across several chunks.
+	 * @param bytes the chunk
+	 * @param offset of the first byte to parse
+	 * @param length number of bytes to parse
+	 */
+	public void feed(byte[] bytes, int offset, int length) {
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			accept(bytes[i]);
+		}
+	}
+
+	/**
+	 * parse the remaining bytes of a buffer, moving its position to its limit
+	 * @param bytes the chunk
+	 */
+	public void feed(ByteBuffer bytes) {
+		if (bytes.hasArray()) {
+			int position = bytes.position();
+			feed(bytes.array(), bytes.arrayOffset() + position, bytes.remaining());
+			bytes.position(bytes.limit());
+		} else {
+			while (bytes.hasRemaining()) {
+				accept(bytes.get());
+			}
+		}
+	}
+
+	/**
+	 * complete the last row if the input does not end with a line break
+	 */
+	public void finish() {
+		if (!inHeader) {
+			endRow();
+		}
+		inHeader = false;
+	}
+
+	/**
+	 * get the number of rows handed to the handler
+	 * @return parsed rows
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * get the number of non empty rows that were dropped because their date could not be read
+	 * @return skipped rows
+	 */
+	public int getSkippedRowCount() {
+		return skippedCount;
+	}
+
+	/**
+	 * consume a single byte of input
+	 * @param b the byte
+	 */
+	private void accept(byte b) {
+		if (inHeader) {
+			inHeader = b != '\n';
+			return;
+		}
+		switch (b) {
+		case '\n':
+			endRow();
+			break;
+		case '\r':
+			break;
+		case ',':
+			endField();
+			break;
+		default:
+			rowHasContent = true;
+			if (field == 0) {
+				acceptDate(b);
+			} else {
+				acceptNumber(b);
+			}
+		}
+	}
+
+	/**
+	 * accept a byte of the date field. Both "d-MMM-yy" (the Google Finance format) and
+	 * "yyyy-MM-dd" are understood.
+	 * @param b the byte
+	 */
+	private void acceptDate(byte b) {
+		if (b == '-') {
+			datePart++;
+			dateBad |= datePart > 2;
+		} else if (b >= '0' && b <= '9') {
+			if (datePart == 1 && monthChars > 0) {
+				dateBad = true;
+			}
+			datePartValue[Math.min(datePart, 2)] = datePartValue[Math.min(datePart, 2)] * 10 + (b - '0');
+			datePartDigits[Math.min(datePart, 2)]++;
+		} else if (datePart == 1 && monthChars < 3 && datePartDigits[1] == 0 && (b | 0x20) >= 'a' && (b | 0x20) <= 'z') {
+			monthCode = (monthCode << 5) | ((b | 0x20) - 'a');
+			monthChars++;
+		} else {
+			dateBad = true;
+		}
+	}
+
+	/**
+	 * accept a byte of a price or volume field
+	 * @param b the byte
+	 */
+	private void acceptNumber(byte b) {
+		if (b >= '0' && b <= '9') {
+			numberHasDigits = true;
+			if (significantDigits < MAX_DIGITS) {
+				mantissa = mantissa * 10 + (b - '0');
+				if (mantissa != 0) {
+					significantDigits++;
+				}
+				if (seenDot) {
+					scale++;
+				}
+			} else if (!seenDot) {
+				droppedDigits++;
+			}
+		} else if (b == '.' && !seenDot) {
+			seenDot = true;
+		} else if (b == '-' && !numberHasDigits && !negative && !seenDot) {
+			negative = true;
+		} else if (b != ' ') {
+			numberBad = true;
+		}
+	}
+
+	/**
+	 * store the current field into the row and move to the next field
+	 */
+	private void endField() {
+		if (field >= 1 && field <= 5 && numberHasDigits && !numberBad) {
+			double value = toDouble();
+			switch (field) {
+			case 1:
+				opening = value;
+				validMask |= StockBars.Column.OPENING.mask();
+				break;
+			case 2:
+				highest = value;
+				validMask |= StockBars.Column.HIGHEST.mask();
+				break;
+			case 3:
+				lowest = value;
+				validMask |= StockBars.Column.LOWEST.mask();
+				break;
+			case 4:
+				closing = value;
+				validMask |= StockBars.Column.CLOSING.mask();
+				break;
+			default:
+				volume = Math.round(value);
+				validMask |= StockBars.Column.VOLUME.mask();
+			}
+		}
+		field++;
+		mantissa = 0;
+		significantDigits = 0;
+		droppedDigits = 0;
+		scale = 0;
+		seenDot = false;
+		negative = false;
+		numberHasDigits = false;
+		numberBad = false;
+	}
+
+	/**
+	 * complete the current row and hand it over if its date is valid
+	 */
+	private void endRow() {
+		if (rowHasContent) {
+			endField();
+			int epochDay = toEpochDay();
+			if (epochDay == Integer.MIN_VALUE) {
+				skippedCount++;
+			} else {
+				handler.row(epochDay, opening, closing, lowest, highest, volume, validMask);
+				rowCount++;
+			}
+		}
+		resetRow();
+	}
+
+	/**
+	 * build the value of the current number field from its decimal digits
+	 * @return value of the field
+	 */
+	private double toDouble() {
+		double value;
+		if (droppedDigits == 0 && mantissa < (1L << 53) && scale < POW10.length) {
+			// both operands are exact, so the division is correctly rounded
+			value = mantissa / POW10[scale];
+		} else {
+			value = mantissa * Math.pow(10, droppedDigits - scale);
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * convert the parts of the date field to a number of days since 1970-01-01
+	 * @return epoch day, or <code>Integer.MIN_VALUE</code> if the date is not valid
+	 */
+	private int toEpochDay() {
+		if (dateBad || datePart != 2 || datePartDigits[0] == 0 || datePartDigits[2] == 0) {
+			return Integer.MIN_VALUE;
+		}
+		int month;
+		if (monthChars == 3) {
+			month = 0;
+			while (month < 12 && MONTH_CODES[month] != monthCode) {
+				month++;
+			}
+			month++;
+		} else if (monthChars == 0 && datePartDigits[1] > 0) {
+			month = datePartValue[1];
+		} else {
+			return Integer.MIN_VALUE;
+		}
+
+		int year, day;
+		if (datePartDigits[0] == 4) {
+			year = datePartValue[0];
+			day = datePartValue[2];
+		} else {
+			day = datePartValue[0];
+			year = datePartValue[2];
+			// a two digit year is read the same way as the "uu" pattern: 2000 to 2099
+			if (datePartDigits[2] <= 2) {
+				year += 2000;
+			}
+		}
+		if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+			return Integer.MIN_VALUE;
+		}
+		return daysFromCivil(year, month, day);
+	}
+
+	/**
+	 * get the number of days of a month
+	 * @param year of the month
+	 * @param month from 1 to 12
+	 * @return number of days
+	 */
+	private static int lengthOfMonth(int year, int month) {
+		switch (month) {
+		case 2:
+			boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+			return leap ? 29 : 28;
+		case 4: case 6: case 9: case 11:
+			return 30;
+		default:
+			return 31;
+		}
+	}
+
+	/**
+	 * convert a proleptic Gregorian date to a number of days since 1970-01-01 without
+	 * creating a <code>LocalDate</code>
+	 * @param year of the date
+	 * @param month from 1 to 12
+	 * @param day of the month
+	 * @return epoch day
+	 */
+	static int daysFromCivil(int year, int month, int day) {
+		year -= month <= 2 ? 1 : 0;
+		int era = Math.floorDiv(year, 400);
+		int yearOfEra = year - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * clear the state of the current row
+	 */
+	private void resetRow() {
+		field = 0;
+		rowHasContent = false;
+		datePart = 0;
+		datePartValue[0] = datePartValue[1] = datePartValue[2] = 0;
+		datePartDigits[0] = datePartDigits[1] = datePartDigits[2] = 0;
+		monthCode = 0;
+		monthChars = 0;
+		dateBad = false;
+		opening = closing = lowest = highest = 0;
+		volume = 0;
+		validMask = 0;
+		mantissa = 0;
+		significantDigits = 0;
+		droppedDigits = 0;
+		scale = 0;
+		seenDot = false;
+		negative = false;
+		numberHasDigits = false;
+		numberBad = false;
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the row handler, the reused read buffer, and the row counters
+	 * 		Storing the state of the line, the field, and the date being parsed
+	 * 		Storing the decimal state of the number being parsed and the values of the row
+	 */
+	private final StockRowHandler handler;
+	private byte[] buffer;
+	private int rowCount, skippedCount;
+
+	private boolean inHeader, rowHasContent;
+	private int field;
+	private int datePart, monthCode, monthChars;
+	private final int[] datePartValue = new int[3];
+	private final int[] datePartDigits = new int[3];
+	private boolean dateBad;
+
+	private long mantissa;
+	private int significantDigits, droppedDigits, scale;
+	private boolean seenDot, negative, numberHasDigits, numberBad;
+	private double opening, closing, lowest, highest;
+	private long volume;
+	private int validMask;
+}
@@ -0,0 +1,100 @@
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * StockDataSource.java
+ *
+ * a provider of daily stock values. Every implementation streams its rows through the same
+ * <code>StockRowHandler</code> callback, so the parsing and charting pipeline can be driven by the
+ * remote feed (<code>HttpStockDataSource</code>), a directory of CSV files
+ * (<code>CsvDirectoryDataSource</code>), or generated data (<code>SyntheticDataSource</code>).
+ *
+ * The source used by the application is selected at runtime with the <code>stockviewer.source</code>
+ * system property: <code>http</code> (the default), <code>csv:&lt;directory&gt;</code>, or
+ * <code>synthetic</code> with an optional <code>:&lt;seed&gt;</code>.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public interface StockDataSource {
+
+	/**
+	 * stream the daily stock values of a ticker between two dates to a handler. The rows of one
+	 * call are delivered by one thread at a time, in no particular order of dates.
+	 * @param ticker the ticker name
+	 * @param from the start date of daily prices, inclusive
+	 * @param to the end date of daily prices, inclusive
+	 * @param handler receives the rows
+	 * @return future completed once every row has been delivered
+	 */
+	CompletableFuture<Void> stream(String ticker, LocalDate from, LocalDate to, StockRowHandler handler);
+
+	/**
+	 * get a short name of the source, used to share the rate limiter of each source
+	 * @return source name
+	 */
+	String getName();
+
+	/**
+	 * get the name of the cache directory of the source. Two sources have the same key only if
+	 * they return the same values.
+	 * @return cache key, or null if the values of the source are not cached
+	 */
+	default String getCacheKey() {
+		return getName();
+	}
+
+	/**
+	 * collect the daily stock values of a ticker between two dates into a series sorted by date
+	 * @param ticker the ticker name
+	 * @param from the start date of daily prices, inclusive
+	 * @param to the end date of daily prices, inclusive
+	 * @return future of the series
+	 */
+	default CompletableFuture<StockSeries> fetch(String ticker, LocalDate from, LocalDate to) {
+		StockSeries series = new StockSeries();
+		CompletableFuture<Void> stream = stream(ticker, from, to, series::add);
+		CompletableFuture<StockSeries> result = stream.thenApply(ignored -> {
+			series.sortByDate();
+			return series;
+		});
+		StockFetcher.cancelWith(result, stream);
+		return result;
+	}
+
+	/**
+	 * get the source selected by the <code>stockviewer.source</code> system property
+	 * @return data source of the application
+	 */
+	static StockDataSource getDefault() {
+		return forName(System.getProperty("stockviewer.source", "http"));
+	}
+
+	/**
+	 * create a source from its textual description
+	 * @param description <code>http</code>, <code>csv:&lt;directory&gt;</code>, <code>synthetic</code>
+	 * or <code>synthetic:&lt;seed&gt;</code>
+	 * @return data source
+	 * @throws IllegalArgumentException if the description is not understood
+	 */
+	static StockDataSource forName(String description) {
+		int colon = description.indexOf(':');
+		String kind = colon < 0 ? description : description.substring(0, colon);
+		String argument = colon < 0 ? null : description.substring(colon + 1);
+		switch (kind) {
+		case "http":
+			return new HttpStockDataSource();
+		case "csv":
+			if (argument == null || argument.isEmpty()) {
+				throw new IllegalArgumentException("the csv source needs a directory: csv:<directory>");
+			}
+			return new CsvDirectoryDataSource(Paths.get(argument));
+		case "synthetic":
+			return argument == null ? new SyntheticDataSource() : new SyntheticDataSource(Long.parseLong(argument));
+		default:
+			throw new IllegalArgumentException("unknown data source: " + description);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+/**
+ * StockFetcher.java
+ *
+ * downloads the daily stock values with a single asynchronous HTTP request. The body of the
+ * response is handed to <code>StockCsvParser</code> chunk by chunk while it arrives, so no thread
+ * waits for the download and the whole response is never held in memory. The parsed rows are
+ * streamed to a <code>StockRowHandler</code>.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class StockFetcher {
+
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);	// maximum time to establish the connection
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);	// maximum time to wait for the response headers
+
+	// one client is shared by all fetches so that connections and threads are reused
+	private static final HttpClient CLIENT = HttpClient.newBuilder()
+			.connectTimeout(CONNECT_TIMEOUT)
+			.followRedirects(HttpClient.Redirect.NORMAL)
+			.build();
+
+	private StockFetcher() {
+	}
+
+	/**
+	 * request a CSV URL and parse its body while it is received, handing each row to a handler.
+	 * Cancelling the returned future aborts the download.
+	 * @param url of the CSV data
+	 * @param handler receives the parsed rows, on the threads of the HTTP client
+	 * @return future completed once the whole body is parsed, completed exceptionally if the
+	 * connection fails, the request times out, or the response is not successful
+	 */
+	public static CompletableFuture<Void> fetch(String url, StockRowHandler handler) {
+		HttpRequest request;
+		try {
+			request = HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT).GET().build();
+		} catch (IllegalArgumentException e) {
+			return CompletableFuture.failedFuture(new Exception("issue with Internet connection", e));
+		}
+
+		ParsingSubscriber subscriber = new ParsingSubscriber(handler);
+		HttpResponse.BodyHandler<Void> bodyHandler = responseInfo -> {
+			if (responseInfo.statusCode() != 200) {
+				return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.discarding(), ignored -> {
+					throw new CompletionException(new Exception("Data not avaialbe."));
+				});
+			}
+			return HttpResponse.BodySubscribers.fromSubscriber(subscriber, ignored -> null);
+		};
+
+		CompletableFuture<HttpResponse<Void>> exchange = CLIENT.sendAsync(request, bodyHandler);
+		CompletableFuture<Void> result = exchange.handle((response, error) -> {
+			if (error != null) {
+				throw new CompletionException(toUserException(error));
+			}
+			return null;
+		});
+		cancelWith(result, exchange);
+		result.whenComplete((ignored, error) -> {
+			if (result.isCancelled()) {
+				subscriber.cancel();
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * cancel a source future when a future that depends on it is cancelled. Cancellation does not
+	 * travel upstream by itself in <code>CompletableFuture</code>.
+	 * @param dependent the future handed out to the caller
+	 * @param source the future that does the work
+	 */
+	public static void cancelWith(CompletableFuture<?> dependent, CompletableFuture<?> source) {
+		dependent.whenComplete((value, error) -> {
+			if (dependent.isCancelled()) {
+				source.cancel(true);
+			}
+		});
+	}
+
+	/**
+	 * translate a failure of the exchange to the messages shown to the user
+	 * @param error the failure
+	 * @return exception to report
+	 */
+	private static Throwable toUserException(Throwable error) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		if (cause instanceof CancellationException || !(cause instanceof IOException)) {
+			return cause;
+		}
+		return new Exception("issue with Internet connection", cause);
+	}
+
+	/**
+	 * feeds the chunks of the response body to the parser one at a time, requesting the next
+	 * chunk only once the previous one is parsed
+	 */
+	private static class ParsingSubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+		private final StockCsvParser parser;					// parsing the body as it arrives
+		private volatile Flow.Subscription subscription;		// storing the subscription to cancel it
+		private volatile boolean cancelled;						// TRUE once the fetch is cancelled
+
+		ParsingSubscriber(StockRowHandler handler) {
+			this.parser = new StockCsvParser(handler);
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (cancelled) {
+				subscription.cancel();
+			} else {
+				subscription.request(1);
+			}
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> buffers) {
+			if (cancelled) {
+				return;
+			}
+			for (ByteBuffer buffer : buffers) {
+				parser.feed(buffer);
+			}
+			subscription.request(1);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+		}
+
+		@Override
+		public void onComplete() {
+			parser.finish();
+		}
+
+		void cancel() {
+			cancelled = true;
+			Flow.Subscription current = subscription;
+			if (current != null) {
+				current.cancel();
+			}
+		}
+	}
+}
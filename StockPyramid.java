@@ -0,0 +1,245 @@
+import java.util.Arrays;
+
+/**
+ * StockPyramid.java
+ *
+ * keeps the daily stock values together with coarser bars of the same values: one bar per week,
+ * per month and per year. A coarse bar opens with the first opening price of its days, closes
+ * with the last closing price, spans their lowest and highest prices and sums their volumes; a
+ * value is missing only if it is missing on every day of the bar. All levels are built in one
+ * pass over the days into columnar series, and each coarse bar remembers the index of its first
+ * day, so that every level can be drawn in the same daily units. A chart of many years can then
+ * draw a few thousand weekly or monthly bars instead of every day.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class StockPyramid {
+
+	/**
+	 * define the levels of the pyramid from the finest to the coarsest
+	 */
+	public enum Level {
+		DAILY, WEEKLY, MONTHLY, YEARLY
+	}
+
+	private static final Level[] LEVELS = Level.values();	// cached copy of the levels, values() clones the array
+	private static final int[] DAYS_PER_BAR = {1, 5, 21, 252};	// trading days of a bar of each level, to size the series
+
+	/**
+	 * The StockPyramid constructor, aggregating all days of the series
+	 * @param daily stock values sorted by date
+	 */
+	public StockPyramid(StockBars daily) {
+		this.aggregates = new Aggregate[LEVELS.length];
+		for (int l = 1; l < LEVELS.length; l++) {
+			this.aggregates[l] = new Aggregate(Math.max(1, daily.size() / DAYS_PER_BAR[l]));
+		}
+		update(daily, 0);
+	}
+
+	/**
+	 * aggregate again the days from an index to the end, after they were appended or changed in
+	 * place. Only the bars that hold these days are rebuilt.
+	 * @param daily stock values sorted by date, including the changed days
+	 * @param fromIndex index of the first changed day
+	 * @return index of the first changed bar of each level, in the order of <code>Level</code>
+	 */
+	public int[] update(StockBars daily, int fromIndex) {
+		this.daily = daily;
+		int[] changed = new int[LEVELS.length];
+		changed[0] = fromIndex;
+		// drop the bars that hold changed days; the days are read again from the earliest of them
+		int start = fromIndex;
+		for (int l = 1; l < LEVELS.length; l++) {
+			changed[l] = aggregates[l].truncate(fromIndex);
+			start = Math.min(start, aggregates[l].nextDay);
+		}
+		for (int i = start; i < daily.size(); i++) {
+			int epochDay = daily.getEpochDay(i);
+			int yearMonth = yearMonth(epochDay);
+			int mask = daily.validMask(i);
+			for (int l = 1; l < LEVELS.length; l++) {
+				Aggregate aggregate = aggregates[l];
+				if (i >= aggregate.nextDay) {
+					aggregate.add(periodOf(LEVELS[l], epochDay, yearMonth), i, epochDay, daily, mask);
+				}
+			}
+		}
+		for (int l = 1; l < LEVELS.length; l++) {
+			aggregates[l].flush();
+		}
+		return changed;
+	}
+
+	/**
+	 * get the bars of a level
+	 * @param level of the bars
+	 * @return bars sorted by date, each dated with its first day
+	 */
+	public StockBars getBars(Level level) {
+		return level == Level.DAILY ? daily : aggregates[level.ordinal()].bars;
+	}
+
+	/**
+	 * get the index of the first day of a bar in the daily values
+	 * @param level of the bar
+	 * @param index of the bar in its level
+	 * @return index of the first day
+	 */
+	public int getFirstDay(Level level, int index) {
+		if (level == Level.DAILY) {
+			return index;
+		}
+		Aggregate aggregate = aggregates[level.ordinal()];
+		if (index < 0 || index >= aggregate.bars.size()) {
+			throw new IndexOutOfBoundsException("index " + index + " out of " + aggregate.bars.size());
+		}
+		return aggregate.firstDays[index];
+	}
+
+	/**
+	 * find the first bar of a level that starts on or after a day, with a binary search
+	 * @param level of the bars
+	 * @param day index of the day in the daily values, in the X units of the charts
+	 * @return index of the bar, or the number of bars if all start before the day
+	 */
+	public int indexOfDay(Level level, double day) {
+		int low = 0, high = getBars(level).size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getFirstDay(level, middle) < day) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * get the period of a day in a level, weeks start on Monday
+	 */
+	private static int periodOf(Level level, int epochDay, int yearMonth) {
+		switch (level) {
+		case WEEKLY:
+			// 1970-01-01 was a Thursday
+			return Math.floorDiv(epochDay + 3, 7);
+		case MONTHLY:
+			return yearMonth;
+		default:
+			return Math.floorDiv(yearMonth, 12);
+		}
+	}
+
+	/**
+	 * get the month of a day as <code>year * 12 + month - 1</code>, the inverse of
+	 * <code>StockCsvParser.daysFromCivil</code> without the day
+	 */
+	private static int yearMonth(int epochDay) {
+		int days = epochDay + 719468;
+		int era = Math.floorDiv(days, 146097);
+		int dayOfEra = days - era * 146097;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int shiftedMonth = (5 * dayOfYear + 2) / 153;
+		int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+		int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return year * 12 + month - 1;
+	}
+
+	/**
+	 * the bars of one coarse level and the bar that is being aggregated
+	 */
+	private static final class Aggregate {
+
+		Aggregate(int capacity) {
+			this.bars = new StockSeries(capacity);
+			this.firstDays = new int[Math.max(1, capacity)];
+		}
+
+		/**
+		 * drop the bars from the one holding the day <code>index</code>, so that they are aggregated again
+		 * @return number of bars kept, which is the index of the first bar to rebuild
+		 */
+		int truncate(int index) {
+			int kept = Arrays.binarySearch(firstDays, 0, bars.size(), index);
+			kept = kept >= 0 ? kept : Math.max(0, -kept - 2);
+			nextDay = kept < bars.size() ? firstDays[kept] : 0;
+			bars.truncate(kept);
+			period = Integer.MIN_VALUE;
+			return kept;
+		}
+
+		/**
+		 * add a day, closing the current bar first if the day belongs to another period
+		 */
+		void add(int period, int index, int epochDay, StockBars daily, int mask) {
+			if (period != this.period) {
+				flush();
+				this.period = period;
+				this.firstDay = index;
+				this.epochDay = epochDay;
+				this.mask = 0;
+				this.volume = 0;
+			}
+			if ((mask & StockBars.Column.OPENING.mask()) != 0 && (this.mask & StockBars.Column.OPENING.mask()) == 0) {
+				this.opening = daily.getOpening(index);
+			}
+			if ((mask & StockBars.Column.CLOSING.mask()) != 0) {
+				this.closing = daily.getClosing(index);
+			}
+			if ((mask & StockBars.Column.LOWEST.mask()) != 0) {
+				double low = daily.getLowest(index);
+				this.lowest = (this.mask & StockBars.Column.LOWEST.mask()) == 0 ? low : Math.min(this.lowest, low);
+			}
+			if ((mask & StockBars.Column.HIGHEST.mask()) != 0) {
+				double high = daily.getHighest(index);
+				this.highest = (this.mask & StockBars.Column.HIGHEST.mask()) == 0 ? high : Math.max(this.highest, high);
+			}
+			if ((mask & StockBars.Column.VOLUME.mask()) != 0) {
+				this.volume += daily.getVolume(index);
+			}
+			this.mask |= mask;
+		}
+
+		/**
+		 * append the current bar, if any
+		 */
+		void flush() {
+			if (period == Integer.MIN_VALUE) {
+				return;
+			}
+			int i = bars.size();
+			if (i == firstDays.length) {
+				firstDays = Arrays.copyOf(firstDays, i * 2);
+			}
+			firstDays[i] = firstDay;
+			bars.add(epochDay, opening, closing, lowest, highest, volume, mask);
+			period = Integer.MIN_VALUE;
+		}
+
+		/**
+		 * The following instance variables are:
+		 * 		Storing the bars of the level and the index of the first day of each bar
+		 * 		Storing the index of the first day that is not part of a kept bar
+		 * 		Storing the bar being aggregated: its period, first day, values and validity mask
+		 */
+		final StockSeries bars;
+		int[] firstDays;
+		int nextDay;
+		int period = Integer.MIN_VALUE;
+		int firstDay, epochDay, mask;
+		double opening, closing, lowest, highest;
+		long volume;
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the daily stock values, the finest level
+	 * 		Storing the coarse levels, in the order of <code>Level</code> with no entry for the daily one
+	 */
+	private StockBars daily;
+	private final Aggregate[] aggregates;
+}
@@ -0,0 +1,28 @@
+/**
+ * StockRowHandler.java
+ *
+ * receives the daily stock values of a data source one row at a time, as primitives. Every
+ * <code>StockDataSource</code> and the CSV parser deliver their rows through this callback, so a
+ * row can go straight into a <code>StockSeries</code> (<code>series::add</code>) or any other
+ * consumer without an object per row.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+@FunctionalInterface
+public interface StockRowHandler {
+
+	/**
+	 * accept the stock values of a single day. Values whose bit is not set in <code>validMask</code>
+	 * are missing and must be ignored.
+	 * @param epochDay the day as number of days since 1970-01-01
+	 * @param opening the opening price
+	 * @param closing the closing price
+	 * @param lowest the lowest price
+	 * @param highest the highest price
+	 * @param volume the stocks volume
+	 * @param validMask the bits of the valid columns, see <code>StockBars.Column.mask</code>
+	 */
+	void row(int epochDay, double opening, double closing, double lowest, double highest, long volume, int validMask);
+}
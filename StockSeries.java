@@ -0,0 +1,354 @@
+import java.util.Arrays;
+
+/**
+ * StockSeries.java
+ *
+ * stores the daily stock values in a columnar layout. Each column (dates, opening, closing,
+ * lowest, highest, and volume) is a primitive array, dates are kept as epoch days, and missing
+ * values are tracked in a validity bitmap instead of null references.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class StockSeries implements StockBars {
+
+	private static final int INITIAL_CAPACITY = 256;	// initial number of rows of each column
+
+	/**
+	 * The StockSeries constructor with a default capacity
+	 */
+	public StockSeries() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * The StockSeries constructor that reserves the columns for <code>capacity</code> rows
+	 * @param capacity expected number of rows
+	 */
+	public StockSeries(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.epochDays = new int[capacity];
+		this.opening = new double[capacity];
+		this.closing = new double[capacity];
+		this.lowest = new double[capacity];
+		this.highest = new double[capacity];
+		this.volume = new long[capacity];
+		this.validity = new long[Column.values().length][words(capacity)];
+	}
+
+	/**
+	 * append the stock values of a single day. Values whose bit is not set in <code>validMask</code>
+	 * are treated as missing.
+	 * @param epochDay the day as number of days since 1970-01-01
+	 * @param opening the opening price
+	 * @param closing the closing price
+	 * @param lowest the lowest price
+	 * @param highest the highest price
+	 * @param volume the stocks volume
+	 * @param validMask the bits of the valid columns, see <code>Column.mask</code>
+	 */
+	public void add(int epochDay, double opening, double closing, double lowest, double highest, long volume, int validMask) {
+		if (size == epochDays.length) {
+			grow();
+		}
+		int i = size++;
+		this.epochDays[i] = epochDay;
+		this.opening[i] = opening;
+		this.closing[i] = closing;
+		this.lowest[i] = lowest;
+		this.highest[i] = highest;
+		this.volume[i] = volume;
+		for (Column column : COLUMNS) {
+			setValid(i, column, (validMask & column.mask()) != 0);
+		}
+	}
+
+	/**
+	 * replace the stock values of an existing row in place, for example the bar of the current
+	 * day while its ticks arrive
+	 * @param index of the row
+	 * @param opening the opening price
+	 * @param closing the closing price
+	 * @param lowest the lowest price
+	 * @param highest the highest price
+	 * @param volume the stocks volume
+	 * @param validMask the bits of the valid columns, see <code>Column.mask</code>
+	 */
+	public void set(int index, double opening, double closing, double lowest, double highest, long volume, int validMask) {
+		checkIndex(index);
+		this.opening[index] = opening;
+		this.closing[index] = closing;
+		this.lowest[index] = lowest;
+		this.highest[index] = highest;
+		this.volume[index] = volume;
+		for (Column column : COLUMNS) {
+			setValid(index, column, (validMask & column.mask()) != 0);
+		}
+	}
+
+	/**
+	 * remove the rows from an index to the end, keeping the storage for the rows added next
+	 * @param size number of rows to keep
+	 */
+	public void truncate(int size) {
+		if (size < 0 || size > this.size) {
+			throw new IndexOutOfBoundsException("size " + size + " out of " + this.size);
+		}
+		this.size = size;
+	}
+
+	/**
+	 * get the number of days stored in the series
+	 * @return number of rows
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * get the day of a row as number of days since 1970-01-01
+	 * @param index of the row
+	 * @return epoch day
+	 */
+	@Override
+	public int getEpochDay(int index) {
+		checkIndex(index);
+		return epochDays[index];
+	}
+
+	/**
+	 * get the opening price of a row
+	 * @param index of the row
+	 * @return opening price, meaningless if not valid
+	 */
+	@Override
+	public double getOpening(int index) {
+		checkIndex(index);
+		return opening[index];
+	}
+
+	/**
+	 * get the closing price of a row
+	 * @param index of the row
+	 * @return closing price, meaningless if not valid
+	 */
+	@Override
+	public double getClosing(int index) {
+		checkIndex(index);
+		return closing[index];
+	}
+
+	/**
+	 * get the lowest price of a row
+	 * @param index of the row
+	 * @return lowest price, meaningless if not valid
+	 */
+	@Override
+	public double getLowest(int index) {
+		checkIndex(index);
+		return lowest[index];
+	}
+
+	/**
+	 * get the highest price of a row
+	 * @param index of the row
+	 * @return highest price, meaningless if not valid
+	 */
+	@Override
+	public double getHighest(int index) {
+		checkIndex(index);
+		return highest[index];
+	}
+
+	/**
+	 * get the stocks volume of a row
+	 * @param index of the row
+	 * @return stocks volume, meaningless if not valid
+	 */
+	@Override
+	public long getVolume(int index) {
+		checkIndex(index);
+		return volume[index];
+	}
+
+	/**
+	 * check if the value of a column is available in a row
+	 * @param index of the row
+	 * @param column to check
+	 * @return TRUE if the value is present, FALSE if it is missing
+	 */
+	@Override
+	public boolean isValid(int index, Column column) {
+		checkIndex(index);
+		return (validity[column.ordinal()][index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * get the validity mask of a row
+	 * @param index of the row
+	 * @return bits of the valid columns
+	 */
+	@Override
+	public int validMask(int index) {
+		int mask = 0;
+		for (Column column : COLUMNS) {
+			if (isValid(index, column)) {
+				mask |= column.mask();
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * sort the rows in ascending order of dates. Data normally arrive in last to first order,
+	 * in which case the columns are simply reversed in place. A day that appears more than once
+	 * keeps only the row that was added last, as the charts need one row per day.
+	 */
+	public void sortByDate() {
+		if (isAscending()) {
+			removeRepeatedDays(false);
+			return;
+		}
+		if (isDescending()) {
+			for (int i = 0, j = size - 1; i < j; i++, j--) {
+				swap(i, j);
+			}
+			// the rows of a repeated day are now in reverse order of addition
+			removeRepeatedDays(true);
+			return;
+		}
+		// general case: sort a permutation of row indices, then gather every column through it
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Integer.compare(epochDays[a], epochDays[b]));
+		StockSeries sorted = new StockSeries(size);
+		for (Integer i : order) {
+			sorted.add(epochDays[i], opening[i], closing[i], lowest[i], highest[i], volume[i], validMask(i));
+		}
+		this.epochDays = sorted.epochDays;
+		this.opening = sorted.opening;
+		this.closing = sorted.closing;
+		this.lowest = sorted.lowest;
+		this.highest = sorted.highest;
+		this.volume = sorted.volume;
+		this.validity = sorted.validity;
+		removeRepeatedDays(false);
+	}
+
+	/**
+	 * keep one row of every day of the sorted rows
+	 * @param keepFirst TRUE to keep the first row of a repeated day, FALSE to keep the last one
+	 */
+	private void removeRepeatedDays(boolean keepFirst) {
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			if (kept > 0 && epochDays[kept - 1] == epochDays[i]) {
+				if (keepFirst) {
+					continue;
+				}
+				kept--;
+			}
+			if (kept != i) {
+				copy(i, kept);
+			}
+			kept++;
+		}
+		size = kept;
+	}
+
+	private void setValid(int index, Column column, boolean valid) {
+		long[] bits = validity[column.ordinal()];
+		if (valid) {
+			bits[index >>> 6] |= 1L << index;
+		} else {
+			bits[index >>> 6] &= ~(1L << index);
+		}
+	}
+
+	private boolean isAscending() {
+		for (int i = 1; i < size; i++) {
+			if (epochDays[i - 1] > epochDays[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isDescending() {
+		for (int i = 1; i < size; i++) {
+			if (epochDays[i - 1] < epochDays[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void swap(int i, int j) {
+		int mask = validMask(i);
+		int day = epochDays[i]; epochDays[i] = epochDays[j]; epochDays[j] = day;
+		double d = opening[i]; opening[i] = opening[j]; opening[j] = d;
+		d = closing[i]; closing[i] = closing[j]; closing[j] = d;
+		d = lowest[i]; lowest[i] = lowest[j]; lowest[j] = d;
+		d = highest[i]; highest[i] = highest[j]; highest[j] = d;
+		long v = volume[i]; volume[i] = volume[j]; volume[j] = v;
+		int otherMask = validMask(j);
+		for (Column column : COLUMNS) {
+			setValid(i, column, (otherMask & column.mask()) != 0);
+			setValid(j, column, (mask & column.mask()) != 0);
+		}
+	}
+
+	private void copy(int from, int to) {
+		int mask = validMask(from);
+		epochDays[to] = epochDays[from];
+		opening[to] = opening[from];
+		closing[to] = closing[from];
+		lowest[to] = lowest[from];
+		highest[to] = highest[from];
+		volume[to] = volume[from];
+		for (Column column : COLUMNS) {
+			setValid(to, column, (mask & column.mask()) != 0);
+		}
+	}
+
+	private void grow() {
+		int capacity = epochDays.length * 2;
+		this.epochDays = Arrays.copyOf(epochDays, capacity);
+		this.opening = Arrays.copyOf(opening, capacity);
+		this.closing = Arrays.copyOf(closing, capacity);
+		this.lowest = Arrays.copyOf(lowest, capacity);
+		this.highest = Arrays.copyOf(highest, capacity);
+		this.volume = Arrays.copyOf(volume, capacity);
+		for (int c = 0; c < validity.length; c++) {
+			validity[c] = Arrays.copyOf(validity[c], words(capacity));
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " out of " + size);
+		}
+	}
+
+	private static int words(int capacity) {
+		return (capacity + 63) >>> 6;
+	}
+
+	private static final Column[] COLUMNS = Column.values();	// cached copy of the columns, values() clones the array
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the number of rows in use
+	 * 		Storing one primitive array per column, dates as epoch days
+	 * 		Storing one validity bitmap per column, a set bit means the value is present
+	 */
+	private int size;
+	private int[] epochDays;
+	private double[] opening, closing, lowest, highest;
+	private long[] volume;
+	private long[][] validity;
+}
@@ -1,13 +1,8 @@
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * StocksConfiguration.java
@@ -21,26 +16,94 @@ import java.util.List;
 public class StocksConfiguration {
 
 	/**
-	 * The StocksConfiguration constructor invokes dates validation operation, check
-	 * connection, and load the daily stock values
+	 * The StocksConfiguration constructor invokes dates validation operation and loads
+	 * the daily stock values from the default data source. It waits for the download, so it
+	 * must not be called on the event dispatch thread; use <code>fetch</code> there instead.
 	 * @param ticker the ticker name
 	 * @param from the start date of daily prices
 	 * @param to the end date of daily prices
 	 * @throws Exception in invalid dates, no Internet connection, or data not available
 	 */
 	public StocksConfiguration(String ticker, LocalDate from, LocalDate to) throws Exception{
+		this(ticker, from, to, StockDataSource.getDefault());
+	}
+
+	/**
+	 * The StocksConfiguration constructor invokes dates validation operation and loads
+	 * the daily stock values from a data source, waiting for them
+	 * @param ticker the ticker name
+	 * @param from the start date of daily prices
+	 * @param to the end date of daily prices
+	 * @param source provides the daily stock values
+	 * @throws Exception in invalid dates, no Internet connection, or data not available
+	 */
+	public StocksConfiguration(String ticker, LocalDate from, LocalDate to, StockDataSource source) throws Exception{
+		this(ticker, from, to, source, null);
+
+		if (!this.isValidDates()) {
+			throw new Exception("issue with dates range");
+		}
+
+		try {
+			this.series = this.load().join();
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * The StocksConfiguration constructor for daily stock values that are already loaded
+	 * @param ticker the ticker name
+	 * @param from the start date of daily prices
+	 * @param to the end date of daily prices
+	 * @param source provides the daily stock values
+	 * @param series the loaded daily stock values
+	 */
+	private StocksConfiguration(String ticker, LocalDate from, LocalDate to, StockDataSource source, StockBars series) {
 		this.ticker = ticker;
 		this.fromDate = from;
 		this.toDate = to;
-		
-		stockValueList = new ArrayList<>();
+		this.source = source;
+		this.series = series;
+	}
 
-		if (!this.isValidDates()) {
-			throw new Exception("issue with dates range");
+	/**
+	 * validate the dates and load the daily stock values from the default data source without
+	 * blocking the calling thread. Cancelling the returned future aborts the download.
+	 * @param ticker the ticker name
+	 * @param from the start date of daily prices
+	 * @param to the end date of daily prices
+	 * @return future of the loaded configuration, completed exceptionally in invalid dates,
+	 * no Internet connection, or data not available
+	 */
+	public static CompletableFuture<StocksConfiguration> fetch(String ticker, LocalDate from, LocalDate to) {
+		return fetch(ticker, from, to, StockDataSource.getDefault());
+	}
+
+	/**
+	 * validate the dates and load the daily stock values from a data source without blocking
+	 * the calling thread. Cancelling the returned future aborts the download.
+	 * @param ticker the ticker name
+	 * @param from the start date of daily prices
+	 * @param to the end date of daily prices
+	 * @param source provides the daily stock values
+	 * @return future of the loaded configuration, completed exceptionally in invalid dates,
+	 * no Internet connection, or data not available
+	 */
+	public static CompletableFuture<StocksConfiguration> fetch(String ticker, LocalDate from, LocalDate to,
+			StockDataSource source) {
+		StocksConfiguration configuration = new StocksConfiguration(ticker, from, to, source, null);
+		if (!configuration.isValidDates()) {
+			return CompletableFuture.failedFuture(new Exception("issue with dates range"));
 		}
-		
-		this.checkConnection();
-		this.load();
+
+		CompletableFuture<StockBars> download = configuration.load();
+		CompletableFuture<StocksConfiguration> result = download.thenApply(series -> {
+			configuration.series = series;
+			return configuration;
+		});
+		StockFetcher.cancelWith(result, download);
+		return result;
 	}
 
 	/**
@@ -56,65 +119,122 @@ public class StocksConfiguration {
 	 * @return Google Finance URL with the ticker and the dates
 	 */
 	public String getURLString() {
+		return new HttpStockDataSource().getURLString(ticker, fromDate, toDate);
+	}
 
-		DateTimeFormatter formatter = DateTimeFormatter.ofPattern(DATE_PATTERN);
-		String dateStrings[] = {ticker, fromDate.format(formatter), toDate.format(formatter)};
-
-		return String.format(URL_PATTERN, dateStrings);
+	/**
+	 * load the daily stock values. The days already kept in the local cache are read from it,
+	 * and only the missing days are requested from the data source, whose rows are streamed
+	 * into a columnar series.
+	 * @return future of the daily stock values sorted by date
+	 */
+	public CompletableFuture<StockBars> load() {
+		CompletableFuture<StockBars> bars = load(fromDate, toDate);
+		CompletableFuture<StockBars> result = bars.thenApply(loaded -> {
+			if (loaded.size() == 0) {
+				throw new CompletionException(new Exception("Data not avaialbe."));
+			}
+			return loaded;
+		});
+		StockFetcher.cancelWith(result, bars);
+		return result;
 	}
-	
+
 	/**
-	 * check the Internet connection by requesting a HTTP URL connection and checking
-	 * if the request is established or not
-	 * @throws Exception if there is no Internet connection
+	 * load the daily stock values of a range of days from the universe store if it holds the
+	 * ticker, as a view over the mapped file, or otherwise through the cache, if it is on
+	 * @param from the start date of daily prices
+	 * @param to the end date of daily prices
+	 * @return future of the daily stock values sorted by date, possibly empty
 	 */
-	public void checkConnection() throws Exception{
+	private CompletableFuture<StockBars> load(LocalDate from, LocalDate to) {
 		try {
-			URL url = new URL(this.getURLString());
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("GET");
-			connection.connect();
-
-			InputStream stream = connection.getInputStream();
-			this.reader = new BufferedReader(new InputStreamReader(stream));
-		} catch (Exception e) {
-			throw new Exception("issue with Internet connection");
+			UniverseStore universe = UniverseStore.getDefault();
+			if (universe != null && universe.contains(ticker)) {
+				return CompletableFuture.completedFuture(universe.getSeries(ticker, from, to));
+			}
+		} catch (UncheckedIOException e) {
+			return CompletableFuture.failedFuture(e.getCause());
+		}
+		StockCache cache = StockCache.getDefault(source);
+		if (cache != null) {
+			return cache.load(source, ticker, from, to);
 		}
+		CompletableFuture<StockSeries> series = source.fetch(ticker, from, to);
+		CompletableFuture<StockBars> result = series.thenApply(loaded -> loaded);
+		StockFetcher.cancelWith(result, series);
+		return result;
 	}
 
 	/**
-	 * load the daily stock values from Google Finance and store them in an array list
-	 * @return a list of daily stock values
-	 * @throws Exception if values not available
+	 * load only the daily stock values after the last loaded day, up to a new end date. The last
+	 * loaded day is loaded again if its session is not over, since its bar is partial until then.
+	 * The loaded values are not changed; the new days are handed to <code>append</code> by the
+	 * thread that owns the charts.
+	 * @param to the new end date of daily prices
+	 * @return future of the new days, empty if there are none
 	 */
-	public List<DailyStockValues> load() throws Exception{
-		boolean firstLine = true;
-		String line = null;
-		while ((line = this.reader.readLine()) != null) {
-			if (firstLine) {
-				firstLine = false;
+	public CompletableFuture<StockBars> refresh(LocalDate to) {
+		StockBars current = this.series;
+		int lastDay = current.size() > 0 ? current.getEpochDay(current.size() - 1) : (int) fromDate.toEpochDay() - 1;
+		LocalDate from = LocalDate.ofEpochDay(isFinal(lastDay) ? lastDay + 1L : lastDay);
+		if (from.isAfter(to)) {
+			return CompletableFuture.completedFuture(new StockSeries(1));
+		}
+		return load(from, to);
+	}
+
+	/**
+	 * append the days returned by <code>refresh</code> to the loaded values, replacing the partial
+	 * bar of the last loaded day if it was loaded again. The loaded values are not copied: the new
+	 * days go to an in-memory tail that is joined after them, so an append costs only the number of
+	 * new days. A replaced bar that is not yet in the tail moves there.
+	 * @param newBars the days to append, sorted by date
+	 * @param to the new end date of daily prices
+	 * @return index of the first replaced or appended day; equal to the size of the series if none changed
+	 */
+	public int append(StockBars newBars, LocalDate to) {
+		int size = series.size();
+		int firstChanged = size;
+		int lastDay = size > 0 ? series.getEpochDay(size - 1) : Integer.MIN_VALUE;
+		for (int i = 0; i < newBars.size(); i++) {
+			int day = newBars.getEpochDay(i);
+			if (day < lastDay || (day == lastDay && isFinal(day))) {
 				continue;
 			}
-
-			String[] parts = line.split(",");
-
-			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d-MMM-uu");
-			LocalDate date = LocalDate.parse(parts[0], formatter);
-
-			Double opening = this.parseDouble(parts[1]);
-			Double closing = this.parseDouble(parts[4]);
-			Double lowest = this.parseDouble(parts[3]);
-			Double highest = this.parseDouble(parts[2]);
-			Integer volume = this.parseInteger(parts[5]);
-
-			DailyStockValues stockValue = new DailyStockValues(date, opening, closing, lowest, highest, volume);
-			stockValueList.add(stockValue);
+			if (day == lastDay) {
+				if (appended == null) {
+					appended = new StockSeries();
+					series = new JoinedStockBars(series.head(size - 1), appended);
+					appended.add(day, newBars.getOpening(i), newBars.getClosing(i), newBars.getLowest(i),
+							newBars.getHighest(i), newBars.getVolume(i), newBars.validMask(i));
+				} else {
+					appended.set(appended.size() - 1, newBars.getOpening(i), newBars.getClosing(i), newBars.getLowest(i),
+							newBars.getHighest(i), newBars.getVolume(i), newBars.validMask(i));
+				}
+				firstChanged = size - 1;
+				continue;
+			}
+			if (appended == null) {
+				appended = new StockSeries();
+				series = new JoinedStockBars(series, appended);
+			}
+			appended.add(day, newBars.getOpening(i), newBars.getClosing(i), newBars.getLowest(i),
+					newBars.getHighest(i), newBars.getVolume(i), newBars.validMask(i));
 		}
-
-		if (stockValueList.isEmpty()) {
-			throw new Exception("Data not avaialbe.");
+		if (to.isAfter(toDate)) {
+			toDate = to;
 		}
-		return stockValueList;
+		return firstChanged;
+	}
+
+	/**
+	 * check if the bar of a day can no longer change, that is if its session is over
+	 * @param epochDay the day to check
+	 * @return TRUE if the session of the day closed in New York
+	 */
+	private static boolean isFinal(int epochDay) {
+		return epochDay <= TradingCalendar.lastClosedDay();
 	}
 	
 	/**
@@ -168,11 +288,28 @@ public class StocksConfiguration {
 	}
 	
 	/**
-	 * get the daily stock values that are stored as an array list
+	 * get the data source of the daily stock values
+	 * @return data source
+	 */
+	public StockDataSource getSource() {
+		return source;
+	}
+
+	/**
+	 * get the daily stock values, sorted by date
+	 * @return series of daily stock values
+	 */
+	public StockBars getSeries() {
+		return series;
+	}
+
+	/**
+	 * get the daily stock values as a list. The list is a view over the series, and its
+	 * objects are only created when they are read.
 	 * @return list of daily stock values
 	 */
 	public List<DailyStockValues> getDailyStockValues(){
-		return stockValueList;
+		return series.asDailyStockValues();
 	}
 	
 	/**
@@ -189,8 +326,9 @@ public class StocksConfiguration {
 	private String ticker;							   // storing the ticker name as String
 	private LocalDate fromDate;						   // storing the start date as a LocalDate type
 	private LocalDate toDate;						   // storing the end date as a LocalDate type
-	private List<DailyStockValues> stockValueList;     // storing the stock values in a list of DailyStockValues type
-	private BufferedReader reader;					   // creating a reader object to read from the website
+	private StockDataSource source;					   // storing the provider of the stock values
+	private StockBars series;						   // storing the stock values, in memory or in the mapped cache
+	private StockSeries appended;					   // storing the days added by refreshing, joined after the loaded ones
 	public static String DATE_PATTERN = "MMM+d+uuuu";  // creating a date pattern to be used in URL
 	public static String URL_PATTERN = "http://www.google.com/finance/historical" +
 			"?q=%s&histperiod=daily&startdate=%s&enddate=%s&output=csv";
@@ -1,16 +1,18 @@
+import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyEvent;
-import java.time.LocalDate;
-import java.util.List;
-import java.util.TreeMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
 import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
-import java.util.Comparator;
 
 /**
  * StocksValues.java
@@ -24,93 +26,412 @@ import java.util.Comparator;
 
 public class StocksValues extends JTabbedPane{
 
+	private static final String CANDLESTICK_TITLE = "Candlestick";	// the title of the tab of the candlestick chart
+	private static final String[] INDICATOR_TITLES = {"RSI 14", "MACD 12, 26, 9"};	// the titles of the tabs of the indicator charts
+	private static final float INDICATOR_WIDTH = 1f;				// width of the lines of the indicators, thin lines are drawn without antialiasing
+	private static final Color SIGNAL_COLOR = new Color(230, 140, 0);	// color of the signal line of the MACD chart
+	private static final Color HISTOGRAM_COLOR = Color.GRAY;		// color of the histogram line of the MACD chart
+
+	/**
+	 * the indicators that can be drawn over the closing prices, each with its color
+	 */
+	public enum PriceIndicator {
+		SMA_20("SMA 20", new Color(230, 140, 0), engine -> new Points[] {engine.sma(20)}),
+		SMA_50("SMA 50", new Color(200, 40, 40), engine -> new Points[] {engine.sma(50)}),
+		EMA_20("EMA 20", new Color(0, 150, 70), engine -> new Points[] {engine.ema(20)}),
+		BOLLINGER("Bollinger 20, 2", new Color(130, 80, 200), engine -> engine.bollinger(20, 2)),
+		VWAP("VWAP", new Color(0, 150, 170), engine -> new Points[] {engine.vwap()});
+
+		private final String title;							// storing the title of the check box of the indicator
+		private final Color color;							// storing the color of its lines
+		private final Function<IndicatorEngine, Points[]> lines;	// storing how its lines are got from the engine
+
+		PriceIndicator(String title, Color color, Function<IndicatorEngine, Points[]> lines) {
+			this.title = title;
+			this.color = color;
+			this.lines = lines;
+		}
+
+		/**
+		 * get the title of the indicator
+		 * @return title
+		 */
+		public String getTitle() {
+			return title;
+		}
+	}
+
 	/**
 	 * The StocksValues constructor
 	 */
 	public StocksValues() {
 		super();
-		unitToDateMapping = new TreeMap<>();
+		shownIndicators = EnumSet.noneOf(PriceIndicator.class);
+		indicatorLevels = new HashMap<>();
+		// the chart of a tab is built the first time the tab is selected
+		addChangeListener(e -> showSelectedPlot());
 	}
 	
 	/**
-	 * generate a chart for each stock values (opening, closing, highest, lowest, and volume)
-	 * @param stockValueList that are used to generate stock values points to be drawn in the chart
+	 * generate a candlestick chart of all stock values, a tab for each stock values (opening,
+	 * closing, highest, lowest, and volume) and a tab for each indicator chart (RSI and MACD). The
+	 * candlestick chart is shown first and reads the bars as they are; the points and the plot of
+	 * the other tabs are built from the same series when their tab is first selected.
+	 * @param series of daily stock values that are used to generate stock values points to be drawn in the chart
 	 */
-	public void generateChart(List<DailyStockValues> stockValueList) {
-		this.stockValueList = stockValueList;
+	public void generateChart(StockBars series) {
 		cleanTabs();
-		
-		// generate chart points for each stock values
-		Points openingValues = new Points();
-		Points closingValues = new Points();
-		Points lowestValues = new Points();
-		Points highestValues = new Points();
-		Points volumes = new Points();
-		
-		// data arrive in last to first order, need to reverse order
-		this.stockValueList.sort(new Comparator<DailyStockValues>() {
-			@Override
-			public int compare(DailyStockValues o1, DailyStockValues o2) {
-				if (o1.getDate().isBefore(o2.getDate())) {
-					return -1;
-				} else if (o1.getDate().isEqual(o2.getDate())) {
-					return 0;
+		this.series = series;
+
+		// aggregate the weekly, monthly and yearly bars once, the series is already sorted by date
+		this.pyramid = new StockPyramid(series);
+		this.indicators = new IndicatorEngine(series);
+		this.indicatorLevels.clear();
+		this.calendar = TradingCalendar.of(series);
+
+		this.candles = new CandlestickPlot(this.pyramid, this.calendar);
+		this.addTab(CANDLESTICK_TITLE, this.candles);
+
+		// create an empty tab for each stock values and indicator chart, the plot is added to it on first selection
+		StockBars.Column[] columns = StockBars.Column.values();
+		this.points = new Points[columns.length][];
+		this.plots = new Plot[columns.length + INDICATOR_TITLES.length];
+		this.tabs = new JPanel[columns.length + INDICATOR_TITLES.length];
+		for (int t = 0; t < this.tabs.length; t++) {
+			this.tabs[t] = new JPanel(new BorderLayout());
+			this.addTab(t < columns.length ? columns[t].getTitle() : INDICATOR_TITLES[t - columns.length], this.tabs[t]);
+		}
+		showSelectedPlot();
+	}
+
+	/**
+	 * get the chart of a stock values, building it if its tab was never selected
+	 * @param column of the stock values
+	 * @return plot of the chart, or null before <code>generateChart</code>
+	 */
+	public Plot getPlot(StockBars.Column column) {
+		return getPlot(column.ordinal());
+	}
+
+	/**
+	 * show or hide an indicator over the chart of the closing prices. The indicator is computed
+	 * the first time it is shown and kept, so hiding and showing it again, or showing another one,
+	 * computes nothing already computed.
+	 * @param indicator the indicator
+	 * @param shown TRUE to draw it, FALSE to remove it
+	 */
+	public void setIndicatorShown(PriceIndicator indicator, boolean shown) {
+		if (!(shown ? shownIndicators.add(indicator) : shownIndicators.remove(indicator))) {
+			return;
+		}
+		Plot closing = this.plots == null ? null : this.plots[StockBars.Column.CLOSING.ordinal()];
+		if (closing == null) {
+			// drawn when the chart is built
+			return;
+		}
+		for (Points line : indicator.lines.apply(this.indicators)) {
+			if (shown) {
+				closing.addOverlay(getLevels(line), indicator.color, INDICATOR_WIDTH);
+			} else {
+				closing.removeOverlay(line);
+			}
+		}
+	}
+
+	/**
+	 * get the candlestick chart of all stock values
+	 * @return candlestick chart, or null before <code>generateChart</code>
+	 */
+	public CandlestickPlot getCandlestickPlot() {
+		return candles;
+	}
+
+	/**
+	 * extend the charts with days appended to the series. Only the new days, and the coarse bars
+	 * they belong to, are turned into points; the existing points and plots are kept and just repainted.
+	 * @param series the stock values including the appended days
+	 * @param fromIndex index of the first appended day
+	 */
+	public void appendBars(StockBars series, int fromIndex) {
+		if (this.plots == null) {
+			generateChart(series);
+			return;
+		}
+		this.series = series;
+		updatePoints(fromIndex);
+		this.candles.repaint();
+		for (Plot plot : this.plots) {
+			if (plot != null) {
+				plot.repaint();
+			}
+		}
+	}
+
+	/**
+	 * redraw the charts after the days from an index on changed in place or were appended, as in
+	 * the live mode where the bar of the current day changes with every tick. If no day was
+	 * appended, only the changed part of each visible plot is repainted.
+	 * @param series the stock values including the changed days
+	 * @param fromIndex index of the first changed day
+	 */
+	public void updateBars(StockBars series, int fromIndex) {
+		if (this.plots == null) {
+			generateChart(series);
+			return;
+		}
+		this.series = series;
+		int shown = this.calendar.size();
+		updatePoints(fromIndex);
+		if (this.candles.isShowing()) {
+			this.candles.repaint();
+		}
+		for (Plot plot : this.plots) {
+			if (plot == null) {
+				continue;
+			}
+			if (shown < this.series.size()) {
+				plot.repaint();
+			} else if (plot.isShowing()) {
+				plot.repaintFrom(fromIndex);
+			}
+		}
+	}
+
+	/**
+	 * build the plot of the selected tab if it is the tab of a chart that was never selected
+	 */
+	private void showSelectedPlot() {
+		for (int c = 0; this.tabs != null && c < this.tabs.length; c++) {
+			if (this.tabs[c] == getSelectedComponent()) {
+				getPlot(c);
+			}
+		}
+	}
+
+	/**
+	 * get the plot of a tab, building it if it does not exist yet
+	 * @param index of the stock values in <code>StockBars.Column</code>, or after them of the indicator chart
+	 * @return plot of the tab, or null if there is no such tab
+	 */
+	private Plot getPlot(int index) {
+		if (this.tabs == null || index < 0 || index >= this.tabs.length) {
+			return null;
+		}
+		if (this.plots[index] == null) {
+			this.plots[index] = index < this.points.length ? createValuesPlot(index) : createIndicatorPlot(index - this.points.length);
+			this.tabs[index].add(this.plots[index]);
+			if (index == StockBars.Column.CLOSING.ordinal()) {
+				this.tabs[index].add(createIndicatorBoxes(), BorderLayout.NORTH);
+			}
+			this.tabs[index].revalidate();
+		}
+		return this.plots[index];
+	}
+
+	/**
+	 * build the points of each level of a stock values and their plot, with the shown indicators
+	 * over the closing prices. The values of the column are copied into the points, which keep
+	 * the range extrema the plot needs, even when the series is a view over a mapped file; only
+	 * this column of this series is copied, when its tab is first opened.
+	 * @param column index of the stock values in <code>StockBars.Column</code>
+	 * @return plot of the stock values
+	 */
+	private Plot createValuesPlot(int column) {
+		this.points[column] = new Points[StockPyramid.Level.values().length];
+		for (int l = 0; l < this.points[column].length; l++) {
+			this.points[column][l] = new Points();
+		}
+		addPoints(column, new int[this.points[column].length]);
+		Plot plot = new Plot(this.points[column], this.calendar);
+		if (column == StockBars.Column.CLOSING.ordinal()) {
+			for (PriceIndicator indicator : shownIndicators) {
+				for (Points line : indicator.lines.apply(this.indicators)) {
+					plot.addOverlay(getLevels(line), indicator.color, INDICATOR_WIDTH);
+				}
+			}
+		}
+		return plot;
+	}
+
+	/**
+	 * build the plot of an indicator chart: the RSI, or the MACD line with its signal line and histogram
+	 * @param chart index of the chart in <code>INDICATOR_TITLES</code>
+	 * @return plot of the indicator
+	 */
+	private Plot createIndicatorPlot(int chart) {
+		if (chart == 0) {
+			return new Plot(getLevels(this.indicators.rsi(14)), this.calendar);
+		}
+		Points[] macd = this.indicators.macd(12, 26, 9);
+		Plot plot = new Plot(getLevels(macd[0]), this.calendar);
+		plot.addOverlay(getLevels(macd[1]), SIGNAL_COLOR, INDICATOR_WIDTH);
+		plot.addOverlay(getLevels(macd[2]), HISTOGRAM_COLOR, INDICATOR_WIDTH);
+		return plot;
+	}
+
+	/**
+	 * get the points of each level of an indicator line, sampling them the first time. A coarse
+	 * bar gets the value of the indicator on its last day, drawn at the index of its first day,
+	 * as the closing price of the bar is.
+	 * @param daily the points of the line of each day
+	 * @return points of the line from the daily level to the coarsest
+	 */
+	private Points[] getLevels(Points daily) {
+		Points[] lineLevels = this.indicatorLevels.get(daily);
+		if (lineLevels == null) {
+			lineLevels = new Points[StockPyramid.Level.values().length];
+			lineLevels[0] = daily;
+			for (int l = 1; l < lineLevels.length; l++) {
+				lineLevels[l] = new Points();
+			}
+			sampleLevels(lineLevels, new int[lineLevels.length]);
+			this.indicatorLevels.put(daily, lineLevels);
+		}
+		return lineLevels;
+	}
+
+	/**
+	 * sample the coarse levels of an indicator line again from the first changed bar of each level
+	 * @param lineLevels points of the line of each level, the daily one up to date
+	 * @param changed index of the first changed bar of each level, as returned by <code>StockPyramid.update</code>
+	 */
+	private void sampleLevels(Points[] lineLevels, int[] changed) {
+		StockPyramid.Level[] levels = StockPyramid.Level.values();
+		Points daily = lineLevels[0];
+		for (int l = 1; l < levels.length; l++) {
+			StockBars bars = this.pyramid.getBars(levels[l]);
+			Points levelPoints = lineLevels[l];
+			int shown = levelPoints.size();
+			for (int i = changed[l]; i < bars.size(); i++) {
+				int x = this.pyramid.getFirstDay(levels[l], i);
+				int last = i + 1 < bars.size() ? this.pyramid.getFirstDay(levels[l], i + 1) - 1 : daily.size() - 1;
+				if (i < shown) {
+					levelPoints.set(i, x, daily.getY(last));
+				} else {
+					levelPoints.add(x, daily.getY(last));
+				}
+			}
+		}
+	}
+
+	/**
+	 * create a check box for each indicator that can be drawn over the closing prices
+	 * @return panel of the check boxes
+	 */
+	private JPanel createIndicatorBoxes() {
+		JPanel boxes = new JPanel(new FlowLayout(FlowLayout.LEFT));
+		boxes.add(new JLabel("Indicators:"));
+		for (PriceIndicator indicator : PriceIndicator.values()) {
+			JCheckBox box = new JCheckBox(indicator.getTitle(), shownIndicators.contains(indicator));
+			box.setForeground(indicator.color.darker());
+			box.addItemListener(e -> setIndicatorShown(indicator, e.getStateChange() == ItemEvent.SELECTED));
+			boxes.add(box);
+		}
+		return boxes;
+	}
+
+	/**
+	 * aggregate the days from an index on again and update the points of the charts that were built
+	 * and the indicators that were computed
+	 * @param fromIndex index of the first changed day
+	 */
+	private void updatePoints(int fromIndex) {
+		int[] changed = this.pyramid.update(this.series, fromIndex);
+		this.indicators.update(this.series, fromIndex);
+		updateCalendar(fromIndex);
+		for (int c = 0; c < this.points.length; c++) {
+			if (this.points[c] != null) {
+				addPoints(c, changed);
+			}
+		}
+		for (Points[] lineLevels : this.indicatorLevels.values()) {
+			sampleLevels(lineLevels, changed);
+		}
+	}
+
+	/**
+	 * follow the days of the series from an index on in the calendar of the X axis labels, and
+	 * give the new calendar to the plots if the days changed
+	 * @param fromIndex index of the first changed day
+	 */
+	private void updateCalendar(int fromIndex) {
+		TradingCalendar updated = this.calendar.update(this.series, fromIndex);
+		if (updated == this.calendar) {
+			return;
+		}
+		this.calendar = updated;
+		this.candles.setCalendar(updated);
+		for (Plot plot : this.plots) {
+			if (plot != null) {
+				plot.setCalendar(updated);
+			}
+		}
+	}
+
+	/**
+	 * replace the points of a stock values from the first changed bar of each level to the end,
+	 * adding the bars that have no point yet. Every level is placed in daily units: a coarse bar is
+	 * drawn at the index of its first day.
+	 * @param column index of the stock values in <code>StockBars.Column</code>
+	 * @param changed index of the first changed bar of each level, as returned by <code>StockPyramid.update</code>
+	 */
+	private void addPoints(int column, int[] changed) {
+		StockBars.Column value = StockBars.Column.values()[column];
+		StockPyramid.Level[] levels = StockPyramid.Level.values();
+		for (int l = 0; l < levels.length; l++) {
+			StockBars bars = this.pyramid.getBars(levels[l]);
+			Points levelPoints = this.points[column][l];
+			int shown = levelPoints.size();
+			for (int i = changed[l]; i < bars.size(); i++) {
+				int x = this.pyramid.getFirstDay(levels[l], i);
+				// a missing value becomes a NaN coordinate so that the plot can jump over it
+				double y = bars.isValid(i, value) ? bars.getValue(i, value) : Double.NaN;
+				if (i < shown) {
+					levelPoints.set(i, x, y);
 				} else {
-					return 1;
+					levelPoints.add(x, y);
 				}
 			}
-		});
-		
-		// represent coordinates as a boxed Double values instead of primitive double 
-		for (int i = 0; i < this.stockValueList.size(); i++) {
-			DailyStockValues stockValue = this.stockValueList.get(i);
-			unitToDateMapping.put(i, stockValue.getDate());
-			openingValues.add(new ApproximatePoint(i, stockValue.getOpening()));
-			closingValues.add(new ApproximatePoint(i, stockValue.getClosing()));
-			lowestValues.add(new ApproximatePoint(i, stockValue.getLowest()));
-			highestValues.add(new ApproximatePoint(i, stockValue.getHighest()));
-			volumes.add(new ApproximatePoint(i, stockValue.getVolume()));
-		}
-		
-		// create an opening plot and add it to its tab
-		this.openingPlot = new Plot(openingValues, this.unitToDateMapping);
-		this.addTab("Opening", this.openingPlot);
-
-		// create a closing plot and add it to its tab
-		this.closingPlot = new Plot(closingValues, this.unitToDateMapping);
-		this.addTab("Closing", this.closingPlot);
-
-		// create a lowest price plot and add it to its tab
-		this.lowestPricePlot = new Plot(lowestValues, this.unitToDateMapping);
-		this.addTab("Lowest", this.lowestPricePlot);
-
-		// create a highest price plot and add it to its tab
-		this.highestPricePlot = new Plot(highestValues, this.unitToDateMapping);
-		this.addTab("Highest", this.highestPricePlot);
-
-		// create a volume plot and add it to its tab
-		this.volumePlot = new Plot(volumes, this.unitToDateMapping);
-		this.addTab("Volumes", this.volumePlot);
+		}
 	}
 	
 	/**
-	 * remove the last drawn chart in each tab. This is needed in case of drawing a new chart
+	 * remove the tab of each stock values and indicator along with its chart. This is needed in case of drawing a new chart
 	 */
 	private void cleanTabs() {
-		this.remove(this.openingPlot);
-		this.remove(this.closingPlot);
-		this.remove(this.lowestPricePlot);
-		this.remove(this.highestPricePlot);
-		this.remove(this.volumePlot);
+		if (this.tabs == null) {
+			return;
+		}
+		JPanel[] removed = this.tabs;
+		// forget the charts first, so that the selection changes while removing do not build them
+		this.tabs = null;
+		this.plots = null;
+		this.points = null;
+		this.remove(this.candles);
+		for (JPanel tab : removed) {
+			this.remove(tab);
+		}
 	}
 	
 	/**
 	 * The following instance variables are:
-	 * 		Storing the stock values in a list of DailyStockValues type.
-	 * 		Creating a plot object for each stock values
-	 * 		Creating a tree map object to store an approximate point between a date and its stock value
+	 * 		Storing the stock values sorted by date
+	 * 		Storing the weekly, monthly and yearly bars aggregated from the stock values
+	 * 		Storing the indicators computed from the stock values, the points of each level of their
+	 * 		drawn lines by the points of the daily level, and the ones shown over the closing prices
+	 * 		Creating the candlestick chart of all stock values
+	 * 		Creating a tab for each stock values, and its points of each level and its plot once it is selected,
+	 * 		in the order of <code>StockBars.Column</code>, followed by the tab and plot of each indicator chart
+	 * 		Storing the trading calendar of the days of the series, shared by all plots
 	 */
-	private List<DailyStockValues> stockValueList;
-	private Plot openingPlot, closingPlot, lowestPricePlot, highestPricePlot, volumePlot;
-	private TreeMap<Integer, LocalDate> unitToDateMapping;
+	private StockBars series;
+	private StockPyramid pyramid;
+	private IndicatorEngine indicators;
+	private Map<Points, Points[]> indicatorLevels;
+	private EnumSet<PriceIndicator> shownIndicators;
+	private CandlestickPlot candles;
+	private JPanel[] tabs;
+	private Points[][] points;
+	private Plot[] plots;
+	private TradingCalendar calendar;
 }
@@ -1,7 +1,10 @@
+import java.awt.BorderLayout;
 import java.awt.Dimension;
+import java.awt.FlowLayout;
 import java.awt.Point;
 import java.awt.Toolkit;
-import java.util.List;
+import java.time.LocalDate;
+import java.util.concurrent.CompletionException;
 import javax.swing.*;
 
 /**
@@ -15,8 +18,14 @@ import javax.swing.*;
 
 public class StocksWindow extends JFrame{
 
+	private static final int REFRESH_INTERVAL = 5 * 60 * 1000;	// period of the automatic refresh in milliseconds
+
 	private StocksConfiguration stocksConfiguration;	// creating a StocksConfiguration object to invoke the configurations
 	private StocksValues pane;							// creating a StocksValues object to draw the charts
+	private JButton refreshBtn;							// creating a button that loads the days up to today
+	private Timer refreshTimer;							// creating a timer that refreshes the charts periodically
+	private JLabel refreshLbl;							// creating a label that shows why the automatic refresh failed
+	private boolean refreshing;							// TRUE while a refresh is running
 
 	/**
 	 * The StocksWindow constructor that sets the frame size and adds the 
@@ -28,9 +37,26 @@ public class StocksWindow extends JFrame{
 		this.stocksConfiguration = configuration;
 		this.pane = new StocksValues();
 		
-		pane.generateChart(configuration.getDailyStockValues());
+		pane.generateChart(configuration.getSeries());
 		this.add(pane);
 
+		refreshBtn = new JButton("Refresh");
+		refreshBtn.setToolTipText("Load the days up to today");
+		refreshBtn.addActionListener(e -> refresh(true));
+		refreshLbl = new JLabel();
+		JPanel toolBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+		toolBar.add(refreshBtn);
+		toolBar.add(refreshLbl);
+		this.add(toolBar, BorderLayout.NORTH);
+
+		// once the charts reach today, keep them up to date while the window is open
+		refreshTimer = new Timer(REFRESH_INTERVAL, e -> {
+			if (!stocksConfiguration.getToDate().isBefore(LocalDate.now())) {
+				refresh(false);
+			}
+		});
+		refreshTimer.start();
+
 		setTitle("Stock Market Viewer");
 		Toolkit tk = Toolkit.getDefaultToolkit();
 		Dimension dim = tk.getScreenSize();
@@ -39,4 +65,47 @@ public class StocksWindow extends JFrame{
 		setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
 		setVisible(true);
 	}
+
+	/**
+	 * load the days after the last shown day up to today and append them to the charts, replacing
+	 * today's partial bar if it is shown. The download runs in the background; the charts are
+	 * extended on the event dispatch thread. A failure of a refresh asked for by the user is shown
+	 * in a dialog, a failure of the automatic refresh only next to the button.
+	 * @param manual TRUE if the user asked for the refresh
+	 */
+	public void refresh(boolean manual) {
+		if (refreshing) {
+			return;
+		}
+		refreshing = true;
+		refreshBtn.setEnabled(false);
+		LocalDate today = LocalDate.now();
+		stocksConfiguration.refresh(today).whenCompleteAsync((newBars, error) -> {
+			refreshing = false;
+			refreshBtn.setEnabled(true);
+			if (error != null) {
+				Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+				if (manual) {
+					JOptionPane.showMessageDialog(this, "No data was returned due to: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+				} else {
+					refreshLbl.setText("Automatic refresh failed: " + cause.getMessage());
+				}
+				return;
+			}
+			refreshLbl.setText("");
+			int firstChanged = stocksConfiguration.append(newBars, today);
+			if (firstChanged < stocksConfiguration.getSeries().size()) {
+				pane.updateBars(stocksConfiguration.getSeries(), firstChanged);
+			}
+		}, SwingUtilities::invokeLater);
+	}
+
+	/**
+	 * stop the automatic refresh when the window is closed
+	 */
+	@Override
+	public void dispose() {
+		refreshTimer.stop();
+		super.dispose();
+	}
 }
@@ -0,0 +1,107 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * SyntheticDataSource.java
+ *
+ * generates plausible daily stock values for any ticker, on week days only. The values of a day
+ * depend only on the seed, the ticker and the day itself, so overlapping requests always agree
+ * and any range can be produced without generating the days before it. This source is meant for
+ * load tests of the parsing and charting pipeline on machines without network.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class SyntheticDataSource implements StockDataSource {
+
+	private static final long DEFAULT_SEED = 2015;	// seed of the default generator
+
+	/**
+	 * The SyntheticDataSource constructor with the default seed
+	 */
+	public SyntheticDataSource() {
+		this(DEFAULT_SEED);
+	}
+
+	/**
+	 * The SyntheticDataSource constructor
+	 * @param seed that selects one of the generated markets
+	 */
+	public SyntheticDataSource(long seed) {
+		this.seed = seed;
+	}
+
+	@Override
+	public CompletableFuture<Void> stream(String ticker, LocalDate from, LocalDate to, StockRowHandler handler) {
+		return CompletableFuture.runAsync(() -> generate(ticker, (int) from.toEpochDay(), (int) to.toEpochDay(), handler));
+	}
+
+	/**
+	 * generate the rows of a ticker between two days on the calling thread
+	 * @param ticker the ticker name
+	 * @param fromDay the first day as number of days since 1970-01-01
+	 * @param toDay the last day
+	 * @param handler receives the rows in ascending order of dates
+	 */
+	public void generate(String ticker, int fromDay, int toDay, StockRowHandler handler) {
+		long tickerSeed = mix(seed ^ ticker.hashCode());
+		double base = 20 + (tickerSeed >>> 40) % 400;		// price level of the ticker
+		double phase = (tickerSeed & 0xFFFF) / 1000.0;		// shifts the cycles of each ticker
+		long averageVolume = 1_000_000 + (tickerSeed >>> 20) % 50_000_000;
+
+		for (int day = fromDay; day <= toDay; day++) {
+			// 1970-01-01 was a Thursday, skip Saturdays and Sundays
+			int dayOfWeek = Math.floorMod(day + 3, 7) + 1;
+			if (dayOfWeek >= DayOfWeek.SATURDAY.getValue()) {
+				continue;
+			}
+			double closing = price(base, phase, tickerSeed, day);
+			double opening = price(base, phase, tickerSeed, day - 1);
+			double spread = closing * 0.01 * (0.5 + noise(tickerSeed + 1, day));
+			double highest = Math.max(opening, closing) + spread;
+			double lowest = Math.min(opening, closing) - spread;
+			long volume = (long) (averageVolume * (0.5 + noise(tickerSeed + 2, day)));
+			handler.row(day, round(opening), round(closing), round(lowest), round(highest), volume, StockBars.ALL_VALID);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "synthetic-" + seed;
+	}
+
+	/**
+	 * the closing price of a day: slow and fast cycles around the price level plus daily noise
+	 */
+	private static double price(double base, double phase, long tickerSeed, int day) {
+		double trend = 0.35 * Math.sin(day / 900.0 + phase) + 0.12 * Math.sin(day / 70.0 + 2 * phase);
+		return base * Math.exp(trend + 0.02 * (noise(tickerSeed, day) - 0.5));
+	}
+
+	/**
+	 * a deterministic value between 0 and 1 for a day
+	 */
+	private static double noise(long tickerSeed, int day) {
+		return (mix(tickerSeed + day * 0x9E3779B97F4A7C15L) >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * scramble the bits of a number (the finalizer of SplitMix64)
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * round a price to cents like the real feed
+	 */
+	private static double round(double price) {
+		return Math.round(price * 100) / 100.0;
+	}
+
+	private final long seed;	// storing the seed of the generated market
+}
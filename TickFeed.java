@@ -0,0 +1,72 @@
+import java.io.IOException;
+
+/**
+ * TickFeed.java
+ *
+ * a producer of intraday ticks that pushes them into a <code>TickRingBuffer</code> from a thread
+ * of its own. The feed of the live mode is selected with the <code>stockviewer.ticks</code> system
+ * property: <code>simulated</code> with an optional <code>:&lt;ticks per second&gt;</code> (the
+ * default), or <code>socket:&lt;host&gt;:&lt;port&gt;</code>.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public interface TickFeed {
+
+	/**
+	 * start producing ticks
+	 * @param buffer receives the ticks; the feed is its only producer
+	 * @param history the daily stock values shown before the live ticks, the feed may continue from them
+	 */
+	void start(TickRingBuffer buffer, StockBars history);
+
+	/**
+	 * stop producing ticks and release the resources of the feed
+	 */
+	void stop();
+
+	/**
+	 * get the number of ticks that were dropped because the buffer was full
+	 * @return dropped ticks
+	 */
+	long getDroppedTicks();
+
+	/**
+	 * get the reason the feed stopped producing ticks on its own, such as a failed or dropped connection
+	 * @return the failure, or null while the feed is running or after it was stopped
+	 */
+	default IOException getError() {
+		return null;
+	}
+
+	/**
+	 * get the feed selected by the <code>stockviewer.ticks</code> system property
+	 * @return tick feed
+	 */
+	static TickFeed getDefault() {
+		return forName(System.getProperty("stockviewer.ticks", "simulated"));
+	}
+
+	/**
+	 * create a feed from its textual description
+	 * @param description <code>simulated</code>, <code>simulated:&lt;ticks per second&gt;</code> or
+	 * <code>socket:&lt;host&gt;:&lt;port&gt;</code>
+	 * @return tick feed
+	 * @throws IllegalArgumentException if the description is not understood
+	 */
+	static TickFeed forName(String description) {
+		String[] parts = description.split(":");
+		switch (parts[0]) {
+		case "simulated":
+			return parts.length > 1 ? new SimulatedTickFeed(Integer.parseInt(parts[1])) : new SimulatedTickFeed();
+		case "socket":
+			if (parts.length != 3) {
+				throw new IllegalArgumentException("the socket feed needs an address: socket:<host>:<port>");
+			}
+			return new SocketTickFeed(parts[1], Integer.parseInt(parts[2]));
+		default:
+			throw new IllegalArgumentException("unknown tick feed: " + description);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TickRingBuffer.java
+ *
+ * a bounded single-producer, single-consumer queue of intraday ticks. The ticks are stored in
+ * preallocated primitive arrays, so offering and draining a tick allocate nothing, and the two
+ * sides only synchronize through two ever-increasing counters written with release semantics,
+ * so neither side takes a lock. Exactly one thread may call <code>offer</code> and exactly one
+ * thread may call <code>drain</code>.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class TickRingBuffer {
+
+	/**
+	 * receives drained ticks
+	 */
+	@FunctionalInterface
+	public interface TickConsumer {
+
+		/**
+		 * accept a single tick
+		 * @param time of the trade in milliseconds since 1970-01-01T00:00Z
+		 * @param price of the trade
+		 * @param size number of traded stocks
+		 */
+		void tick(long time, double price, long size);
+	}
+
+	/**
+	 * The TickRingBuffer constructor
+	 * @param capacity minimum number of ticks the buffer holds, rounded up to a power of two
+	 */
+	public TickRingBuffer(int capacity) {
+		int rounded = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.mask = rounded - 1;
+		this.times = new long[rounded];
+		this.prices = new double[rounded];
+		this.sizes = new long[rounded];
+		this.head = new AtomicLong();
+		this.tail = new AtomicLong();
+	}
+
+	/**
+	 * add a tick, called by the producer thread only
+	 * @param time of the trade in milliseconds since 1970-01-01T00:00Z
+	 * @param price of the trade
+	 * @param size number of traded stocks
+	 * @return TRUE if the tick was added, FALSE if the buffer is full
+	 */
+	public boolean offer(long time, double price, long size) {
+		long position = tail.get();
+		if (position - headCache > mask) {
+			// the cached head is stale, read the real one only when the buffer looks full
+			headCache = head.get();
+			if (position - headCache > mask) {
+				return false;
+			}
+		}
+		int index = (int) position & mask;
+		times[index] = time;
+		prices[index] = price;
+		sizes[index] = size;
+		tail.lazySet(position + 1);
+		return true;
+	}
+
+	/**
+	 * hand the waiting ticks to a consumer, called by the consumer thread only
+	 * @param consumer receives the ticks in the order they were offered
+	 * @param limit maximum number of ticks to drain
+	 * @return number of drained ticks
+	 */
+	public int drain(TickConsumer consumer, int limit) {
+		long position = head.get();
+		int count = (int) Math.min(tail.get() - position, limit);
+		for (int i = 0; i < count; i++) {
+			int index = (int) (position + i) & mask;
+			consumer.tick(times[index], prices[index], sizes[index]);
+		}
+		head.lazySet(position + count);
+		return count;
+	}
+
+	/**
+	 * get the number of ticks the buffer holds
+	 * @return capacity
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the index mask of the power of two capacity
+	 * 		Storing the ticks in one primitive array per field
+	 * 		Storing the number of drained ticks (head) and offered ticks (tail), and the last head
+	 * 		seen by the producer so that it rarely reads the counter of the consumer
+	 */
+	private final int mask;
+	private final long[] times;
+	private final double[] prices;
+	private final long[] sizes;
+	private final AtomicLong head;
+	private final AtomicLong tail;
+	private long headCache;
+}
@@ -0,0 +1,426 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * TradingCalendar.java
+ *
+ * maps the trading days of an exchange to dense indices and back. The days are kept in a sorted
+ * int array, so the day of an index is an array read; the index of a day is read from a second
+ * array that holds, for every calendar day of the span, the index of the first trading day on or
+ * after it, so it costs an array read too. A calendar never changes once built: a range of it is
+ * a view that shares its arrays, and the default calendar, the week days of the New York Stock
+ * Exchange without its holidays, is built once and shared by every series and window that
+ * follows it. A series that trades on other days gets a calendar of its own days.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public final class TradingCalendar {
+
+	private static final LocalDate DEFAULT_FROM = LocalDate.of(1980, Month.JANUARY, 1);		// first day of the default calendar
+	private static final LocalDate DEFAULT_TO = LocalDate.of(2099, Month.DECEMBER, 31);		// last day of the default calendar
+	private static final int MAX_SPAN_PER_DAY = 16;	// most calendar days per trading day for which the ceilings are kept
+	private static final ZoneId EXCHANGE_ZONE = ZoneId.of("America/New_York");	// time zone of the exchange
+	private static final LocalTime EXCHANGE_CLOSE = LocalTime.of(16, 0);			// end of the regular session
+
+	// days the exchange closed outside of its regular holidays, such as national days of mourning
+	private static final LocalDate[] SPECIAL_CLOSINGS = {
+			LocalDate.of(1985, 9, 27), LocalDate.of(1994, 4, 27), LocalDate.of(2001, 9, 11), LocalDate.of(2001, 9, 12),
+			LocalDate.of(2001, 9, 13), LocalDate.of(2001, 9, 14), LocalDate.of(2004, 6, 11), LocalDate.of(2007, 1, 2),
+			LocalDate.of(2012, 10, 29), LocalDate.of(2012, 10, 30), LocalDate.of(2018, 12, 5), LocalDate.of(2025, 1, 9)};
+
+	/**
+	 * get the shared calendar of the New York Stock Exchange, built on first use
+	 * @return the week days from 1980 to 2099 without the holidays of the exchange
+	 */
+	public static TradingCalendar getDefault() {
+		return DefaultHolder.CALENDAR;
+	}
+
+	/**
+	 * get the last day whose session of the exchange is over. The day is that of New York, not of
+	 * the computer, which east of New York moves to the next day while the session still runs.
+	 * @return number of days since 1970-01-01 of today in New York after the close, otherwise of yesterday
+	 */
+	public static int lastClosedDay() {
+		ZonedDateTime now = ZonedDateTime.now(EXCHANGE_ZONE);
+		LocalDate today = now.toLocalDate();
+		return (int) (now.toLocalTime().isBefore(EXCHANGE_CLOSE) ? today.minusDays(1) : today).toEpochDay();
+	}
+
+	/**
+	 * create the calendar of the week days between two days, without some holidays
+	 * @param fromDay the first day as number of days since 1970-01-01
+	 * @param toDay the last day
+	 * @param holidays the days on which the exchange is closed, in any order
+	 * @return calendar
+	 */
+	public static TradingCalendar weekdays(int fromDay, int toDay, int[] holidays) {
+		int[] closed = holidays.clone();
+		Arrays.sort(closed);
+		int[] days = new int[Math.max(0, toDay - fromDay + 1)];
+		int size = 0;
+		for (int day = fromDay; day <= toDay; day++) {
+			// 1970-01-01 was a Thursday, skip Saturdays and Sundays
+			int dayOfWeek = Math.floorMod(day + 3, 7) + 1;
+			if (dayOfWeek < DayOfWeek.SATURDAY.getValue() && Arrays.binarySearch(closed, day) < 0) {
+				days[size++] = day;
+			}
+		}
+		return new TradingCalendar(Arrays.copyOf(days, size));
+	}
+
+	/**
+	 * get the calendar of some days: a range of the default calendar if the days are consecutive
+	 * trading days of it, otherwise a new calendar of these days
+	 * @param epochDays the days as number of days since 1970-01-01, ascending
+	 * @return calendar
+	 */
+	public static TradingCalendar of(int[] epochDays) {
+		return of(epochDays.length, i -> epochDays[i]);
+	}
+
+	/**
+	 * get the calendar of the days of a series: a range of the default calendar if the series
+	 * follows it, otherwise a new calendar of the days of the series. A day repeated by the series
+	 * is repeated by the calendar, so that the indices still agree.
+	 * @param series of daily stock values, sorted by date
+	 * @return calendar whose index <code>i</code> is the day of index <code>i</code> of the series
+	 */
+	public static TradingCalendar of(StockBars series) {
+		return of(series.size(), series::getEpochDay);
+	}
+
+	private static TradingCalendar of(int size, IntUnaryOperator epochDayOf) {
+		TradingCalendar shared = getDefault();
+		int from = size == 0 ? 0 : shared.indexOf(epochDayOf.applyAsInt(0));
+		if (from >= 0 && shared.follows(from, size, 0, epochDayOf)) {
+			return shared.range(from, from + size);
+		}
+		int[] days = new int[size];
+		for (int i = 0; i < size; i++) {
+			days[i] = epochDayOf.applyAsInt(i);
+			if (i > 0 && days[i] < days[i - 1]) {
+				throw new IllegalArgumentException("days are not ascending at index " + i);
+			}
+		}
+		return new TradingCalendar(days);
+	}
+
+	/**
+	 * get the calendar of a series whose days before an index are those of this calendar, as
+	 * after the live mode appended days or replaced the last one. Only the days from the index
+	 * on are read when the series still follows the same days, or when it only adds days after
+	 * those of a calendar of its own, which then grows its arrays in place.
+	 * @param series of daily stock values, sorted by date
+	 * @param fromIndex index of the first changed day
+	 * @return this calendar if nothing changed, a longer range of the same days, or a new calendar
+	 */
+	public TradingCalendar update(StockBars series, int fromIndex) {
+		int size = series.size();
+		fromIndex = Math.max(0, Math.min(fromIndex, this.size));
+		if (follows(offset, size, fromIndex, series::getEpochDay)) {
+			return size == this.size ? this : new TradingCalendar(this, offset, offset + size);
+		}
+		if (size > this.size && follows(offset, this.size, fromIndex, series::getEpochDay)) {
+			TradingCalendar extended = extend(series);
+			if (extended != null) {
+				return extended;
+			}
+		}
+		return of(series);
+	}
+
+	/**
+	 * get a range of the days without copying them
+	 * @param from index of the first day
+	 * @param to index after the last day
+	 * @return calendar of the days from <code>from</code> to <code>to</code>, indexed from 0
+	 */
+	public TradingCalendar range(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("range " + from + " to " + to + " out of " + size);
+		}
+		return new TradingCalendar(this, offset + from, offset + to);
+	}
+
+	/**
+	 * get the number of trading days
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * get the day of an index
+	 * @param index of the day
+	 * @return number of days since 1970-01-01
+	 */
+	public int getEpochDay(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + " out of " + size);
+		}
+		return days[offset + index];
+	}
+
+	/**
+	 * get the date of an index
+	 * @param index of the day
+	 * @return date
+	 */
+	public LocalDate getDate(int index) {
+		return LocalDate.ofEpochDay(getEpochDay(index));
+	}
+
+	/**
+	 * get the index of a trading day
+	 * @param epochDay number of days since 1970-01-01
+	 * @return index of the day, or <code>-(insertion point) - 1</code> if it is not a trading day,
+	 * as returned by <code>Arrays.binarySearch</code>
+	 */
+	public int indexOf(int epochDay) {
+		int index = ceilingIndex(epochDay);
+		return index < size && days[offset + index] == epochDay ? index : -index - 1;
+	}
+
+	/**
+	 * get the index of the first trading day on or after a day
+	 * @param epochDay number of days since 1970-01-01
+	 * @return index of the day, <code>size()</code> if every day is before it
+	 */
+	public int ceilingIndex(int epochDay) {
+		if (size == 0 || epochDay <= days[offset]) {
+			return 0;
+		}
+		if (epochDay > days[offset + size - 1]) {
+			return size;
+		}
+		if (ceilings != null) {
+			return ceilings[epochDay - days[0]] - offset;
+		}
+		int index = Arrays.binarySearch(days, offset, offset + size, epochDay);
+		return (index >= 0 ? index : -index - 1) - offset;
+	}
+
+	/**
+	 * tell whether the exchange trades on a day
+	 * @param epochDay number of days since 1970-01-01
+	 * @return TRUE if the day is one of the days of the calendar
+	 */
+	public boolean contains(int epochDay) {
+		return indexOf(epochDay) >= 0;
+	}
+
+	@Override
+	public String toString() {
+		return size == 0 ? "TradingCalendar[]" : String.format("TradingCalendar[%s to %s, %d days]", getDate(0), getDate(size - 1), size);
+	}
+
+	/**
+	 * add the days of a series after the days of this calendar to its arrays. The arrays grow
+	 * by doubling, and the days written after the end of the filled part are seen by no other
+	 * calendar, so the calendars sharing the arrays do not change.
+	 * @param series whose days before <code>size()</code> are those of this calendar
+	 * @return calendar of the days of the series, or null if the arrays hold other days after
+	 * this calendar or the new days are not ascending
+	 */
+	private TradingCalendar extend(StockBars series) {
+		int end = offset + size;
+		if (end != filled[0] || end == 0) {
+			return null;
+		}
+		int count = series.size() - size;
+		int[] days = this.days;
+		if (end + count > days.length) {
+			days = Arrays.copyOf(days, Math.max(end + count, days.length * 2));
+		}
+		for (int i = 0; i < count; i++) {
+			days[end + i] = series.getEpochDay(size + i);
+			if (days[end + i] < days[end + i - 1]) {
+				return null;
+			}
+		}
+		int[] ceilings = this.ceilings;
+		int span = days[end + count - 1] - days[0] + 1;
+		if (ceilings != null && span <= (long) (end + count) * MAX_SPAN_PER_DAY) {
+			// copied along with new days, so that extending the old arrays again does not write into them
+			if (span > ceilings.length || days != this.days) {
+				ceilings = Arrays.copyOf(ceilings, Math.max(span, ceilings.length * 2));
+			}
+			// the ceilings of the days after the last filled one were never read
+			for (int i = end, day = days[end - 1] - days[0] + 1; i < end + count; i++) {
+				for (; day <= days[i] - days[0]; day++) {
+					ceilings[day] = i;
+				}
+			}
+		} else {
+			ceilings = null;
+		}
+		int[] filled = days == this.days ? this.filled : new int[1];
+		filled[0] = end + count;
+		return new TradingCalendar(days, ceilings, filled, offset, size + count);
+	}
+
+	/**
+	 * tell whether some days are the trading days of the calendar from an index on
+	 * @param from index in the arrays of the first day
+	 * @param size number of days
+	 * @param start index of the first day to compare, the days before it are known to agree
+	 * @param epochDayOf gives the day of each index from 0
+	 */
+	private boolean follows(int from, int size, int start, IntUnaryOperator epochDayOf) {
+		if (from + size > filled[0]) {
+			return false;
+		}
+		for (int i = start; i < size; i++) {
+			if (days[from + i] != epochDayOf.applyAsInt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The TradingCalendar constructor that owns an array of days
+	 * @param days ascending, normally without repeated days
+	 */
+	private TradingCalendar(int[] days) {
+		this.days = days;
+		this.filled = new int[] {days.length};
+		this.offset = 0;
+		this.size = days.length;
+		int span = days.length == 0 ? 0 : days[days.length - 1] - days[0] + 1;
+		if (span <= (long) days.length * MAX_SPAN_PER_DAY) {
+			// for every day of the span the index of the first trading day on or after it, which
+			// for a repeated day is its first index
+			this.ceilings = new int[span];
+			for (int i = 0, day = 0; i < days.length; i++) {
+				for (; day <= days[i] - days[0]; day++) {
+					ceilings[day] = i;
+				}
+			}
+		} else {
+			// too few days for their span, binary search instead
+			this.ceilings = null;
+		}
+	}
+
+	/**
+	 * The TradingCalendar constructor of a range that shares the arrays of another calendar
+	 */
+	private TradingCalendar(TradingCalendar calendar, int from, int to) {
+		this(calendar.days, calendar.ceilings, calendar.filled, from, to - from);
+	}
+
+	/**
+	 * The TradingCalendar constructor of some filled arrays
+	 */
+	private TradingCalendar(int[] days, int[] ceilings, int[] filled, int offset, int size) {
+		this.days = days;
+		this.ceilings = ceilings;
+		this.filled = filled;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	/**
+	 * get the regular holidays of the New York Stock Exchange in a year. A holiday on a Saturday
+	 * is taken the Friday before and one on a Sunday the Monday after, except New Year's Day,
+	 * which is not taken on the last day of the year before.
+	 * @param year the year
+	 * @return the days of the holidays
+	 */
+	static int[] nyseHolidays(int year) {
+		LocalDate newYear = LocalDate.of(year, Month.JANUARY, 1);
+		LocalDate[] holidays = {
+				newYear.getDayOfWeek() == DayOfWeek.SUNDAY ? newYear.plusDays(1) : newYear,
+				year >= 1998 ? nthWeekday(year, Month.JANUARY, DayOfWeek.MONDAY, 3) : null,			// Martin Luther King Jr. Day
+				nthWeekday(year, Month.FEBRUARY, DayOfWeek.MONDAY, 3),								// Washington's Birthday
+				easter(year).minusDays(2),															// Good Friday
+				LocalDate.of(year, Month.MAY, 31).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)),	// Memorial Day
+				year >= 2022 ? observed(LocalDate.of(year, Month.JUNE, 19)) : null,					// Juneteenth
+				observed(LocalDate.of(year, Month.JULY, 4)),										// Independence Day
+				nthWeekday(year, Month.SEPTEMBER, DayOfWeek.MONDAY, 1),								// Labor Day
+				nthWeekday(year, Month.NOVEMBER, DayOfWeek.THURSDAY, 4),							// Thanksgiving Day
+				observed(LocalDate.of(year, Month.DECEMBER, 25))};									// Christmas Day
+		return Arrays.stream(holidays)
+				.filter(holiday -> holiday != null && holiday.getYear() == year)
+				.mapToInt(holiday -> (int) holiday.toEpochDay())
+				.toArray();
+	}
+
+	private static LocalDate nthWeekday(int year, Month month, DayOfWeek dayOfWeek, int n) {
+		return LocalDate.of(year, month, 1).with(TemporalAdjusters.dayOfWeekInMonth(n, dayOfWeek));
+	}
+
+	private static LocalDate observed(LocalDate holiday) {
+		switch (holiday.getDayOfWeek()) {
+			case SATURDAY:
+				return holiday.minusDays(1);
+			case SUNDAY:
+				return holiday.plusDays(1);
+			default:
+				return holiday;
+		}
+	}
+
+	/**
+	 * get the Easter Sunday of a year (the anonymous Gregorian algorithm)
+	 */
+	private static LocalDate easter(int year) {
+		int a = year % 19, b = year / 100, c = year % 100;
+		int d = b / 4, e = b % 4, f = (b + 8) / 25, g = (b - f + 1) / 3;
+		int h = (19 * a + b - d - g + 15) % 30;
+		int i = c / 4, k = c % 4;
+		int l = (32 + 2 * e + 2 * i - h - k) % 7;
+		int m = (a + 11 * h + 22 * l) / 451;
+		int month = (h + l - 7 * m + 114) / 31;
+		int day = (h + l - 7 * m + 114) % 31 + 1;
+		return LocalDate.of(year, month, day);
+	}
+
+	/**
+	 * holds the default calendar, which is built when it is first used
+	 */
+	private static final class DefaultHolder {
+		private static final TradingCalendar CALENDAR = build();
+
+		private static TradingCalendar build() {
+			int[] holidays = new int[(DEFAULT_TO.getYear() - DEFAULT_FROM.getYear() + 1) * 10 + SPECIAL_CLOSINGS.length];
+			int count = 0;
+			for (int year = DEFAULT_FROM.getYear(); year <= DEFAULT_TO.getYear(); year++) {
+				for (int holiday : nyseHolidays(year)) {
+					holidays[count++] = holiday;
+				}
+			}
+			for (LocalDate closing : SPECIAL_CLOSINGS) {
+				holidays[count++] = (int) closing.toEpochDay();
+			}
+			return weekdays((int) DEFAULT_FROM.toEpochDay(), (int) DEFAULT_TO.toEpochDay(), Arrays.copyOf(holidays, count));
+		}
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the days of all ranges of the calendar, strictly ascending, shared by its ranges
+	 * 		Storing the index in <code>days</code> of the first trading day on or after each day
+	 * 		from <code>days[0]</code> on, or null when the days are too sparse for it
+	 * 		Storing the number of days written into <code>days</code>, in an array shared by the
+	 * 		calendars of the same days, since the calendars grown in place add to it
+	 * 		Storing the index in <code>days</code> of the first day of this range and its number of days
+	 */
+	private final int[] days;
+	private final int[] ceilings;
+	private final int[] filled;
+	private final int offset;
+	private final int size;
+}
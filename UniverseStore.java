@@ -0,0 +1,498 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * UniverseStore.java
+ *
+ * keeps the daily stock values of a whole universe of tickers off the heap, in one memory-mapped
+ * file. The file starts with a header, followed by blocks of up to <code>ROWS_PER_BLOCK</code> rows
+ * whose values are stored by column (see <code>MappedColumnSeries</code>), and ends with a
+ * directory of the blocks and of the tickers: the block of each ticker, the index of its first row
+ * in the block and its number of rows. The rows of a ticker are sorted by date and never span two
+ * blocks. Each block is mapped on its own, so the file may grow beyond the two gigabytes a single
+ * mapping can hold.
+ *
+ * Opening a store maps the blocks and reads the directory only; the series of a ticker is a view
+ * over its block, and the pages of the file are only read when they are first touched. The
+ * candlestick chart and the analytics read the daily values of the view in place. The other
+ * charts do not: <code>StocksValues</code> copies the one column a line chart shows into the heap
+ * points of each level, with their range extrema, when its tab is first opened, and
+ * <code>IndicatorEngine</code> copies the closing and typical prices and the volumes of the series
+ * it computes. The heap so holds a few columns of the series shown in a window, never the universe.
+ *
+ * The store used by the application is selected with the <code>stockviewer.universe</code> system
+ * property, the path of the file. The tickers it holds are then served from it, and the others are
+ * loaded as before.
+ *
+ * usage: java UniverseStore build &lt;file&gt; &lt;ticker,ticker,...|count&gt; &lt;from&gt; &lt;to&gt;
+ *        java UniverseStore scan &lt;file&gt;
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class UniverseStore {
+
+	private static final int MAGIC = 0x554E4956;		// "UNIV", marks a universe file
+	private static final int VERSION = 1;				// version of the file layout
+	private static final int HEADER_SIZE = 32;			// magic, version, ticker count, block count, directory position, row count
+	private static final int ROWS_PER_BLOCK = 1 << 20;	// number of rows of a block, unless a single ticker has more
+	private static final int BUILD_PARALLELISM = Runtime.getRuntime().availableProcessors();	// number of tickers loaded ahead while building
+
+	private static UniverseStore shared;				// storing the store of the application, see getDefault
+	private static boolean sharedOpened;				// TRUE once the store of the application was looked for
+
+	/**
+	 * get the store selected by the <code>stockviewer.universe</code> system property, opened the
+	 * first time it is asked for
+	 * @return shared store, or null if the property is not set
+	 * @throws UncheckedIOException if the file cannot be opened
+	 */
+	public static synchronized UniverseStore getDefault() {
+		if (!sharedOpened) {
+			String file = System.getProperty("stockviewer.universe");
+			try {
+				shared = file == null ? null : open(Paths.get(file));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			sharedOpened = true;
+		}
+		return shared;
+	}
+
+	/**
+	 * map a universe file and read its directory
+	 * @param file the universe file
+	 * @return the store
+	 * @throws IOException if the file cannot be read or is not a universe file
+	 */
+	public static UniverseStore open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_SIZE, channel.size()));
+			if (header.limit() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException("not a universe file: " + file);
+			}
+			int tickerCount = header.getInt(8);
+			int blockCount = header.getInt(12);
+			long directoryPosition = header.getLong(16);
+			long directorySize = channel.size() - directoryPosition;
+			if (directoryPosition < HEADER_SIZE || directorySize < 0 || tickerCount < 0 || blockCount < 0
+					|| blockCount * 12L + tickerCount * 14L > directorySize) {
+				throw new IOException("truncated universe file: " + file);
+			}
+			// the mappings stay valid after the channel is closed
+			ByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, directoryPosition, directorySize);
+			MappedByteBuffer[] blocks = new MappedByteBuffer[blockCount];
+			int[] blockRows = new int[blockCount];
+			for (int b = 0; b < blockCount; b++) {
+				long position = directory.getLong();
+				blockRows[b] = directory.getInt();
+				long length = (long) blockRows[b] * MappedColumnSeries.ROW_SIZE;
+				if (position < HEADER_SIZE || length < 0 || position + length > directoryPosition) {
+					throw new IOException("truncated universe file: " + file);
+				}
+				blocks[b] = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			}
+			return new UniverseStore(tickerCount, blocks, blockRows, directory);
+		} catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+			throw new IOException("truncated universe file: " + file, e);
+		}
+	}
+
+	/**
+	 * The UniverseStore constructor that reads the tickers from the directory
+	 */
+	private UniverseStore(int tickerCount, MappedByteBuffer[] blocks, int[] blockRows, ByteBuffer directory) {
+		this.blocks = blocks;
+		this.blockRows = blockRows;
+		this.tickers = new ArrayList<>(tickerCount);
+		this.tickerBlock = new int[tickerCount];
+		this.tickerStart = new int[tickerCount];
+		this.tickerSize = new int[tickerCount];
+		this.indices = new HashMap<>(tickerCount * 2);
+		byte[] name = new byte[Short.MAX_VALUE];
+		for (int t = 0; t < tickerCount; t++) {
+			tickerBlock[t] = directory.getInt();
+			tickerStart[t] = directory.getInt();
+			tickerSize[t] = directory.getInt();
+			int length = directory.getShort();
+			directory.get(name, 0, length);
+			String ticker = new String(name, 0, length, StandardCharsets.UTF_8);
+			tickers.add(ticker);
+			indices.put(ticker, t);
+			rowCount += tickerSize[t];
+		}
+	}
+
+	/**
+	 * get the names of the tickers, in the order they were written
+	 * @return ticker names
+	 */
+	public List<String> getTickers() {
+		return Collections.unmodifiableList(tickers);
+	}
+
+	/**
+	 * get the number of tickers
+	 * @return number of tickers
+	 */
+	public int getTickerCount() {
+		return tickers.size();
+	}
+
+	/**
+	 * get the number of rows of all tickers
+	 * @return number of rows
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * check if the store holds a ticker
+	 * @param ticker the ticker name
+	 * @return TRUE if it does
+	 */
+	public boolean contains(String ticker) {
+		return indices.containsKey(ticker);
+	}
+
+	/**
+	 * get the daily stock values of a ticker as a view over the mapped file
+	 * @param ticker the ticker name
+	 * @return the values sorted by date, or null if the store does not hold the ticker
+	 */
+	public MappedColumnSeries getSeries(String ticker) {
+		Integer index = indices.get(ticker);
+		return index == null ? null : getSeries(index);
+	}
+
+	/**
+	 * get the daily stock values of a ticker as a view over the mapped file
+	 * @param ticker index of the ticker, in the order of <code>getTickers</code>
+	 * @return the values sorted by date
+	 */
+	public MappedColumnSeries getSeries(int ticker) {
+		int block = tickerBlock[ticker];
+		return new MappedColumnSeries(blocks[block], blockRows[block], tickerStart[ticker], tickerSize[ticker]);
+	}
+
+	/**
+	 * get the daily stock values of a ticker between two dates as a view over the mapped file
+	 * @param ticker the ticker name
+	 * @param from the start date of daily prices, inclusive
+	 * @param to the end date of daily prices, inclusive
+	 * @return the values sorted by date, or null if the store does not hold the ticker
+	 */
+	public MappedColumnSeries getSeries(String ticker, LocalDate from, LocalDate to) {
+		MappedColumnSeries series = getSeries(ticker);
+		if (series == null) {
+			return null;
+		}
+		int first = series.lowerBound((int) from.toEpochDay());
+		return series.slice(first, Math.max(first, series.lowerBound((int) to.toEpochDay() + 1)));
+	}
+
+	/**
+	 * write the daily stock values of tickers loaded from a data source into a new universe file.
+	 * A few tickers are loaded ahead while the earlier ones are written, and only the block being
+	 * filled is kept on the heap. If a ticker cannot be loaded, the loads still queued are
+	 * cancelled and the existing file is left as it was.
+	 * @param file the universe file, replaced once it is complete
+	 * @param source provides the values
+	 * @param tickers the ticker names
+	 * @param from the start date of daily prices
+	 * @param to the end date of daily prices
+	 * @throws IOException if a ticker cannot be loaded or the file cannot be written
+	 */
+	public static void build(Path file, StockDataSource source, List<String> tickers, LocalDate from, LocalDate to) throws IOException {
+		try (Writer writer = new Writer(file)) {
+			ArrayDeque<CompletableFuture<StockSeries>> loads = new ArrayDeque<>();
+			int next = 0;
+			try {
+				for (String ticker : tickers) {
+					while (next < tickers.size() && loads.size() < BUILD_PARALLELISM) {
+						loads.add(source.fetch(tickers.get(next++), from, to));
+					}
+					StockSeries series;
+					try {
+						series = loads.remove().join();
+					} catch (CompletionException e) {
+						Throwable cause = e.getCause() != null ? e.getCause() : e;
+						throw new IOException("cannot load " + ticker + ": " + cause.getMessage(), cause);
+					}
+					series.sortByDate();
+					writer.add(ticker, series);
+				}
+			} finally {
+				// nothing is left after a complete build
+				for (CompletableFuture<StockSeries> load : loads) {
+					load.cancel(true);
+				}
+			}
+			writer.commit();
+		}
+	}
+
+	/**
+	 * writes a universe file ticker by ticker. The rows are gathered into a block on the heap and
+	 * written by column once the block is full; the file is complete and replaces an existing one
+	 * when the writer is committed. Closing a writer that was not committed, as when adding a
+	 * ticker failed, deletes what it wrote and leaves an existing file unchanged.
+	 */
+	public static class Writer implements Closeable {
+
+		/**
+		 * The Writer constructor
+		 * @param file the universe file to write
+		 * @throws IOException if a temporary file cannot be created next to it
+		 */
+		public Writer(Path file) throws IOException {
+			this.file = file.toAbsolutePath();
+			Files.createDirectories(this.file.getParent());
+			this.temporary = Files.createTempFile(this.file.getParent(), this.file.getFileName().toString(), ".tmp");
+			this.channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.position = HEADER_SIZE;
+			this.pending = new StockSeries(ROWS_PER_BLOCK);
+			this.blockPositions = new ArrayList<>();
+			this.blockRows = new ArrayList<>();
+			this.names = new ArrayList<>();
+			this.entries = new ArrayList<>();
+			this.written = new HashSet<>();
+		}
+
+		/**
+		 * add the daily stock values of a ticker
+		 * @param ticker the ticker name, not added before
+		 * @param bars the values sorted by date
+		 * @throws IOException if a block cannot be written
+		 */
+		public void add(String ticker, StockBars bars) throws IOException {
+			if (!written.add(ticker)) {
+				throw new IllegalArgumentException("ticker added twice: " + ticker);
+			}
+			if (pending.size() + bars.size() > ROWS_PER_BLOCK) {
+				flush();
+			}
+			names.add(ticker);
+			if (bars.size() > ROWS_PER_BLOCK) {
+				// a ticker larger than a block is written as a block of its own, without a copy
+				entries.add(new int[] {blockRows.size(), 0, bars.size()});
+				writeBlock(bars);
+				return;
+			}
+			entries.add(new int[] {blockRows.size(), pending.size(), bars.size()});
+			for (int i = 0; i < bars.size(); i++) {
+				pending.add(bars.getEpochDay(i), bars.getOpening(i), bars.getClosing(i), bars.getLowest(i),
+						bars.getHighest(i), bars.getVolume(i), bars.validMask(i));
+			}
+		}
+
+		/**
+		 * write the last block, the directory and the header, and replace the file
+		 * @throws IOException if the file cannot be written
+		 */
+		public void commit() throws IOException {
+			if (channel == null) {
+				throw new IllegalStateException("the writer is closed");
+			}
+			boolean moved = false;
+			try {
+				flush();
+				int size = 0;
+				byte[][] encoded = new byte[names.size()][];
+				for (int t = 0; t < names.size(); t++) {
+					encoded[t] = names.get(t).getBytes(StandardCharsets.UTF_8);
+					size += 14 + encoded[t].length;
+				}
+				ByteBuffer directory = ByteBuffer.allocate(blockRows.size() * 12 + size);
+				for (int b = 0; b < blockRows.size(); b++) {
+					directory.putLong(blockPositions.get(b)).putInt(blockRows.get(b));
+				}
+				long rows = 0;
+				for (int t = 0; t < names.size(); t++) {
+					int[] entry = entries.get(t);
+					directory.putInt(entry[0]).putInt(entry[1]).putInt(entry[2]);
+					directory.putShort((short) encoded[t].length).put(encoded[t]);
+					rows += entry[2];
+				}
+				directory.flip();
+				writeFully(directory, position);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).putInt(names.size()).putInt(blockRows.size()).putLong(position).putLong(rows);
+				header.flip();
+				writeFully(header, 0);
+				channel.force(true);
+				channel.close();
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				moved = true;
+			} finally {
+				try {
+					channel.close();
+				} finally {
+					channel = null;
+					// whatever failed, including the move, the temporary file is not left behind
+					if (!moved) {
+						Files.deleteIfExists(temporary);
+					}
+				}
+			}
+		}
+
+		/**
+		 * delete the temporary file unless the writer was committed
+		 * @throws IOException if the temporary file cannot be deleted
+		 */
+		@Override
+		public void close() throws IOException {
+			if (channel == null) {
+				return;
+			}
+			try {
+				channel.close();
+			} finally {
+				channel = null;
+				Files.deleteIfExists(temporary);
+			}
+		}
+
+		/**
+		 * write the gathered rows as a block and start a new one
+		 */
+		private void flush() throws IOException {
+			if (pending.size() > 0) {
+				writeBlock(pending);
+				pending.truncate(0);
+			}
+		}
+
+		/**
+		 * write rows as a block by column at the next aligned position of the file
+		 */
+		private void writeBlock(StockBars rows) throws IOException {
+			// the price columns are read as doubles, so blocks start on eight byte boundaries
+			position = (position + 7) & ~7L;
+			MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) rows.size() * MappedColumnSeries.ROW_SIZE);
+			MappedColumnSeries.writeRows(block, rows.size(), 0, rows);
+			block.force();
+			blockPositions.add(position);
+			blockRows.add(rows.size());
+			position += (long) rows.size() * MappedColumnSeries.ROW_SIZE;
+		}
+
+		private void writeFully(ByteBuffer buffer, long at) throws IOException {
+			while (buffer.hasRemaining()) {
+				at += channel.write(buffer, at);
+			}
+		}
+
+		/**
+		 * The following instance variables are:
+		 * 		Storing the universe file, the temporary file written first and its channel
+		 * 		Storing the position after the last written block
+		 * 		Storing the rows of the block being filled
+		 * 		Storing the position and number of rows of each written block
+		 * 		Storing the name and the block, first row and number of rows of each ticker, and the added tickers
+		 */
+		private final Path file;
+		private final Path temporary;
+		private FileChannel channel;
+		private long position;
+		private final StockSeries pending;
+		private final List<Long> blockPositions;
+		private final List<Integer> blockRows;
+		private final List<String> names;
+		private final List<int[]> entries;
+		private final Set<String> written;
+	}
+
+	/**
+	 * The main method builds a universe file from the default data source, or opens one and
+	 * prints the time to open it, the heap it takes, and the rate of a scan of every closing price
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 5 && args[0].equals("build")) {
+			List<String> tickers = new ArrayList<>();
+			if (args[2].matches("\\d+")) {
+				for (int i = 0; i < Integer.parseInt(args[2]); i++) {
+					tickers.add(String.format("T%04d", i));
+				}
+			} else {
+				tickers.addAll(Arrays.asList(args[2].split(",")));
+			}
+			long start = System.nanoTime();
+			build(Paths.get(args[1]), StockDataSource.getDefault(), tickers, LocalDate.parse(args[3]), LocalDate.parse(args[4]));
+			System.out.printf("wrote %d tickers in %.1f s, %,d bytes%n", tickers.size(), (System.nanoTime() - start) / 1e9, Files.size(Paths.get(args[1])));
+		} else if (args.length == 2 && args[0].equals("scan")) {
+			long heapBefore = usedHeap();
+			long start = System.nanoTime();
+			UniverseStore store = open(Paths.get(args[1]));
+			double openMillis = (System.nanoTime() - start) / 1e6;
+			System.out.printf("opened %,d tickers, %,d rows in %.1f ms, heap %+,d bytes%n",
+					store.getTickerCount(), store.getRowCount(), openMillis, usedHeap() - heapBefore);
+			for (int round = 0; round < 3; round++) {
+				start = System.nanoTime();
+				double sum = 0;
+				for (int t = 0; t < store.getTickerCount(); t++) {
+					MappedColumnSeries series = store.getSeries(t);
+					for (int i = 0; i < series.size(); i++) {
+						if (series.isValid(i, StockBars.Column.CLOSING)) {
+							sum += series.getClosing(i);
+						}
+					}
+				}
+				double seconds = (System.nanoTime() - start) / 1e9;
+				System.out.printf("scan %d: %,.0f rows/s, heap %+,d bytes (sum %.0f)%n",
+						round + 1, store.getRowCount() / seconds, usedHeap() - heapBefore, sum);
+			}
+		} else {
+			System.err.println("usage: java UniverseStore build <file> <ticker,ticker,...|count> <from> <to>");
+			System.err.println("       java UniverseStore scan <file>");
+			System.exit(1);
+		}
+	}
+
+	private static long usedHeap() {
+		System.gc();
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the mapping and number of rows of each block
+	 * 		Storing the ticker names, the index of each name, and the block, first row and number of rows of each ticker
+	 * 		Storing the number of rows of all tickers
+	 */
+	private final MappedByteBuffer[] blocks;
+	private final int[] blockRows;
+	private final List<String> tickers;
+	private final Map<String, Integer> indices;
+	private final int[] tickerBlock;
+	private final int[] tickerStart;
+	private final int[] tickerSize;
+	private long rowCount;
+}
@@ -0,0 +1,172 @@
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.function.DoubleSupplier;
+import javax.swing.JComponent;
+
+/**
+ * Viewport.java
+ *
+ * the visible range of X values of a plot. Until it is zoomed or panned the viewport follows
+ * the whole range of the points, including points appended later; afterwards it keeps its range,
+ * limited to the range of the points, until it is reset.
+ *
+ * @version 1 28 Dec 2015
+ * @author Nasser Albunian
+*/
+
+public class Viewport {
+
+	private static final double MIN_SPAN = 4;		// narrowest visible range, in X units
+	private static final double ZOOM_STEP = 1.25;	// factor of the visible range per mouse wheel notch
+
+	/**
+	 * The Viewport constructor
+	 * @param points whose X range limits the viewport
+	 */
+	public Viewport(Points points) {
+		this(points::getMinX, points::getMaxX);
+	}
+
+	/**
+	 * The Viewport constructor for a range that is not kept in <code>Points</code>, such as the
+	 * days of a series
+	 * @param lowest gives the lowest X value that can be shown
+	 * @param highest gives the highest X value that can be shown
+	 */
+	public Viewport(DoubleSupplier lowest, DoubleSupplier highest) {
+		this.lowestX = lowest;
+		this.highestX = highest;
+	}
+
+	/**
+	 * let the mouse move the viewport of a chart: the wheel zooms around the pointer, dragging
+	 * pans, and a double click shows everything again. The chart is repainted after each change.
+	 * @param chart the component that draws the visible range
+	 * @param leftGap width of the part of the chart left of the plot area
+	 * @param rightGap width of the part of the chart right of the plot area
+	 */
+	public void navigate(JComponent chart, int leftGap, int rightGap) {
+		MouseAdapter navigation = new MouseAdapter() {
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				double from = getMinX();
+				double anchorX = from + (e.getX() - leftGap) * (getMaxX() - from) / plotWidth();
+				zoom(Math.pow(ZOOM_STEP, e.getPreciseWheelRotation()), anchorX);
+				chart.repaint();
+			}
+
+			@Override
+			public void mousePressed(MouseEvent e) {
+				dragX = e.getX();
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				pan((dragX - e.getX()) * (getMaxX() - getMinX()) / plotWidth());
+				dragX = e.getX();
+				chart.repaint();
+			}
+
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				if (e.getClickCount() == 2 && isZoomed()) {
+					reset();
+					chart.repaint();
+				}
+			}
+
+			private double plotWidth() {
+				return Math.max(1, chart.getWidth() - leftGap - rightGap);
+			}
+
+			private int dragX;	// storing the X coordinate of the mouse while panning
+		};
+		chart.addMouseListener(navigation);
+		chart.addMouseMotionListener(navigation);
+		chart.addMouseWheelListener(navigation);
+	}
+
+	/**
+	 * get the lowest visible X value
+	 * @return start of the visible range
+	 */
+	public double getMinX() {
+		return zoomed ? Math.max(minX, lowestX.getAsDouble()) : lowestX.getAsDouble();
+	}
+
+	/**
+	 * get the highest visible X value
+	 * @return end of the visible range
+	 */
+	public double getMaxX() {
+		return zoomed ? Math.min(maxX, highestX.getAsDouble()) : highestX.getAsDouble();
+	}
+
+	/**
+	 * check if the viewport shows a part of the points only
+	 * @return TRUE after zooming or panning, FALSE while the whole range is shown
+	 */
+	public boolean isZoomed() {
+		return zoomed;
+	}
+
+	/**
+	 * scale the visible range around an X value that stays in place
+	 * @param factor above 1 to zoom out, below 1 to zoom in
+	 * @param anchorX the X value that keeps its position on the screen
+	 */
+	public void zoom(double factor, double anchorX) {
+		double lowest = lowestX.getAsDouble();
+		double highest = highestX.getAsDouble();
+		double fullSpan = highest - lowest;
+		if (!(fullSpan > 0)) {
+			return;
+		}
+		double from = getMinX();
+		double to = getMaxX();
+		double span = Math.max(Math.min(MIN_SPAN, fullSpan), Math.min(fullSpan, (to - from) * factor));
+		double ratio = to > from ? (anchorX - from) / (to - from) : 0.5;
+		set(anchorX - ratio * span, span, lowest, highest);
+	}
+
+	/**
+	 * move the visible range
+	 * @param deltaX X units to move by, positive to the right
+	 */
+	public void pan(double deltaX) {
+		if (!zoomed) {
+			return;
+		}
+		double from = getMinX();
+		set(from + deltaX, getMaxX() - from, lowestX.getAsDouble(), highestX.getAsDouble());
+	}
+
+	/**
+	 * show the whole range of the points again
+	 */
+	public void reset() {
+		zoomed = false;
+	}
+
+	/**
+	 * place the visible range inside the range of the points
+	 */
+	private void set(double from, double span, double lowest, double highest) {
+		from = Math.max(lowest, Math.min(from, highest - span));
+		this.minX = from;
+		this.maxX = from + span;
+		this.zoomed = from > lowest || from + span < highest;
+	}
+
+	/**
+	 * The following instance variables are:
+	 * 		Storing the lowest and highest X values, which limit the viewport
+	 * 		Storing the visible range while zoomed, and whether it is zoomed
+	 */
+	private final DoubleSupplier lowestX;
+	private final DoubleSupplier highestX;
+	private double minX;
+	private double maxX;
+	private boolean zoomed;
+}